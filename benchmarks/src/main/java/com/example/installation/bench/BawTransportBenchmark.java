@@ -0,0 +1,204 @@
+package com.example.installation.bench;
+
+import com.example.installation.baw.BAWConfig;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
+import org.apache.hc.client5.http.ssl.TrustAllStrategy;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BAW 呼叫的傳輸層：對本機 HTTPS stub 依序送出啟動流程的 POST，比較
+ * pooled (BAWConfig 的 httpclient5 連線池)、noReuse (同一個 client 但每次開新連線，TCP + TLS 握手)、
+ * urlConnection (JDK HttpURLConnection 的 keep-alive)。
+ * connections 欄位是每個 iteration 新開的連線數 (stub 每接受一條 TLS 連線記一次)。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// stub 關閉 Nagle，避免與用戶端 delayed ACK 疊成每次約 40ms 的等待
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@State(Scope.Benchmark)
+public class BawTransportBenchmark {
+    private static final byte[] RESPONSE = "{\"status\":\"200\",\"data\":{\"piid\":\"1001\",\"state\":\"STATE_RUNNING\"}}"
+        .getBytes(StandardCharsets.UTF_8);
+    private static final String BODY = "{\"orderId\":1,\"machineName\":\"M1\",\"dueDate\":\"2027-01-15\"}";
+    private static final char[] STORE_PASSWORD = "changeit".toCharArray();
+
+    @Param({ "pooled", "noReuse", "urlConnection" })
+    String transport;
+
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private HttpsServer server;
+    private ExecutorService serverThreads;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+    private String url;
+    private HttpEntity<String> request;
+
+    /**
+     * 新開的連線數 (每個 iteration 重新累計)
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Connections {
+        public long connections;
+        long seen;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        startServer();
+        url = "https://localhost:" + server.getAddress().getPort()
+            + "/rest/bpm/wle/v1/process?action=start&bpdId=bench&processAppId=bench&parts=all";
+
+        BAWConfig config = new BAWConfig();
+        config.setSslInsecure(true);
+        switch (transport) {
+            case "pooled":
+                httpClient = config.bawHttpClient();
+                restTemplate = config.bawRestTemplate(httpClient);
+                break;
+            case "noReuse":
+                // 與 pooled 相同的 SSL 設定，但回應後一律關閉連線
+                httpClient = HttpClients.custom()
+                    .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setSSLSocketFactory(new SSLConnectionSocketFactory(trustAll(), NoopHostnameVerifier.INSTANCE))
+                        .build())
+                    .setConnectionReuseStrategy((req, resp, context) -> false)
+                    .build();
+                restTemplate = config.bawRestTemplate(httpClient);
+                break;
+            case "urlConnection":
+                // JDK keep-alive 快取只重用同一個 SSLSocketFactory 建立的連線
+                SSLSocketFactory socketFactory = trustAll().getSocketFactory();
+                restTemplate = new RestTemplate(new SimpleClientHttpRequestFactory() {
+                    @Override
+                    protected void prepareConnection(HttpURLConnection connection, String httpMethod) throws IOException {
+                        super.prepareConnection(connection, httpMethod);
+                        HttpsURLConnection https = (HttpsURLConnection) connection;
+                        https.setSSLSocketFactory(socketFactory);
+                        https.setHostnameVerifier(NoopHostnameVerifier.INSTANCE);
+                    }
+                });
+                break;
+            default:
+                throw new IllegalArgumentException("未知的 transport: " + transport);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("BPMCSRFToken", "bench-token");
+        request = new HttpEntity<>(BODY, headers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public String startProcess(Connections counters) {
+        String body = restTemplate.exchange(url, HttpMethod.POST, request, String.class).getBody();
+        long opened = connectionsOpened.get();
+        counters.connections += opened - counters.seen;
+        counters.seen = opened;
+        return body;
+    }
+
+    private void startServer() throws Exception {
+        server = HttpsServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // configure 在每條新連線建立時呼叫一次
+        server.setHttpsConfigurator(new HttpsConfigurator(serverContext()) {
+            @Override
+            public void configure(HttpsParameters params) {
+                connectionsOpened.incrementAndGet();
+                super.configure(params);
+            }
+        });
+        server.createContext("/", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, RESPONSE.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(RESPONSE);
+            }
+        });
+        serverThreads = Executors.newFixedThreadPool(4);
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    /**
+     * 以 JDK 的 keytool 產生自簽憑證給 stub 使用
+     */
+    private static SSLContext serverContext() throws Exception {
+        Path dir = Files.createTempDirectory("baw-stub");
+        Path keystore = dir.resolve("stub.p12");
+        Process keytool = new ProcessBuilder(
+            Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+            "-genkeypair", "-alias", "stub", "-keyalg", "EC", "-dname", "CN=localhost",
+            "-validity", "1", "-storetype", "PKCS12", "-keystore", keystore.toString(),
+            "-storepass", new String(STORE_PASSWORD), "-keypass", new String(STORE_PASSWORD))
+            .redirectErrorStream(true)
+            .start();
+        keytool.getInputStream().transferTo(OutputStream.nullOutputStream());
+        if (keytool.waitFor() != 0) {
+            throw new IllegalStateException("keytool 產生憑證失敗");
+        }
+
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keystore)) {
+            store.load(in, STORE_PASSWORD);
+        }
+        Files.delete(keystore);
+        Files.delete(dir);
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(store, STORE_PASSWORD);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        return context;
+    }
+
+    private static SSLContext trustAll() throws Exception {
+        return SSLContexts.custom().loadTrustMaterial(TrustAllStrategy.INSTANCE).build();
+    }
+}
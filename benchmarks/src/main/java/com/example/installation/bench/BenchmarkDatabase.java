@@ -0,0 +1,49 @@
+package com.example.installation.bench;
+
+import com.example.installation.db.OrderInput;
+import com.example.installation.db.SyntheticDataGenerator;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基準測試用的 H2 記憶體資料庫：套用與 devh2 相同的 Flyway migration，再以 {@link SyntheticDataGenerator} 填入資料
+ */
+final class BenchmarkDatabase {
+    static final String[] MATERIAL_CODES = OrderInput.MATERIAL_CODES;
+    static final String[] MATERIAL_NAMES = OrderInput.MATERIAL_NAMES;
+    static final long SEED = 42;
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * 建立新的資料庫 (每次呼叫都是獨立的一個) 並填入指定數量的訂單與到貨計劃
+     */
+    static JdbcTemplate create(int orders, int inboundPlans) {
+        JdbcTemplate jdbc = new JdbcTemplate(empty());
+        SyntheticDataGenerator.Settings settings = new SyntheticDataGenerator.Settings();
+        settings.setSeed(SEED);
+        settings.setOrders(orders);
+        settings.setInboundPlans(inboundPlans);
+        new SyntheticDataGenerator(jdbc, settings).generate();
+        return jdbc;
+    }
+
+    /**
+     * 只套用 migration 的新資料庫 (種子資料之外沒有合成資料)
+     */
+    static DataSource empty() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:bench" + SEQUENCE.incrementAndGet()
+            + ";MODE=PostgreSQL;DATABASE_TO_UPPER=false;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2").load().migrate();
+        return dataSource;
+    }
+}
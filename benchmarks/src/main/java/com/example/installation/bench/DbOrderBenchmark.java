@@ -0,0 +1,75 @@
+package com.example.installation.bench;
+
+import com.example.installation.db.DbOrder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DbOrder 衍生欄位 (頁面與甘特圖每張訂單都會呼叫)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DbOrderBenchmark {
+
+    @Param({ "1000", "50000" })
+    int orders;
+
+    private List<DbOrder> list;
+    private LocalDate timelineStart;
+    private LocalDate timelineEnd;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(BenchmarkDatabase.SEED);
+        LocalDate today = LocalDate.now();
+        list = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            DbOrder o = new DbOrder();
+            o.setId((long) i);
+            o.setMachineName("M" + i);
+            o.setDueDate(today.plusDays(random.nextInt(365) - 30));
+            o.setEtaDate(o.getDueDate().plusDays(random.nextInt(21) - 10));
+            o.setStatus(o.getEtaDate().isAfter(o.getDueDate()) ? "LATE" : "ON_TIME");
+            List<DbOrder.MaterialRequirement> materials = new ArrayList<>();
+            for (int m = 0; m < 1 + random.nextInt(3); m++) {
+                materials.add(new DbOrder.MaterialRequirement(
+                    BenchmarkDatabase.MATERIAL_NAMES[m], 1 + random.nextInt(60), random.nextInt(60)));
+            }
+            o.setMaterials(materials);
+            list.add(o);
+        }
+        timelineStart = today.minusDays(30);
+        timelineEnd = today.plusDays(365);
+    }
+
+    @Benchmark
+    public void priority(Blackhole bh) {
+        for (DbOrder o : list) {
+            bh.consume(o.getPriority());
+        }
+    }
+
+    @Benchmark
+    public void materialSatisfactionRate(Blackhole bh) {
+        for (DbOrder o : list) {
+            bh.consume(o.getMaterialSatisfactionRate());
+        }
+    }
+
+    @Benchmark
+    public void ganttStartPosition(Blackhole bh) {
+        for (DbOrder o : list) {
+            bh.consume(o.getGanttStartPosition(timelineStart, timelineEnd));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.installation.bench;
+
+import com.example.installation.schedule.MaterialAvailabilityIndex;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 新訂單 ETA 估算 (建立訂單、預覽、批次匯入每列都會呼叫) 與可用量索引重建
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EtaEstimateBenchmark {
+
+    @Param({ "100", "10000" })
+    int inboundPlans;
+
+    private MaterialAvailabilityIndex index;
+    private int[][] quantities;
+    private int next;
+
+    @Setup
+    public void setup() {
+        JdbcTemplate jdbc = BenchmarkDatabase.create(0, inboundPlans);
+        index = new MaterialAvailabilityIndex(jdbc);
+        index.rebuildAll();
+
+        Random random = new Random(7);
+        quantities = new int[1024][BenchmarkDatabase.MATERIAL_CODES.length];
+        for (int[] q : quantities) {
+            for (int m = 0; m < q.length; m++) {
+                q[m] = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(200);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object estimateEta() {
+        int[] q = quantities[next++ & (quantities.length - 1)];
+        return index.estimateEta(BenchmarkDatabase.MATERIAL_CODES, q);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void rebuildIndex() {
+        index.rebuildAll();
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.installation.bench;
+
+import com.example.installation.db.DbOrderService;
+import com.example.installation.db.OrderInput;
+import com.example.installation.db.OrderRepository;
+import com.example.installation.db.ReferenceDataCache;
+import com.example.installation.db.SyntheticDataGenerator;
+import com.example.installation.events.ChangeEventBroadcaster;
+import com.example.installation.schedule.MaterialAvailabilityIndex;
+import com.example.installation.schedule.ScheduleService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * 增量修補與完整排程的一致性檢查：在填入合成資料並完整排程過的 H2 上逐次新增一張訂單，
+ * 先以 ScheduleService.repairOrder 增量修補並記下 schedule_results / schedule_tasks，
+ * 再執行完整排程比對兩者 (每張訂單的 ETA、狀態與每日施工量都要相同)
+ * <pre>
+ * java -cp target/benchmarks.jar com.example.installation.bench.IncrementalRepairCheck \
+ *     --orders=2000 --inbound-plans=200 --inserts=40 --seed=42 \
+ *     --material-probability=0.35 --weekday-hours=150 --weekend-hours=50
+ * </pre>
+ * 新訂單只用一種材料，截止日在 1 ~ due-days 天之間隨機 (含插在最前面的急件)。有差異時列出並以 exit code 1 結束。
+ */
+public final class IncrementalRepairCheck {
+    private static final int MAX_REPORTED_DIFFS = 10;
+
+    private IncrementalRepairCheck() {
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = parseArgs(args);
+        int orders = Integer.parseInt(options.getOrDefault("orders", "2000"));
+        int inboundPlans = Integer.parseInt(options.getOrDefault("inbound-plans", "200"));
+        int inserts = Integer.parseInt(options.getOrDefault("inserts", "40"));
+        int dueDays = Integer.parseInt(options.getOrDefault("due-days", "120"));
+        Random random = new Random(Long.parseLong(options.getOrDefault("seed", "42")));
+
+        SyntheticDataGenerator.Settings settings = new SyntheticDataGenerator.Settings();
+        settings.setSeed(BenchmarkDatabase.SEED);
+        settings.setOrders(orders);
+        settings.setInboundPlans(inboundPlans);
+        // 預設比合成資料少用材料、產能更緊，才會出現只靠工人產能互相影響的訂單
+        settings.setMaterialProbability(Double.parseDouble(options.getOrDefault("material-probability", "0.35")));
+        settings.setWeekdayHours(Integer.parseInt(options.getOrDefault("weekday-hours", "150")));
+        settings.setWeekendHours(Integer.parseInt(options.getOrDefault("weekend-hours", "50")));
+        JdbcTemplate jdbc = new JdbcTemplate(BenchmarkDatabase.empty());
+        new SyntheticDataGenerator(jdbc, settings).generate();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MaterialAvailabilityIndex index = new MaterialAvailabilityIndex(jdbc);
+        DbOrderService dbOrderService = new DbOrderService(jdbc, new ReferenceDataCache(64, 300), index, registry);
+        ChangeEventBroadcaster events = new ChangeEventBroadcaster(new ObjectMapper(), registry, 60_000, 16, 16, 1);
+        ScheduleService scheduleService = new ScheduleService(jdbc, 365, 24, index, dbOrderService, events,
+            new DataSourceTransactionManager(Objects.requireNonNull(jdbc.getDataSource())));
+        OrderRepository repository = new OrderRepository(jdbc);
+
+        scheduleService.runFullSchedule();
+        LocalDate today = LocalDate.now();
+        int mismatched = 0;
+        long incrementalAffected = 0;
+        for (int i = 0; i < inserts; i++) {
+            // 只用一種材料：與其他材料的訂單只共用工人產能，驗證產能日的連帶重排
+            int[] quantities = new int[OrderInput.MATERIAL_CODES.length];
+            quantities[random.nextInt(quantities.length)] = 1 + random.nextInt(40);
+            LocalDate due = today.plusDays(1 + random.nextInt(dueDays));
+            long id = repository.insertAll(List.of(new OrderInput("M" + (900000 + i), due, quantities)))[0];
+
+            Map<String, Object> repair = scheduleService.repairOrder(id);
+            incrementalAffected += ((Number) repair.get("affectedOrders")).longValue();
+            Map<String, String> incremental = snapshot(jdbc);
+            scheduleService.runFullSchedule();
+            Map<String, String> full = snapshot(jdbc);
+
+            List<String> diffs = diff(incremental, full);
+            if (!diffs.isEmpty()) {
+                mismatched++;
+                System.out.printf("✗ 第 %d 次新增 (訂單 %d，截止 %s，%s)：%d 筆差異%n",
+                    i + 1, id, due, repair.get("mode"), diffs.size());
+                diffs.stream().limit(MAX_REPORTED_DIFFS).forEach(d -> System.out.println("    " + d));
+            }
+        }
+
+        System.out.printf("%d 張訂單、新增 %d 次：增量修補平均重排 %d 張，與完整排程不一致 %d 次%n",
+            orders, inserts, inserts == 0 ? 0 : incrementalAffected / inserts, mismatched);
+        events.shutdown();
+        System.exit(mismatched == 0 ? 0 : 1);
+    }
+
+    /**
+     * 訂單 -> "ETA 狀態 | 材料@天:數量 ..." (同一天同材料的任務合併)
+     */
+    private static Map<String, String> snapshot(JdbcTemplate jdbc) {
+        Map<Long, TreeMap<String, Integer>> tasks = new TreeMap<>();
+        jdbc.query("SELECT order_id, material, work_date, units_planned FROM schedule_tasks", rs -> {
+            tasks.computeIfAbsent(rs.getLong("order_id"), k -> new TreeMap<>())
+                .merge(rs.getString("material").trim() + "@" + rs.getDate("work_date"), rs.getInt("units_planned"), Integer::sum);
+        });
+        Map<String, String> result = new TreeMap<>();
+        jdbc.query("SELECT order_id, eta_date, status FROM schedule_results", rs -> {
+            long id = rs.getLong("order_id");
+            result.put(String.valueOf(id), rs.getDate("eta_date") + " " + rs.getString("status") + " | "
+                + tasks.getOrDefault(id, new TreeMap<>()));
+        });
+        return result;
+    }
+
+    private static List<String> diff(Map<String, String> incremental, Map<String, String> full) {
+        List<String> diffs = new ArrayList<>();
+        Map<String, String> all = new LinkedHashMap<>(full);
+        incremental.forEach(all::putIfAbsent);
+        for (String id : all.keySet()) {
+            String a = incremental.get(id);
+            String b = full.get(id);
+            if (!Objects.equals(a, b)) {
+                diffs.add("訂單 " + id + " 增量: " + a + " / 完整: " + b);
+            }
+        }
+        return diffs;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("參數格式為 --name=value: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.installation.bench;
+
+import com.example.installation.model.InstallationJob;
+import com.example.installation.service.JobService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /api/jobs?q= 的索引查詢 (每次最多 500 筆) 與單筆更新
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@State(Scope.Benchmark)
+public class JobSearchBenchmark {
+    private static final String[] CITIES = { "台北市", "新北市", "桃園市", "台中市", "台南市", "高雄市" };
+    private static final String[] DISTRICTS = { "信義區", "板橋區", "中壢區", "西屯區", "東區", "前鎮區", "大安區" };
+    private static final String[] ROADS = { "市府路", "文化路一段", "中大路", "台灣大道", "民族路", "中華路" };
+    private static final String[] CUSTOMERS = { "工廠", "電子", "科技", "精密", "化學", "物流" };
+
+    @Param({ "100000", "1000000" })
+    int jobs;
+
+    // jobId、常見片段、罕見組合、沒有結果
+    @Param({ "JOB-0012345", "工廠", "信義區市府路", "市府路45號", "不存在" })
+    String query;
+
+    private JobService service;
+    private Random random;
+
+    @Setup
+    public void setup() {
+        service = new JobService();
+        random = new Random(BenchmarkDatabase.SEED);
+        for (int i = 0; i < jobs; i++) {
+            service.insert(job(i));
+        }
+    }
+
+    @Benchmark
+    public Object search() {
+        return service.search(query, 500);
+    }
+
+    @Benchmark
+    public boolean update() {
+        return service.update(job(random.nextInt(jobs)));
+    }
+
+    private InstallationJob job(int i) {
+        InstallationJob job = new InstallationJob();
+        job.setJobId(String.format("JOB-%07d", i));
+        job.setCustomerName(CUSTOMERS[random.nextInt(CUSTOMERS.length)] + CUSTOMERS[random.nextInt(CUSTOMERS.length)]
+            + (char) ('一' + random.nextInt(9)) + "廠");
+        job.setAddress(CITIES[random.nextInt(CITIES.length)] + DISTRICTS[random.nextInt(DISTRICTS.length)]
+            + ROADS[random.nextInt(ROADS.length)] + (1 + random.nextInt(500)) + "號");
+        return job;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.installation.bench;
+
+import com.example.installation.model.BomItem;
+import com.example.installation.model.InstallationJob;
+import com.example.installation.service.JobService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 重啟到 /api/jobs 可查詢的時間：映射快照解碼 + 建立 n-gram 索引 (正常關閉後 journal 是空的)
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = { "-Xms3g", "-Xmx3g" })
+@State(Scope.Benchmark)
+public class JobStoreRestartBenchmark {
+    private static final String[] CITIES = { "台北市", "新北市", "桃園市", "台中市", "台南市", "高雄市" };
+    private static final String[] ROADS = { "市府路", "文化路一段", "中大路", "台灣大道", "民族路", "中華路" };
+    private static final String[] STATUSES = { "Draft", "Planned", "Assigned", "Done" };
+
+    @Param({ "100000", "1000000" })
+    int jobs;
+
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("job-store-bench");
+        JobService service = new JobService(dir.toString(), false, 64, 16);
+        service.init();
+        Random random = new Random(BenchmarkDatabase.SEED);
+        for (int i = 0; i < jobs; i++) {
+            service.insert(job(i, random));
+        }
+        // 寫出快照
+        service.shutdown();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int restart() {
+        JobService service = new JobService(dir.toString(), true, 64, 16);
+        service.init();
+        int found = service.search("市府路45號", 500).size();
+        service.shutdown();
+        return found;
+    }
+
+    private static InstallationJob job(int i, Random random) {
+        InstallationJob job = new InstallationJob();
+        job.setJobId(String.format("JOB-%07d", i));
+        job.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+        job.setPriority(random.nextBoolean() ? "High" : "Normal");
+        job.setCustomerName("工廠" + (char) ('一' + random.nextInt(9)));
+        job.setCustomerPhone(String.format("09%02d-%03d-%03d", random.nextInt(100), random.nextInt(1000), random.nextInt(1000)));
+        job.setAddress(CITIES[random.nextInt(CITIES.length)] + ROADS[random.nextInt(ROADS.length)] + (1 + random.nextInt(500)) + "號");
+        job.setStart("2025-09-02T09:00:00");
+        job.setEnd("2025-09-02T11:00:00");
+        job.setSlaDue("2025-09-05T17:00:00");
+        job.getBom().add(new BomItem("AC-12000BTU", "分離式冷氣主機", 1, 1, "TAO-WH1", null));
+        job.getAssigned().add("W" + String.format("%03d", random.nextInt(50)));
+        return job;
+    }
+}
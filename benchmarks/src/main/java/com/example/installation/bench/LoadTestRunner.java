@@ -0,0 +1,224 @@
+package com.example.installation.bench;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 端對端負載測試：對執行中的應用程式發送混合請求，回報各端點的吞吐量與延遲百分位數
+ *
+ * 先以 devh2 + devdata.enabled=true 啟動應用程式 (完全離線)，再執行：
+ * <pre>
+ * java -cp target/benchmarks.jar com.example.installation.bench.LoadTestRunner \
+ *     --base-url=http://localhost:8080 --clients=16 --duration=30 --warmup=5 --seed=42 \
+ *     --mix=dashboard:2,scheduler:1,db-orders:1,api-orders:4,api-dashboard:2,api-inventory:1,api-inbound:1,create:1
+ * </pre>
+ * 每個 client 以 seed + client 編號的亂數選擇請求，相同參數產生相同的請求序列。
+ * warmup 秒數內的請求不列入統計；HTTP 4xx/5xx 與連線失敗計為錯誤 (建立訂單的 302 為成功)。
+ */
+public final class LoadTestRunner {
+
+    private static final Map<String, Function<Random, HttpRequest.Builder>> SCENARIOS = new LinkedHashMap<>();
+    private static String baseUrl;
+
+    static {
+        SCENARIOS.put("dashboard", r -> get("/dashboard"));
+        SCENARIOS.put("scheduler", r -> get("/scheduler"));
+        SCENARIOS.put("db-orders", r -> get("/db/orders"));
+        SCENARIOS.put("api-orders", r -> get("/api/db/orders?limit=100"));
+        SCENARIOS.put("api-dashboard", r -> get("/api/db/dashboard"));
+        SCENARIOS.put("api-inventory", r -> get("/api/db/inventory"));
+        SCENARIOS.put("api-inbound", r -> get("/api/db/inbound"));
+        SCENARIOS.put("create", LoadTestRunner::createOrder);
+    }
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        baseUrl = options.getOrDefault("base-url", "http://localhost:8080").replaceAll("/$", "");
+        int clients = Integer.parseInt(options.getOrDefault("clients", "16"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        String mix = options.getOrDefault("mix",
+            "dashboard:2,scheduler:1,db-orders:1,api-orders:4,api-dashboard:2,api-inventory:1,api-inbound:1,create:1");
+
+        List<String> names = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            if (!SCENARIOS.containsKey(kv[0])) {
+                throw new IllegalArgumentException("未知的請求類型: " + kv[0] + "，可用: " + SCENARIOS.keySet());
+            }
+            names.add(kv[0]);
+            weights.add(kv.length > 1 ? Integer.parseInt(kv[1]) : 1);
+        }
+        int[] cumulative = new int[names.size()];
+        int totalWeight = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            totalWeight += weights.get(i);
+            cumulative[i] = totalWeight;
+        }
+
+        HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+        System.out.printf("負載測試 %s：%d clients，warmup %d 秒，量測 %d 秒，mix=%s%n",
+            baseUrl, clients, warmupSeconds, durationSeconds, mix);
+
+        long measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long measureEnd = measureStart + TimeUnit.SECONDS.toNanos(durationSeconds);
+        Recorder[][] recorders = new Recorder[clients][names.size()];
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        for (int c = 0; c < clients; c++) {
+            Recorder[] own = recorders[c];
+            for (int s = 0; s < own.length; s++) {
+                own[s] = new Recorder();
+            }
+            Random random = new Random(seed + c);
+            int weightSum = totalWeight;
+            pool.execute(() -> {
+                while (true) {
+                    long now = System.nanoTime();
+                    if (now >= measureEnd) {
+                        return;
+                    }
+                    int pick = random.nextInt(weightSum);
+                    int s = 0;
+                    while (cumulative[s] <= pick) {
+                        s++;
+                    }
+                    HttpRequest request = SCENARIOS.get(names.get(s)).apply(random)
+                        .timeout(Duration.ofSeconds(30)).build();
+                    long start = System.nanoTime();
+                    boolean ok;
+                    try {
+                        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                        ok = response.statusCode() < 400;
+                    } catch (Exception e) {
+                        ok = false;
+                    }
+                    long end = System.nanoTime();
+                    if (start >= measureStart && end <= measureEnd) {
+                        own[s].record(end - start, ok);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(warmupSeconds + durationSeconds + 60L, TimeUnit.SECONDS);
+
+        report(names, recorders, durationSeconds);
+    }
+
+    private static void report(List<String> names, Recorder[][] recorders, int durationSeconds) {
+        System.out.printf("%n%-14s %9s %7s %9s %9s %9s %9s %9s%n",
+            "請求", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        Recorder all = new Recorder();
+        for (int s = 0; s < names.size(); s++) {
+            Recorder merged = new Recorder();
+            for (Recorder[] client : recorders) {
+                merged.addAll(client[s]);
+            }
+            all.addAll(merged);
+            printRow(names.get(s), merged, durationSeconds);
+        }
+        printRow("TOTAL", all, durationSeconds);
+    }
+
+    private static void printRow(String name, Recorder r, int durationSeconds) {
+        long[] sorted = Arrays.copyOf(r.latencies, r.count);
+        Arrays.sort(sorted);
+        System.out.printf("%-14s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+            name, r.count, r.errors, r.count / (double) durationSeconds,
+            percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+            sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+    }
+
+    // 表單建立訂單：截止日 30~365 天後，1~3 種材料
+    private static HttpRequest.Builder createOrder(Random random) {
+        StringBuilder form = new StringBuilder()
+            .append("machineName=M").append(100000 + random.nextInt(900000))
+            .append("&dueDate=").append(LocalDate.now().plusDays(30 + random.nextInt(336)));
+        String[] fields = { "nitrogenPipe", "waterPipe", "vacuumPipe" };
+        int first = random.nextInt(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            boolean include = i == first || random.nextBoolean();
+            form.append('&').append(URLEncoder.encode(fields[i], StandardCharsets.UTF_8))
+                .append('=').append(include ? 1 + random.nextInt(60) : 0);
+        }
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/orders/create"))
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form.toString()));
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("參數格式為 --name=value: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    /**
+     * 單一 client、單一請求類型的延遲紀錄 (只由一個執行緒寫入)
+     */
+    private static final class Recorder {
+        long[] latencies = new long[1024];
+        int count;
+        int errors;
+
+        void record(long nanos, boolean ok) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        void addAll(Recorder other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i], true);
+            }
+            errors += other.errors;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.installation.bench;
+
+import com.example.installation.db.DbOrderService;
+import com.example.installation.db.OrderQuery;
+import com.example.installation.db.ReferenceDataCache;
+import com.example.installation.schedule.MaterialAvailabilityIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 訂單材料組裝的查詢次數檢查：以計數的 DataSource 包住 DbOrderService，
+ * 分別在 10 張與 1000 張訂單時呼叫 list() 與 findPage()，確認送出的 SQL 語句數量相同 (不隨訂單數增加)
+ * <pre>
+ * java -cp target/benchmarks.jar com.example.installation.bench.MaterialQueryCountCheck --sizes=10,1000
+ * </pre>
+ * 加上 --verbose=true 會列出每次送出的 SQL。數量不一致時以 exit code 1 結束。
+ */
+public final class MaterialQueryCountCheck {
+
+    private MaterialQueryCountCheck() {
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = parseArgs(args);
+        boolean verbose = Boolean.parseBoolean(options.getOrDefault("verbose", "false"));
+        List<Integer> sizes = new ArrayList<>();
+        for (String size : options.getOrDefault("sizes", "10,1000").split(",")) {
+            sizes.add(Integer.parseInt(size.trim()));
+        }
+
+        Map<String, List<Integer>> counts = new LinkedHashMap<>();
+        for (int size : sizes) {
+            JdbcTemplate jdbc = BenchmarkDatabase.create(size, 0);
+            counts.computeIfAbsent("list", k -> new ArrayList<>())
+                .add(count(jdbc, size, "list", service -> service.list(), verbose));
+            counts.computeIfAbsent("findPage", k -> new ArrayList<>())
+                .add(count(jdbc, size, "findPage", service -> {
+                    OrderQuery query = new OrderQuery();
+                    query.setLimit(size);
+                    service.findPage(query);
+                }, verbose));
+        }
+
+        boolean ok = true;
+        for (Map.Entry<String, List<Integer>> entry : counts.entrySet()) {
+            boolean flat = new HashSet<>(entry.getValue()).size() == 1;
+            ok &= flat;
+            System.out.printf("%s %s：訂單 %s 張 -> SQL 語句 %s 次%n",
+                flat ? "✓" : "✗", entry.getKey(), sizes, entry.getValue());
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * 以新的 DbOrderService (快取是空的) 執行一次呼叫，回傳送出的 SQL 語句數
+     */
+    private static int count(JdbcTemplate jdbc, int size, String name, Consumer<DbOrderService> call, boolean verbose) {
+        List<String> statements = Collections.synchronizedList(new ArrayList<>());
+        JdbcTemplate counted = new JdbcTemplate(counting(jdbc.getDataSource(), statements));
+        DbOrderService service = new DbOrderService(counted, new ReferenceDataCache(64, 300),
+            new MaterialAvailabilityIndex(jdbc), new SimpleMeterRegistry());
+        call.accept(service);
+        if (verbose) {
+            System.out.printf("%s (%d 張訂單)：%n", name, size);
+            statements.forEach(sql -> System.out.println("    " + (sql.length() > 120 ? sql.substring(0, 120) + "..." : sql)));
+        }
+        return statements.size();
+    }
+
+    /**
+     * 包住 DataSource，記錄每個 Connection 準備或執行的 SQL 語句
+     */
+    private static DataSource counting(DataSource target, List<String> statements) {
+        return (DataSource) Proxy.newProxyInstance(MaterialQueryCountCheck.class.getClassLoader(),
+            new Class<?>[] { DataSource.class }, (proxy, method, args) -> {
+                Object result = invoke(target, method, args);
+                if (result instanceof Connection) {
+                    return counting((Connection) result, statements);
+                }
+                return result;
+            });
+    }
+
+    private static Connection counting(Connection target, List<String> statements) {
+        return (Connection) Proxy.newProxyInstance(MaterialQueryCountCheck.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                if (method.getName().equals("prepareStatement") || method.getName().equals("prepareCall")) {
+                    statements.add((String) args[0]);
+                }
+                Object result = invoke(target, method, args);
+                if (result instanceof Statement && !(result instanceof PreparedStatement)) {
+                    return counting((Statement) result, statements);
+                }
+                return result;
+            });
+    }
+
+    /**
+     * 一般 Statement 在執行時才知道 SQL，每次 execute* 記一筆
+     */
+    private static Statement counting(Statement target, List<String> statements) {
+        return (Statement) Proxy.newProxyInstance(MaterialQueryCountCheck.class.getClassLoader(),
+            new Class<?>[] { Statement.class }, (proxy, method, args) -> {
+                if (method.getName().startsWith("execute") && args != null && args.length > 0 && args[0] instanceof String) {
+                    statements.add((String) args[0]);
+                }
+                return invoke(target, method, args);
+            });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("參數格式為 --name=value: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.installation.bench;
+
+import com.example.installation.db.DbOrderService;
+import com.example.installation.db.OrderQuery;
+import com.example.installation.db.ReferenceDataCache;
+import com.example.installation.schedule.MaterialAvailabilityIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 訂單讀取路徑：row mapper + 材料組裝 (全部載入、分頁、串流匯出)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderQueryBenchmark {
+
+    @Param({ "1000", "50000" })
+    int orders;
+
+    private DbOrderService service;
+
+    @Setup
+    public void setup() {
+        JdbcTemplate jdbc = BenchmarkDatabase.create(orders, 0);
+        service = new DbOrderService(jdbc, new ReferenceDataCache(64, 300), new MaterialAvailabilityIndex(jdbc),
+            new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public Object listAll() {
+        return service.list();
+    }
+
+    @Benchmark
+    public Object firstPage() {
+        return service.findPage(new OrderQuery());
+    }
+
+    @Benchmark
+    public void streamAll(Blackhole bh) {
+        service.streamOrders(2000, bh::consume);
+    }
+}
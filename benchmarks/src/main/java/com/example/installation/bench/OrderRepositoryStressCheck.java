@@ -0,0 +1,261 @@
+package com.example.installation.bench;
+
+import com.example.installation.db.OrderInput;
+import com.example.installation.db.OrderRepository;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * OrderRepository 並行寫入檢查：多個執行緒同時以 insertAll 批次新增訂單 (約一成的交易回滾)，
+ * 確認回傳的 id 與資料列一一對應 (訂單主檔、材料需求、trigram)，回滾的訂單沒有留下任何資料列
+ *
+ * 預設在 H2 記憶體資料庫檢查 batch + getGeneratedKeys；指定 --sqlserver-url 時再對 SQL Server 檢查
+ * MERGE ... OUTPUT (請用空的測試資料庫，以 db/migration/sqlserver 建立資料表)：
+ * <pre>
+ * java -cp target/benchmarks.jar com.example.installation.bench.OrderRepositoryStressCheck \
+ *     --threads=8 --batches=40 --max-batch-size=1000 --seed=42 \
+ *     --sqlserver-url="jdbc:sqlserver://localhost:1433;databaseName=scheduler_check;encrypt=false" \
+ *     --sqlserver-user=sa --sqlserver-password=...
+ * </pre>
+ * 批次大小在 1~max-batch-size 之間隨機，超過 400 筆時 MERGE 會分成多個語句。
+ * 發現不一致時列出前幾筆並以 exit code 1 結束。
+ */
+public final class OrderRepositoryStressCheck {
+    private static final int MAX_REPORTED_ERRORS = 20;
+    // SQL Server 單一語句最多 2100 個參數
+    private static final int IN_CHUNK = 1000;
+
+    private final String name;
+    private final JdbcTemplate jdbc;
+    private final OrderRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final String prefix = "S" + Long.toString(System.currentTimeMillis(), 36).toUpperCase(Locale.ROOT);
+    private final Map<Long, OrderInput> committed = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> rolledBack = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+
+    private OrderRepositoryStressCheck(String name, DataSource dataSource) {
+        this.name = name;
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.repository = new OrderRepository(jdbc);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        int threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+        int batches = Integer.parseInt(options.getOrDefault("batches", "40"));
+        int maxBatchSize = Integer.parseInt(options.getOrDefault("max-batch-size", "1000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        boolean ok = new OrderRepositoryStressCheck("H2", BenchmarkDatabase.empty())
+            .run(threads, batches, maxBatchSize, seed);
+
+        String url = options.get("sqlserver-url");
+        if (url != null) {
+            DriverManagerDataSource dataSource = new DriverManagerDataSource(url,
+                options.getOrDefault("sqlserver-user", "sa"), options.getOrDefault("sqlserver-password", ""));
+            Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/sqlserver").load().migrate();
+            ok &= new OrderRepositoryStressCheck("SQL Server", dataSource).run(threads, batches, maxBatchSize, seed);
+        } else {
+            System.out.println("略過 SQL Server (MERGE ... OUTPUT)：未指定 --sqlserver-url");
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    private boolean run(int threads, int batches, int maxBatchSize, long seed) throws Exception {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers.add(pool.submit(() -> {
+                ready.await();
+                writeBatches(thread, batches, maxBatchSize, new Random(seed + thread));
+                return null;
+            }));
+        }
+        ready.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        pool.shutdown();
+        long writeMillis = (System.nanoTime() - start) / 1_000_000;
+
+        verifyOrders();
+        verifyMaterials();
+        verifyNameGrams();
+        verifyRolledBack();
+
+        System.out.printf("%s：%d 執行緒 x %d 批，寫入 %d 張訂單 (回滾 %d 張)，%d ms，不一致 %d 筆%n",
+            name, threads, batches, committed.size(), rolledBack.size(), writeMillis, errors.size());
+        errors.stream().limit(MAX_REPORTED_ERRORS).forEach(e -> System.out.println("  ✗ " + e));
+        return errors.isEmpty();
+    }
+
+    private void writeBatches(int thread, int batches, int maxBatchSize, Random random) {
+        LocalDate today = LocalDate.now();
+        for (int b = 0; b < batches; b++) {
+            int size = 1 + random.nextInt(maxBatchSize);
+            List<OrderInput> inputs = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int[] quantities = new int[OrderInput.MATERIAL_CODES.length];
+                for (int m = 0; m < quantities.length; m++) {
+                    quantities[m] = random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(60);
+                }
+                OrderInput input = new OrderInput(prefix + "-" + thread + "-" + b + "-" + i,
+                    today.plusDays(random.nextInt(365)), quantities);
+                input.setStatus(random.nextBoolean() ? "ON_TIME" : "LATE");
+                inputs.add(input);
+            }
+            boolean rollback = random.nextInt(10) == 0;
+            long[] ids = transactionTemplate.execute(tx -> {
+                long[] result = repository.insertAll(inputs);
+                if (rollback) {
+                    tx.setRollbackOnly();
+                }
+                return result;
+            });
+
+            if (ids.length != inputs.size()) {
+                errors.add("批次 " + thread + "-" + b + " 回傳 " + ids.length + "/" + inputs.size() + " 個 id");
+                continue;
+            }
+            for (int i = 0; i < ids.length; i++) {
+                if (rollback) {
+                    rolledBack.add(ids[i]);
+                } else if (ids[i] <= 0 || committed.putIfAbsent(ids[i], inputs.get(i)) != null) {
+                    errors.add("id " + ids[i] + " 無效或重複 (" + inputs.get(i).getMachineName() + ")");
+                }
+            }
+        }
+    }
+
+    // 訂單主檔：id 對應的機台名稱、截止日與狀態；沒有未回傳 id 的多餘資料列
+    private void verifyOrders() {
+        Set<Long> seen = new HashSet<>();
+        forChunks(new ArrayList<>(committed.keySet()), (placeholders, args) -> jdbc.query(
+            "SELECT id, machine_name, due_date, status FROM orders WHERE id IN (" + placeholders + ")",
+            rs -> {
+                long id = rs.getLong("id");
+                seen.add(id);
+                OrderInput expected = committed.get(id);
+                if (!expected.getMachineName().equals(rs.getString("machine_name"))
+                        || !expected.getDueDate().equals(rs.getDate("due_date").toLocalDate())
+                        || !expected.getStatus().equals(rs.getString("status"))) {
+                    errors.add("id " + id + " 應為 " + expected.getMachineName() + "，資料列是 " + rs.getString("machine_name"));
+                }
+            }, args));
+        for (Long id : committed.keySet()) {
+            if (!seen.contains(id)) {
+                errors.add("id " + id + " 沒有資料列 (" + committed.get(id).getMachineName() + ")");
+            }
+        }
+        Integer rows = jdbc.queryForObject("SELECT COUNT(*) FROM orders WHERE machine_name LIKE ?",
+            Integer.class, prefix + "-%");
+        if (rows == null || rows != committed.size()) {
+            errors.add("本次寫入 " + rows + " 張訂單，回傳的 id 只有 " + committed.size() + " 個");
+        }
+    }
+
+    // 材料需求寫到正確的訂單
+    private void verifyMaterials() {
+        Map<Long, int[]> actual = new HashMap<>();
+        forChunks(new ArrayList<>(committed.keySet()), (placeholders, args) -> jdbc.query(
+            "SELECT order_id, material, qty_needed FROM order_materials WHERE order_id IN (" + placeholders + ")",
+            rs -> {
+                int m = List.of(OrderInput.MATERIAL_CODES).indexOf(rs.getString("material").trim());
+                actual.computeIfAbsent(rs.getLong("order_id"), k -> new int[OrderInput.MATERIAL_CODES.length])[m]
+                    += rs.getInt("qty_needed");
+            }, args));
+        for (Map.Entry<Long, OrderInput> e : committed.entrySet()) {
+            int[] expected = e.getValue().getQuantities();
+            int[] got = actual.getOrDefault(e.getKey(), new int[expected.length]);
+            if (!Arrays.equals(expected, got)) {
+                errors.add("id " + e.getKey() + " 材料需求應為 " + Arrays.toString(expected)
+                    + "，資料列是 " + Arrays.toString(got));
+            }
+        }
+    }
+
+    // 每張訂單的 trigram 數 = 機台名稱不重複的 3 字元片段數
+    private void verifyNameGrams() {
+        Map<Long, Integer> actual = new HashMap<>();
+        forChunks(new ArrayList<>(committed.keySet()), (placeholders, args) -> jdbc.query(
+            "SELECT order_id, COUNT(*) AS grams FROM order_name_grams WHERE order_id IN (" + placeholders + ") "
+                + "GROUP BY order_id",
+            rs -> { actual.put(rs.getLong("order_id"), rs.getInt("grams")); }, args));
+        for (Map.Entry<Long, OrderInput> e : committed.entrySet()) {
+            String upper = e.getValue().getMachineName().toUpperCase(Locale.ROOT);
+            Set<String> grams = new HashSet<>();
+            for (int i = 0; i + 3 <= upper.length(); i++) {
+                grams.add(upper.substring(i, i + 3));
+            }
+            int got = actual.getOrDefault(e.getKey(), 0);
+            if (got != grams.size()) {
+                errors.add("id " + e.getKey() + " trigram 應為 " + grams.size() + " 筆，資料列是 " + got);
+            }
+        }
+    }
+
+    private void verifyRolledBack() {
+        forChunks(new ArrayList<>(rolledBack), (placeholders, args) -> {
+            for (String table : List.of("orders WHERE id", "order_materials WHERE order_id",
+                    "order_name_grams WHERE order_id")) {
+                Integer rows = jdbc.queryForObject(
+                    "SELECT COUNT(*) FROM " + table + " IN (" + placeholders + ")", Integer.class, args);
+                if (rows != null && rows > 0) {
+                    errors.add("回滾的訂單在 " + table.split(" ")[0] + " 留下 " + rows + " 筆資料列");
+                }
+            }
+        });
+    }
+
+    private static void forChunks(List<Long> ids, ChunkQuery query) {
+        for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + IN_CHUNK));
+            query.run(String.join(",", Collections.nCopies(chunk.size(), "?")), chunk.toArray());
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkQuery {
+        void run(String placeholders, Object[] args);
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("參數格式為 --name=value: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+}
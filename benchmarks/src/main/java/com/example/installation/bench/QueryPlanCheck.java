@@ -0,0 +1,90 @@
+package com.example.installation.bench;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 熱門查詢的執行計畫檢查：在填入合成資料的 H2 (套用 devh2 migration) 上對 DbOrderService 的熱門查詢
+ * 執行 EXPLAIN，確認使用 V3__hot_query_indexes 建立的索引而不是整表掃描
+ * <pre>
+ * java -cp target/benchmarks.jar com.example.installation.bench.QueryPlanCheck --orders=100000 --inbound-plans=20000
+ * </pre>
+ * 加上 --verbose=true 會印出完整的執行計畫。任何一個查詢沒用到預期的索引時以 exit code 1 結束。
+ */
+public final class QueryPlanCheck {
+
+    private QueryPlanCheck() {
+    }
+
+    /**
+     * 查詢 (與 DbOrderService 相同的 SQL，參數代入常數) -> 預期使用的索引
+     */
+    private static Map<String, String> hotQueries(LocalDate afterDueDate) {
+        Map<String, String> queries = new LinkedHashMap<>();
+        // attachMaterials：每張訂單的材料需求
+        queries.put(
+            "SELECT order_id, material, qty_needed FROM order_materials WHERE order_id IN (1, 2, 3) ORDER BY order_id, id",
+            "idx_order_materials_order");
+        // loadInventoryStatus：庫存狀態
+        queries.put(
+            "SELECT i.material, i.qty_on_hand, COALESCE(SUM(om.qty_needed), 0) as total_demand " +
+            "FROM inventory i LEFT JOIN order_materials om ON i.material = om.material " +
+            "GROUP BY i.material, i.qty_on_hand ORDER BY i.material",
+            "idx_order_materials_material");
+        // getInboundPlans：到貨計劃
+        queries.put(
+            "SELECT material, arrival_date, qty FROM inbound_plans ORDER BY arrival_date, material",
+            "idx_inbound_plans_arrival");
+        // findPage：訂單列表與 keyset 分頁
+        queries.put(
+            "SELECT id, machine_name, due_date, eta_date, status FROM orders " +
+            "WHERE (due_date > DATE '" + afterDueDate + "' OR (due_date = DATE '" + afterDueDate + "' AND id > 100)) " +
+            "ORDER BY due_date, id OFFSET 0 ROWS FETCH NEXT 51 ROWS ONLY",
+            "idx_orders_due");
+        return queries;
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = parseArgs(args);
+        int orders = Integer.parseInt(options.getOrDefault("orders", "100000"));
+        int inboundPlans = Integer.parseInt(options.getOrDefault("inbound-plans", "20000"));
+        boolean verbose = Boolean.parseBoolean(options.getOrDefault("verbose", "false"));
+
+        JdbcTemplate jdbc = BenchmarkDatabase.create(orders, inboundPlans);
+        // 更新統計資訊，讓最佳化器依實際資料量選擇計畫
+        jdbc.execute("ANALYZE");
+
+        Map<String, String> queries = hotQueries(LocalDate.now().plusDays(30));
+        int failures = 0;
+        for (Map.Entry<String, String> query : queries.entrySet()) {
+            String plan = jdbc.queryForObject("EXPLAIN " + query.getKey(), String.class);
+            boolean used = plan.toLowerCase(Locale.ROOT).contains(query.getValue().toLowerCase(Locale.ROOT));
+            if (!used) {
+                failures++;
+            }
+            System.out.printf("%s %s%n    %s%n", used ? "✓" : "✗", query.getValue(), query.getKey());
+            if (verbose || !used) {
+                System.out.println(plan.replaceAll("(?m)^", "      "));
+            }
+        }
+        System.out.printf("%d 張訂單、%d 筆到貨計劃：%d/%d 個查詢使用預期索引%n",
+            orders, inboundPlans, queries.size() - failures, queries.size());
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("參數格式為 --name=value: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+}
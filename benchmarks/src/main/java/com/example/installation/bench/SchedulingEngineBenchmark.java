@@ -0,0 +1,74 @@
+package com.example.installation.bench;
+
+import com.example.installation.schedule.SchedulingEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整排程：依優先順序把所有訂單排入一年的產能與到貨時間軸 (不含資料庫讀寫)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchedulingEngineBenchmark {
+    private static final int HORIZON_DAYS = 365;
+
+    @Param({ "1000", "50000" })
+    int orders;
+
+    private int[] dailyCapacity;
+    private long[][] cumulativeSupply;
+    private int[][] quantities;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(BenchmarkDatabase.SEED);
+        quantities = new int[orders][BenchmarkDatabase.MATERIAL_CODES.length];
+        long[] totalDemand = new long[BenchmarkDatabase.MATERIAL_CODES.length];
+        for (int i = 0; i < orders; i++) {
+            for (int m = 0; m < totalDemand.length; m++) {
+                quantities[i][m] = random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(60);
+                totalDemand[m] += quantities[i][m];
+            }
+        }
+
+        // 產能與到貨量約為需求的 90%，讓部分訂單排不進範圍內 (與實際尖峰相近)
+        long totalUnits = 0;
+        for (long demand : totalDemand) {
+            totalUnits += demand;
+        }
+        dailyCapacity = new int[HORIZON_DAYS];
+        int perDay = (int) Math.max(24, totalUnits * 9 / 10 / HORIZON_DAYS);
+        Arrays.fill(dailyCapacity, perDay);
+
+        cumulativeSupply = new long[totalDemand.length][HORIZON_DAYS];
+        for (int m = 0; m < totalDemand.length; m++) {
+            long perArrival = Math.max(1, totalDemand[m] * 9 / 10 / 52);
+            long running = 0;
+            for (int d = 0; d < HORIZON_DAYS; d++) {
+                if (d % 7 == 0) {
+                    running += perArrival;
+                }
+                cumulativeSupply[m][d] = running;
+            }
+        }
+    }
+
+    @Benchmark
+    public int fullSchedule() {
+        SchedulingEngine engine = new SchedulingEngine(dailyCapacity, cumulativeSupply);
+        int scheduled = 0;
+        for (int i = 0; i < orders; i++) {
+            if (engine.schedule(i, quantities[i]) != SchedulingEngine.UNSCHEDULED) {
+                scheduled++;
+            }
+        }
+        return scheduled + engine.getTaskCount();
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.installation.baw;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 所有 BAW REST 呼叫的保護層：bulkhead (同時呼叫數上限) + 斷路器
+ *
+ * BAW 停機時每次呼叫都要等到連線/讀取逾時，沒有保護會把 Tomcat 執行緒全部卡住。
+ * 斷路器開啟時直接丟出 {@link BAWUnavailableException}，不占用任何連線；
+ * 呼叫端 (outbox dispatcher) 把工作留在佇列等斷路器恢復。
+ * 只有連線失敗、逾時與 5xx 算失敗；4xx 代表 BAW 有回應，不影響斷路器。
+ *
+ * 指標：baw.calls (operation/outcome/status 耗時)、baw.calls.rejected (被斷路器或 bulkhead 擋下)、
+ * baw.circuit.state (0=CLOSED, 1=OPEN, 2=HALF_OPEN)、baw.circuit.failure.rate、baw.bulkhead.in.flight。
+ */
+@Component
+public class BAWCallGuard {
+    private static final Logger logger = LoggerFactory.getLogger(BAWCallGuard.class);
+
+    private final BAWCircuitBreaker breaker;
+    private final Semaphore bulkhead;
+    private final int maxConcurrentCalls;
+    private final long maxWaitMillis;
+    private final AtomicLong bulkheadRejected = new AtomicLong();
+    private final MeterRegistry meterRegistry;
+
+    public BAWCallGuard(
+            @Value("${baw.circuit-breaker.window-size:20}") int windowSize,
+            @Value("${baw.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${baw.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+            @Value("${baw.circuit-breaker.open-duration-ms:30000}") long openDurationMillis,
+            @Value("${baw.circuit-breaker.half-open-probes:3}") int halfOpenProbes,
+            @Value("${baw.bulkhead.max-concurrent-calls:10}") int maxConcurrentCalls,
+            @Value("${baw.bulkhead.max-wait-ms:500}") long maxWaitMillis,
+            MeterRegistry meterRegistry) {
+        this.breaker = new BAWCircuitBreaker(windowSize, minimumCalls, failureRateThreshold, openDurationMillis, halfOpenProbes);
+        this.bulkhead = new Semaphore(maxConcurrentCalls, true);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitMillis = maxWaitMillis;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("baw.circuit.state", breaker, b -> b.getState().ordinal())
+            .description("BAW 斷路器狀態 (0=CLOSED, 1=OPEN, 2=HALF_OPEN)")
+            .register(meterRegistry);
+        Gauge.builder("baw.circuit.failure.rate", breaker, BAWCircuitBreaker::getFailureRate)
+            .description("BAW 斷路器視窗內失敗率 (%)")
+            .register(meterRegistry);
+        Gauge.builder("baw.bulkhead.in.flight", bulkhead, b -> maxConcurrentCalls - b.availablePermits())
+            .description("BAW 進行中的呼叫數")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 在 bulkhead 與斷路器保護下執行一次 BAW 呼叫
+     */
+    public <T> T execute(String operation, Callable<T> call) throws Exception {
+        if (!bulkhead.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+            bulkheadRejected.incrementAndGet();
+            rejected(operation, "bulkhead");
+            throw new BAWUnavailableException("BAW 同時呼叫數已達上限 (" + maxConcurrentCalls + ")", maxWaitMillis);
+        }
+        try {
+            if (!breaker.tryAcquire()) {
+                rejected(operation, "circuitBreaker");
+                throw new BAWUnavailableException("BAW 斷路器開啟中，暫停呼叫", breaker.remainingOpenMillis());
+            }
+            BAWCircuitBreaker.State before = breaker.getState();
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try {
+                T result = call.call();
+                breaker.onSuccess();
+                sample.stop(callTimer(operation, "success", "2xx"));
+                logTransition(operation, before);
+                return result;
+            } catch (Exception e) {
+                boolean failure = isFailure(e);
+                if (failure) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onSuccess();
+                }
+                sample.stop(callTimer(operation, failure ? "failure" : "error", statusOf(e)));
+                logTransition(operation, before);
+                throw e;
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * 斷路器開啟中 (尚未到試探時間)；背景工作可據此暫停送出
+     */
+    public boolean isOpen() {
+        return breaker.getState() == BAWCircuitBreaker.State.OPEN;
+    }
+
+    public long remainingOpenMillis() {
+        return breaker.remainingOpenMillis();
+    }
+
+    /**
+     * 斷路器與 bulkhead 狀態
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("state", breaker.getState().name());
+        metrics.put("failureRate", breaker.getFailureRate());
+        metrics.put("windowCalls", breaker.getWindowCount());
+        metrics.put("totalCalls", breaker.getTotalCalls());
+        metrics.put("totalFailures", breaker.getTotalFailures());
+        metrics.put("rejectedByBreaker", breaker.getRejectedCalls());
+        metrics.put("timesOpened", breaker.getTimesOpened());
+        metrics.put("remainingOpenMillis", breaker.remainingOpenMillis());
+        metrics.put("inFlightCalls", maxConcurrentCalls - bulkhead.availablePermits());
+        metrics.put("maxConcurrentCalls", maxConcurrentCalls);
+        metrics.put("rejectedByBulkhead", bulkheadRejected.get());
+        return metrics;
+    }
+
+    private Timer callTimer(String operation, String outcome, String status) {
+        return Timer.builder("baw.calls")
+            .description("BAW REST 呼叫耗時")
+            .tag("operation", operation)
+            .tag("outcome", outcome)
+            .tag("status", status)
+            .register(meterRegistry);
+    }
+
+    private void rejected(String operation, String reason) {
+        Counter.builder("baw.calls.rejected")
+            .description("未送出即被擋下的 BAW 呼叫")
+            .tag("operation", operation)
+            .tag("reason", reason)
+            .register(meterRegistry)
+            .increment();
+    }
+
+    // HTTP 狀態碼；連線失敗、逾時等沒有回應時為 IO_ERROR
+    private static String statusOf(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof HttpStatusCodeException) {
+                return String.valueOf(((HttpStatusCodeException) t).getRawStatusCode());
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return isFailure(e) ? "IO_ERROR" : "NONE";
+    }
+
+    private void logTransition(String operation, BAWCircuitBreaker.State before) {
+        BAWCircuitBreaker.State after = breaker.getState();
+        if (after != before) {
+            logger.warn("🔌 BAW 斷路器 {} → {} (呼叫: {})", before, after, operation);
+        }
+    }
+
+    // 連線失敗、逾時、5xx 才算 BAW 故障
+    private static boolean isFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ResourceAccessException || t instanceof HttpServerErrorException || t instanceof IOException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.installation.baw;
+
+/**
+ * 以最近 N 次呼叫結果 (滑動視窗) 計算失敗率的斷路器
+ *
+ * <ul>
+ *   <li>CLOSED：正常放行；視窗內至少 minimumCalls 次且失敗率達門檻時轉為 OPEN</li>
+ *   <li>OPEN：直接拒絕；openDurationMillis 之後轉為 HALF_OPEN</li>
+ *   <li>HALF_OPEN：只放行 halfOpenProbes 次試探；全部成功回到 CLOSED，任一失敗重新 OPEN</li>
+ * </ul>
+ * 呼叫量不大 (每張訂單一次)，狀態轉換直接用 synchronized。
+ */
+class BAWCircuitBreaker {
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] window;      // true = 失敗
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openDurationMillis;
+    private final int halfOpenProbes;
+
+    private State state = State.CLOSED;
+    private int windowIndex = 0;
+    private int windowCount = 0;
+    private int windowFailures = 0;
+    private long openedAt = 0;
+    private int probesIssued = 0;
+    private int probesSucceeded = 0;
+
+    // 累計統計
+    private long totalCalls = 0;
+    private long totalFailures = 0;
+    private long rejectedCalls = 0;
+    private long timesOpened = 0;
+
+    BAWCircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold,
+                      long openDurationMillis, int halfOpenProbes) {
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationMillis = openDurationMillis;
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+    }
+
+    /**
+     * 是否放行這次呼叫；放行後必須呼叫 {@link #onSuccess()} 或 {@link #onFailure()}
+     */
+    synchronized boolean tryAcquire() {
+        long now = System.currentTimeMillis();
+        if (state == State.OPEN && now - openedAt >= openDurationMillis) {
+            state = State.HALF_OPEN;
+            probesIssued = 0;
+            probesSucceeded = 0;
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (probesIssued < halfOpenProbes) {
+                    probesIssued++;
+                    return true;
+                }
+                rejectedCalls++;
+                return false;
+            default:
+                rejectedCalls++;
+                return false;
+        }
+    }
+
+    synchronized void onSuccess() {
+        totalCalls++;
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenProbes) {
+                state = State.CLOSED;
+                resetWindow();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    synchronized void onFailure() {
+        totalCalls++;
+        totalFailures++;
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && windowCount >= minimumCalls
+                && windowFailures * 100 >= failureRateThreshold * windowCount) {
+            open();
+        }
+    }
+
+    /**
+     * 距離下次試探的剩餘時間 (毫秒)；非 OPEN 時為 0
+     */
+    synchronized long remainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openDurationMillis - (System.currentTimeMillis() - openedAt));
+    }
+
+    synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    synchronized int getFailureRate() {
+        return windowCount == 0 ? 0 : windowFailures * 100 / windowCount;
+    }
+
+    synchronized int getWindowCount() { return windowCount; }
+    synchronized long getTotalCalls() { return totalCalls; }
+    synchronized long getTotalFailures() { return totalFailures; }
+    synchronized long getRejectedCalls() { return rejectedCalls; }
+    synchronized long getTimesOpened() { return timesOpened; }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        timesOpened++;
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+}
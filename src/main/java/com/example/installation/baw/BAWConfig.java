@@ -2,13 +2,24 @@ package com.example.installation.baw;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.DefaultHostnameVerifier;
+import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
+import org.apache.hc.client5.http.ssl.TrustAllStrategy;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
-import javax.net.ssl.*;
-import java.security.SecureRandom;
-import java.security.cert.X509Certificate;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
 import java.util.List;
 
 @Configuration
@@ -26,37 +37,66 @@ public class BAWConfig {
     private int connectionTimeout = 30000; // 30秒
     private int readTimeout = 60000; // 60秒
 
-    @Bean
-    public RestTemplate bawRestTemplate() throws Exception {
-        RestTemplate rt;
+    // 連線池設定
+    private int maxConnections = 20;            // 連線池總上限
+    private int maxConnectionsPerRoute = 10;    // 每個 host:port 上限
+    private int connectionRequestTimeout = 5000; // 等待連線池空出連線的上限 (毫秒)
+    private int idleEvictSeconds = 30;          // 閒置超過此秒數的連線由背景執行緒關閉
+    private int connectionTtlSeconds = 300;     // 連線最長存活時間，避免長期黏在同一台後端
+    private int validateAfterInactivityMs = 2000; // 閒置超過此時間再使用前先檢查連線是否仍有效
+    
+    // JWT Token 在到期前多久由背景更新 (秒)
+    private int tokenRefreshAheadSeconds = 300;
 
+    /**
+     * BAW 專用的 httpclient5 連線池
+     *
+     * keep-alive 連線重用時不需要重新 TCP/TLS 握手；新連線共用同一個 SSLContext，
+     * JSSE 的 session cache 可做 TLS session resumption (省去完整握手)。
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient bawHttpClient() throws Exception {
+        SSLContext sslContext;
+        HostnameVerifier hostnameVerifier;
         if (sslInsecure) {
-            // ⚠️ DEV ONLY: 信任所有憑證 + 關閉主機名驗證
-            TrustManager[] trustAllCerts = new TrustManager[]{
-                new X509TrustManager() {
-                    public void checkClientTrusted(X509Certificate[] certs, String authType) {}
-                    public void checkServerTrusted(X509Certificate[] certs, String authType) {}
-                    public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[0]; }
-                }
-            };
+            // ⚠️ DEV ONLY: 信任所有憑證 + 關閉主機名驗證 (只套用在 BAW 連線，不改 JVM 全域設定)
+            sslContext = SSLContexts.custom().loadTrustMaterial(TrustAllStrategy.INSTANCE).build();
+            hostnameVerifier = NoopHostnameVerifier.INSTANCE;
+        } else {
+            sslContext = SSLContexts.createSystemDefault();
+            hostnameVerifier = new DefaultHostnameVerifier();
+        }
 
-            SSLContext sslContext = SSLContext.getInstance("TLS");
-            sslContext.init(null, trustAllCerts, new SecureRandom());
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setSSLSocketFactory(new SSLConnectionSocketFactory(sslContext, hostnameVerifier))
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(maxConnectionsPerRoute)
+            .setConnectionTimeToLive(TimeValue.ofSeconds(connectionTtlSeconds))
+            .setValidateAfterInactivity(TimeValue.ofMilliseconds(validateAfterInactivityMs))
+            .setDefaultSocketConfig(SocketConfig.custom()
+                .setSoTimeout(Timeout.ofMilliseconds(readTimeout))
+                .build())
+            .build();
 
-            HttpsURLConnection.setDefaultSSLSocketFactory(sslContext.getSocketFactory());
-            HttpsURLConnection.setDefaultHostnameVerifier((hostname, session) -> true);
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(Timeout.ofMilliseconds(connectionTimeout))
+            .setResponseTimeout(Timeout.ofMilliseconds(readTimeout))
+            .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeout))
+            .build();
 
-            // 設定超時
-            SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-            factory.setConnectTimeout(connectionTimeout);
-            factory.setReadTimeout(readTimeout);
-            rt = new RestTemplate(factory);
-        } else {
-            SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-            factory.setConnectTimeout(connectionTimeout);
-            factory.setReadTimeout(readTimeout);
-            rt = new RestTemplate(factory);
-        }
+        return HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            // 不綁定使用者狀態，所有請求共用連線
+            .disableConnectionState()
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds))
+            .build();
+    }
+
+    @Bean
+    public RestTemplate bawRestTemplate(CloseableHttpClient bawHttpClient) {
+        RestTemplate rt = new RestTemplate(new HttpClient5RequestFactory(bawHttpClient));
 
         // 可以加上共用 Header
         rt.setInterceptors(List.of((req, body, ex) -> {
@@ -124,4 +164,25 @@ public class BAWConfig {
     
     public int getReadTimeout() { return readTimeout; }
     public void setReadTimeout(int readTimeout) { this.readTimeout = readTimeout; }
+    
+    public int getMaxConnections() { return maxConnections; }
+    public void setMaxConnections(int maxConnections) { this.maxConnections = maxConnections; }
+    
+    public int getMaxConnectionsPerRoute() { return maxConnectionsPerRoute; }
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) { this.maxConnectionsPerRoute = maxConnectionsPerRoute; }
+    
+    public int getConnectionRequestTimeout() { return connectionRequestTimeout; }
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) { this.connectionRequestTimeout = connectionRequestTimeout; }
+    
+    public int getIdleEvictSeconds() { return idleEvictSeconds; }
+    public void setIdleEvictSeconds(int idleEvictSeconds) { this.idleEvictSeconds = idleEvictSeconds; }
+    
+    public int getConnectionTtlSeconds() { return connectionTtlSeconds; }
+    public void setConnectionTtlSeconds(int connectionTtlSeconds) { this.connectionTtlSeconds = connectionTtlSeconds; }
+    
+    public int getValidateAfterInactivityMs() { return validateAfterInactivityMs; }
+    public void setValidateAfterInactivityMs(int validateAfterInactivityMs) { this.validateAfterInactivityMs = validateAfterInactivityMs; }
+    
+    public int getTokenRefreshAheadSeconds() { return tokenRefreshAheadSeconds; }
+    public void setTokenRefreshAheadSeconds(int tokenRefreshAheadSeconds) { this.tokenRefreshAheadSeconds = tokenRefreshAheadSeconds; }
 }
\ No newline at end of file
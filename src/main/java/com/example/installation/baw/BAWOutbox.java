@@ -0,0 +1,257 @@
+package com.example.installation.baw;
+
+import com.example.installation.model.InstallationJob;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BAW 流程啟動的 transactional outbox (baw_outbox 表)
+ *
+ * 建立訂單時在同一個交易內寫入一筆 PENDING，由 {@link BAWOutboxDispatcher} 在背景送出。
+ * 狀態：PENDING → SENDING (已被某個 dispatcher 領取) → SENT；重試次數用完則為 FAILED。
+ * SENDING 超過租約時間仍未完成 (程序中途停止) 會退回 PENDING 重送。
+ * 各狀態筆數以 baw.outbox.entries{status} 發布。
+ */
+@Component
+public class BAWOutbox implements MeterBinder {
+    public static final String PENDING = "PENDING";
+    public static final String SENDING = "SENDING";
+    public static final String SENT = "SENT";
+    public static final String FAILED = "FAILED";
+
+    // 同一次抓取的四個狀態共用一次 GROUP BY 查詢
+    private static final long STATS_TTL_MILLIS = 5_000;
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+    private volatile Map<String, Object> statsSnapshot = Map.of();
+    private volatile long statsLoadedAt;
+
+    public BAWOutbox(JdbcTemplate jdbc, ObjectMapper objectMapper) {
+        this.jdbc = jdbc;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 寫入待送出的流程啟動；必須在建立訂單的交易內呼叫
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(long orderId, InstallationJob job) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbc.update(
+            "INSERT INTO baw_outbox (order_id, payload, status, attempts, next_attempt_at, created_at) VALUES (?, ?, ?, 0, ?, ?)",
+            orderId, serialize(job), PENDING, now, now);
+    }
+
+    /**
+     * 批次寫入 (orderIds 與 jobs 同順序)；必須在建立訂單的交易內呼叫
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueAll(long[] orderIds, List<InstallationJob> jobs) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            rows.add(new Object[] { orderIds[i], serialize(jobs.get(i)), PENDING, now, now });
+        }
+        jdbc.batchUpdate(
+            "INSERT INTO baw_outbox (order_id, payload, status, attempts, next_attempt_at, created_at) VALUES (?, ?, ?, 0, ?, ?)",
+            rows);
+    }
+
+    private String serialize(InstallationJob job) {
+        try {
+            return objectMapper.writeValueAsString(job);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("無法序列化 BAW 工單: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 領取一批到期的 PENDING；以條件式 UPDATE 搶占，多個實例同時執行也不會重複送出
+     */
+    public List<Entry> claim(int batchSize) {
+        return claim(batchSize, 0);
+    }
+
+    /**
+     * 批次領取：未滿 batchSize 時，等最舊的一筆已等待 windowMillis 才領取 (讓短時間內的訂單湊成一批)
+     */
+    public List<Entry> claim(int batchSize, long windowMillis) {
+        LocalDateTime nowTime = LocalDateTime.now();
+        Timestamp now = Timestamp.valueOf(nowTime);
+        List<Long> candidates = new ArrayList<>();
+        LocalDateTime[] oldest = { null };
+        jdbc.query(
+            "SELECT id, created_at FROM baw_outbox WHERE status = ? AND next_attempt_at <= ? ORDER BY id " +
+            "OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY",
+            rs -> {
+                candidates.add(rs.getLong("id"));
+                LocalDateTime created = rs.getTimestamp("created_at").toLocalDateTime();
+                if (oldest[0] == null || created.isBefore(oldest[0])) {
+                    oldest[0] = created;
+                }
+            },
+            PENDING, now, batchSize);
+        if (candidates.isEmpty()
+                || (candidates.size() < batchSize && oldest[0].isAfter(nowTime.minusNanos(windowMillis * 1_000_000)))) {
+            return new ArrayList<>();
+        }
+
+        List<Entry> claimed = new ArrayList<>();
+        for (Long id : candidates) {
+            int updated = jdbc.update(
+                "UPDATE baw_outbox SET status = ?, claimed_at = ? WHERE id = ? AND status = ?",
+                SENDING, now, id, PENDING);
+            if (updated == 1) {
+                claimed.addAll(jdbc.query(
+                    "SELECT id, order_id, payload, attempts FROM baw_outbox WHERE id = ?",
+                    (rs, rowNum) -> new Entry(
+                        rs.getLong("id"), rs.getLong("order_id"), rs.getString("payload"), rs.getInt("attempts")),
+                    id));
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * 把租約過期的 SENDING 退回 PENDING
+     */
+    public int releaseExpired(LocalDateTime claimedBefore) {
+        return jdbc.update(
+            "UPDATE baw_outbox SET status = ? WHERE status = ? AND claimed_at < ?",
+            PENDING, SENDING, Timestamp.valueOf(claimedBefore));
+    }
+
+    /**
+     * 送出成功：PIID 寫回訂單
+     */
+    @Transactional
+    public void markSent(Entry entry, String piid) {
+        jdbc.update("UPDATE orders SET baw_piid = ? WHERE id = ?", piid, entry.getOrderId());
+        jdbc.update(
+            "UPDATE baw_outbox SET status = ?, attempts = ?, sent_at = ?, last_error = NULL WHERE id = ?",
+            SENT, entry.getAttempts() + 1, Timestamp.valueOf(LocalDateTime.now()), entry.getId());
+    }
+
+    /**
+     * 整批送出成功：同一個 PIID 寫回批次內每張訂單
+     */
+    @Transactional
+    public void markSent(List<Entry> entries, String piid) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbc.batchUpdate("UPDATE orders SET baw_piid = ? WHERE id = ?",
+            entries, entries.size(), (ps, entry) -> {
+                ps.setString(1, piid);
+                ps.setLong(2, entry.getOrderId());
+            });
+        jdbc.batchUpdate("UPDATE baw_outbox SET status = ?, attempts = ?, sent_at = ?, last_error = NULL WHERE id = ?",
+            entries, entries.size(), (ps, entry) -> {
+                ps.setString(1, SENT);
+                ps.setInt(2, entry.getAttempts() + 1);
+                ps.setTimestamp(3, now);
+                ps.setLong(4, entry.getId());
+            });
+    }
+
+    /**
+     * 送出失敗：nextAttemptAt 為 null 表示不再重試
+     */
+    public void markFailed(Entry entry, String error, LocalDateTime nextAttemptAt) {
+        String message = error == null ? "unknown" : (error.length() > 500 ? error.substring(0, 500) : error);
+        if (nextAttemptAt == null) {
+            jdbc.update(
+                "UPDATE baw_outbox SET status = ?, attempts = ?, last_error = ? WHERE id = ?",
+                FAILED, entry.getAttempts() + 1, message, entry.getId());
+        } else {
+            jdbc.update(
+                "UPDATE baw_outbox SET status = ?, attempts = ?, last_error = ?, next_attempt_at = ? WHERE id = ?",
+                PENDING, entry.getAttempts() + 1, message, Timestamp.valueOf(nextAttemptAt), entry.getId());
+        }
+    }
+
+    /**
+     * 未實際送出 (斷路器開啟等)：退回 PENDING，不計入重試次數
+     */
+    public void release(Entry entry, LocalDateTime nextAttemptAt) {
+        jdbc.update(
+            "UPDATE baw_outbox SET status = ?, next_attempt_at = ? WHERE id = ? AND status = ?",
+            PENDING, Timestamp.valueOf(nextAttemptAt), entry.getId(), SENDING);
+    }
+
+    public InstallationJob readJob(Entry entry) throws JsonProcessingException {
+        return objectMapper.readValue(entry.getPayload(), InstallationJob.class);
+    }
+
+    /**
+     * 各狀態筆數
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (String status : List.of(PENDING, SENDING, SENT, FAILED)) {
+            stats.put(status, 0);
+        }
+        jdbc.query("SELECT status, COUNT(*) AS cnt FROM baw_outbox GROUP BY status",
+            rs -> { stats.put(rs.getString("status"), rs.getInt("cnt")); });
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String status : List.of(PENDING, SENDING, SENT, FAILED)) {
+            Gauge.builder("baw.outbox.entries", this, outbox -> outbox.cachedCount(status))
+                .description("BAW outbox 各狀態筆數")
+                .tag("status", status)
+                .register(registry);
+        }
+    }
+
+    private double cachedCount(String status) {
+        long now = System.currentTimeMillis();
+        if (now - statsLoadedAt > STATS_TTL_MILLIS) {
+            try {
+                statsSnapshot = getStats();
+            } catch (DataAccessException e) {
+                return Double.NaN;
+            }
+            statsLoadedAt = now;
+        }
+        return ((Number) statsSnapshot.getOrDefault(status, 0)).doubleValue();
+    }
+
+    /**
+     * 已領取的 outbox 紀錄
+     */
+    public static class Entry {
+        private final long id;
+        private final long orderId;
+        private final String payload;
+        private final int attempts;
+
+        Entry(long id, long orderId, String payload, int attempts) {
+            this.id = id;
+            this.orderId = orderId;
+            this.payload = payload;
+            this.attempts = attempts;
+        }
+
+        public long getId() { return id; }
+        public long getOrderId() { return orderId; }
+        public String getPayload() { return payload; }
+        public int getAttempts() { return attempts; }
+    }
+}
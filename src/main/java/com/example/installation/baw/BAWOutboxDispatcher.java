@@ -0,0 +1,246 @@
+package com.example.installation.baw;
+
+import com.example.installation.model.InstallationJob;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 背景送出 baw_outbox：每次輪詢把到期的紀錄分批送到 BAW，直到沒有到期紀錄為止
+ *
+ * 失敗以指數退避重試 (initial * 2^attempts，上限 max-backoff，加 ±20% 抖動避免同時重送)，
+ * 超過 max-attempts 標記為 FAILED 等待人工處理。
+ * 斷路器開啟時不領取新工作，已領取但被拒絕的紀錄退回 PENDING 且不計入重試次數。
+ *
+ * 批次模式 (baw.batch.enabled)：一批訂單合併成一次流程啟動，PIID 寫回批次內每張訂單；
+ * 未滿 baw.batch.max-size 時等最舊的一筆超過 baw.batch.window-ms 才送出。
+ * 整批失敗時改為逐筆送出，避免一張有問題的訂單拖累整批。
+ *
+ * 指標：baw.outbox.deliveries{mode, result=sent/retry/failed/deferred} 為每筆訂單的處理結果，
+ * baw.outbox.attempts 為送出成功時累計的嘗試次數 (1 = 第一次就成功)。
+ */
+@Component
+public class BAWOutboxDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(BAWOutboxDispatcher.class);
+
+    private final BAWOutbox outbox;
+    private final BAWService bawService;
+    private final BAWCallGuard callGuard;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long leaseSeconds;
+    private final boolean batchEnabled;
+    private final int maxBatchSize;
+    private final long batchWindowMillis;
+    private final MeterRegistry meterRegistry;
+
+    public BAWOutboxDispatcher(BAWOutbox outbox, BAWService bawService, BAWCallGuard callGuard,
+            @Value("${baw.outbox.batch-size:20}") int batchSize,
+            @Value("${baw.outbox.max-attempts:10}") int maxAttempts,
+            @Value("${baw.outbox.initial-backoff-ms:5000}") long initialBackoffMillis,
+            @Value("${baw.outbox.max-backoff-ms:600000}") long maxBackoffMillis,
+            @Value("${baw.outbox.lease-seconds:300}") long leaseSeconds,
+            @Value("${baw.batch.enabled:false}") boolean batchEnabled,
+            @Value("${baw.batch.max-size:50}") int maxBatchSize,
+            @Value("${baw.batch.window-ms:1000}") long batchWindowMillis,
+            MeterRegistry meterRegistry) {
+        this.outbox = outbox;
+        this.bawService = bawService;
+        this.callGuard = callGuard;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.leaseSeconds = leaseSeconds;
+        this.batchEnabled = batchEnabled;
+        this.maxBatchSize = maxBatchSize;
+        this.batchWindowMillis = batchWindowMillis;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${baw.outbox.poll-interval-ms:2000}",
+               initialDelayString = "${baw.outbox.poll-interval-ms:2000}")
+    public void dispatch() {
+        try {
+            int released = outbox.releaseExpired(LocalDateTime.now().minusSeconds(leaseSeconds));
+            if (released > 0) {
+                logger.warn("♻️ {} 筆 BAW outbox 租約過期，退回重送", released);
+            }
+
+            int claimSize = batchEnabled ? maxBatchSize : batchSize;
+            List<BAWOutbox.Entry> batch;
+            do {
+                // 斷路器開啟時工作留在 outbox，等試探時間到再送
+                if (callGuard.isOpen()) {
+                    return;
+                }
+                batch = batchEnabled ? outbox.claim(claimSize, batchWindowMillis) : outbox.claim(claimSize);
+                if (batchEnabled && batch.size() > 1) {
+                    if (!sendBatch(batch)) {
+                        return;
+                    }
+                    continue;
+                }
+                if (!sendEach(batch)) {
+                    return;
+                }
+            } while (batch.size() == claimSize);
+        } catch (Exception e) {
+            // 資料庫暫時無法連線等情況，下一輪再試
+            logger.error("❌ BAW outbox 輪詢失敗: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 整批合併成一次流程啟動
+     *
+     * @return false 表示 BAW 暫時不可用，這一輪應停止送出
+     */
+    private boolean sendBatch(List<BAWOutbox.Entry> batch) {
+        List<BAWOutbox.Entry> entries = new ArrayList<>(batch.size());
+        List<InstallationJob> jobs = new ArrayList<>(batch.size());
+        for (BAWOutbox.Entry entry : batch) {
+            try {
+                jobs.add(outbox.readJob(entry));
+                entries.add(entry);
+            } catch (Exception e) {
+                // 內容無法解析，重試也不會成功
+                outbox.markFailed(entry, "payload 無法解析: " + e.getMessage(), null);
+                delivered("batch", "failed", 1);
+                logger.error("❌ 訂單 {} BAW outbox 內容無法解析: {}", entry.getOrderId(), e.getMessage());
+            }
+        }
+        if (entries.isEmpty()) {
+            return true;
+        }
+
+        Map<String, Object> result = bawService.startProcessBatch(jobs);
+        String piid = null;
+        if (Boolean.TRUE.equals(result.get("success"))) {
+            piid = (String) result.get("piid");
+        } else if (Boolean.FALSE.equals(result.get("enabled"))) {
+            piid = (String) result.get("mockPiid");
+        }
+        if (piid != null) {
+            outbox.markSent(entries, piid);
+            delivered("batch", "sent", entries.size());
+            entries.forEach(this::recordAttempts);
+            logger.info("✅ {} 張訂單以單一 BAW 流程啟動，PIID={}", entries.size(), piid);
+            return true;
+        }
+        if (Boolean.TRUE.equals(result.get("unavailable"))) {
+            releaseRemaining(entries);
+            return false;
+        }
+
+        logger.warn("⚠️ 批次 BAW 流程啟動失敗，改為逐筆送出: {}", result.get("error"));
+        return sendEach(entries);
+    }
+
+    private boolean sendEach(List<BAWOutbox.Entry> entries) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (!send(entries.get(i))) {
+                releaseRemaining(entries.subList(i + 1, entries.size()));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return false 表示 BAW 暫時不可用 (斷路器/bulkhead)，這一輪應停止送出
+     */
+    private boolean send(BAWOutbox.Entry entry) {
+        String error;
+        try {
+            InstallationJob job = outbox.readJob(entry);
+            Map<String, Object> result = bawService.startProcess(job);
+
+            if (Boolean.TRUE.equals(result.get("success"))) {
+                String piid = (String) result.get("piid");
+                outbox.markSent(entry, piid);
+                delivered("single", "sent", 1);
+                recordAttempts(entry);
+                logger.info("✅ 訂單 {} BAW 流程啟動成功，PIID={}", entry.getOrderId(), piid);
+                return true;
+            }
+            if (Boolean.FALSE.equals(result.get("enabled"))) {
+                String piid = (String) result.get("mockPiid");
+                outbox.markSent(entry, piid);
+                delivered("single", "sent", 1);
+                recordAttempts(entry);
+                logger.info("訂單 {} BAW 功能已停用，使用模擬 PIID={}", entry.getOrderId(), piid);
+                return true;
+            }
+            if (Boolean.TRUE.equals(result.get("unavailable"))) {
+                long retryAfter = ((Number) result.get("retryAfterMillis")).longValue();
+                outbox.release(entry, LocalDateTime.now().plusNanos(retryAfter * 1_000_000));
+                delivered("single", "deferred", 1);
+                return false;
+            }
+            error = String.valueOf(result.get("error"));
+        } catch (Exception e) {
+            error = e.getMessage();
+        }
+
+        int attempts = entry.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            outbox.markFailed(entry, error, null);
+            delivered("single", "failed", 1);
+            logger.error("❌ 訂單 {} BAW 流程啟動失敗 {} 次，停止重試: {}", entry.getOrderId(), attempts, error);
+        } else {
+            long delay = backoffMillis(attempts);
+            outbox.markFailed(entry, error, LocalDateTime.now().plusNanos(delay * 1_000_000));
+            delivered("single", "retry", 1);
+            logger.warn("⚠️ 訂單 {} BAW 流程啟動失敗 (第 {} 次)，{} ms 後重試: {}", entry.getOrderId(), attempts, delay, error);
+        }
+        return true;
+    }
+
+    private void releaseRemaining(List<BAWOutbox.Entry> entries) {
+        LocalDateTime next = LocalDateTime.now().plusNanos(callGuard.remainingOpenMillis() * 1_000_000);
+        for (BAWOutbox.Entry entry : entries) {
+            outbox.release(entry, next);
+        }
+        delivered(batchEnabled ? "batch" : "single", "deferred", entries.size());
+    }
+
+    private void delivered(String mode, String result, int count) {
+        if (count == 0) {
+            return;
+        }
+        Counter.builder("baw.outbox.deliveries")
+            .description("BAW outbox 每筆訂單的送出結果")
+            .tag("mode", mode)
+            .tag("result", result)
+            .register(meterRegistry)
+            .increment(count);
+    }
+
+    private void recordAttempts(BAWOutbox.Entry entry) {
+        DistributionSummary.builder("baw.outbox.attempts")
+            .description("BAW outbox 送出成功前的嘗試次數")
+            .register(meterRegistry)
+            .record(entry.getAttempts() + 1);
+    }
+
+    private long backoffMillis(int attempts) {
+        long delay = initialBackoffMillis << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, maxBackoffMillis);
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return (long) (delay * jitter);
+    }
+}
@@ -7,6 +7,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
@@ -23,86 +24,14 @@ public class BAWService {
     private final BAWConfig config;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    /**
-     * JWT Token 快取
-     */
-    private String jwtToken = null;
-    private long tokenExpiryTime = 0;
+    private final BAWTokenManager tokenManager;
+    private final BAWCallGuard callGuard;
 
-    public BAWService(RestTemplate bawRestTemplate, BAWConfig config) {
+    public BAWService(RestTemplate bawRestTemplate, BAWConfig config, BAWTokenManager tokenManager, BAWCallGuard callGuard) {
         this.restTemplate = bawRestTemplate;
         this.config = config;
-    }
-
-    /**
-     * 取得有效的 JWT Token
-     */
-    private String getValidJwtToken() {
-        // 檢查現有 token 是否還有效 (提前5分鐘更新)
-        if (jwtToken != null && System.currentTimeMillis() < (tokenExpiryTime - 300000)) {
-            return jwtToken;
-        }
-
-        try {
-            logger.info("🔑 取得新的 JWT Token...");
-            
-            String loginUrl = config.getBaseUrl() + "/ops/system/login";
-            logger.info("🌐 登入 URL: {}", loginUrl);
-            logger.info("👤 使用帳號: {}", config.getUsername());
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Accept", "application/json");
-            String authHeader = config.createBasicAuthHeader();
-            headers.set("Authorization", authHeader);
-            
-            logger.debug("🔐 Authorization Header: {}", authHeader);
-
-            // ✅ 加入正確的 request body
-            Map<String, Object> loginBody = Map.of(
-                "refresh_groups", true,
-                "requested_lifetime", 7200
-            );
-            String jsonBody = objectMapper.writeValueAsString(loginBody);
-            
-            logger.debug("📤 Request Body: {}", jsonBody);
-
-            HttpEntity<String> request = new HttpEntity<>(jsonBody, headers);
-            
-            logger.info("📤 發送登入請求...");
-            ResponseEntity<String> response = restTemplate.exchange(loginUrl, HttpMethod.POST, request, String.class);
-            
-            logger.info("📥 收到回應: Status={}", response.getStatusCode());
-            logger.debug("📥 Response Headers: {}", response.getHeaders());
-            logger.debug("📥 Response Body: {}", response.getBody());
-            
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                throw new RuntimeException("JWT 登入失敗: " + response.getStatusCode());
-            }
-
-            JsonNode jsonNode = objectMapper.readTree(response.getBody());
-            jwtToken = jsonNode.path("csrf_token").asText();
-            long expiration = jsonNode.path("expiration").asLong();
-            tokenExpiryTime = System.currentTimeMillis() + (expiration * 1000);
-
-            logger.info("✅ JWT Token 取得成功，有效期至: {}", new java.util.Date(tokenExpiryTime));
-            logger.debug("🎫 Token: {}", jwtToken.substring(0, Math.min(50, jwtToken.length())) + "...");
-            
-            return jwtToken;
-
-        } catch (Exception e) {
-            logger.error("❌ 取得 JWT Token 失敗", e);
-            
-            // 額外的錯誤診斷
-            if (e instanceof org.springframework.web.client.HttpClientErrorException) {
-                var httpError = (org.springframework.web.client.HttpClientErrorException) e;
-                logger.error("🔍 HTTP Status Code: {}", httpError.getStatusCode());
-                logger.error("🔍 Response Body: {}", httpError.getResponseBodyAsString());
-                logger.error("🔍 Response Headers: {}", httpError.getResponseHeaders());
-            }
-            
-            throw new RuntimeException("Failed to get JWT token: " + e.getMessage(), e);
-        }
+        this.tokenManager = tokenManager;
+        this.callGuard = callGuard;
     }
 
     /**
@@ -121,60 +50,87 @@ public class BAWService {
             }
             
 
-            // 取得 JWT Token
-            String token = getValidJwtToken();
-
-            // 使用配置中的 URL (可能需要調整路徑)
-            String url = config.getBaseUrl() + "/rest/bpm/wle/v1/process"
-                    + "?action=start"
-                    + "&bpdId=" + bpdId
-                    + "&processAppId=" + config.getProcessAppId()
-                    + "&parts=all";
+            // 經過 bulkhead 與斷路器；BAW 故障時直接失敗，不等逾時
+            return callGuard.execute("startProcess", () -> sendStartProcess(bpdId, params));
 
-            // 使用 JWT Token 建立 Headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(List.of(MediaType.APPLICATION_JSON));
-            headers.set("BPMCSRFToken", token);
-            String authHeader = config.createBasicAuthHeader();
-            headers.set("Authorization", authHeader);
-
-            // Body = 業務參數 JSON
-            String jsonBody = (params == null) ? "{}" : objectMapper.writeValueAsString(params);
-            HttpEntity<String> request = new HttpEntity<>(jsonBody, headers);
-
-            logger.info("🚀 啟動 BAW 流程: URL={}, BPD={}, jsonBody={}", url, bpdId, jsonBody);
-
-            // 呼叫 API
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, request, String.class);
-
-            logFullResponse("START_PROCESS", response);
+        } catch (BAWUnavailableException e) {
+            logger.warn("⛔ 略過 BAW 流程啟動: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            logger.error("❌ 啟動 BAW 流程失敗", e);
+            throw new RuntimeException("Start process failed: " + e.getMessage(), e);
+        }
+    }
 
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                throw new RuntimeException("啟動流程失敗: " + response.getStatusCode() + " - " + response.getBody());
-            }
+    private String sendStartProcess(String bpdId, Map<String, Object> params) throws Exception {
+        // 取得 JWT Token
+        String token = tokenManager.getToken();
+
+        // 使用配置中的 URL (可能需要調整路徑)
+        String url = config.getBaseUrl() + "/rest/bpm/wle/v1/process"
+                + "?action=start"
+                + "&bpdId=" + bpdId
+                + "&processAppId=" + config.getProcessAppId()
+                + "&parts=all";
+
+        // 使用 JWT Token 建立 Headers
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        headers.set("BPMCSRFToken", token);
+        String authHeader = config.createBasicAuthHeader();
+        headers.set("Authorization", authHeader);
+
+        // Body = 業務參數 JSON
+        String jsonBody = (params == null) ? "{}" : objectMapper.writeValueAsString(params);
+        HttpEntity<String> request = new HttpEntity<>(jsonBody, headers);
+
+        logger.info("🚀 啟動 BAW 流程: URL={}, BPD={}, jsonBody={}", url, bpdId, jsonBody);
+
+        // 呼叫 API
+        ResponseEntity<String> response;
+        try {
+            response = restTemplate.exchange(url, HttpMethod.POST, request, String.class);
+        } catch (HttpClientErrorException.Unauthorized e) {
+            // token 已被 BAW 撤銷，下一次呼叫重新登入
+            tokenManager.invalidate(token);
+            throw e;
+        }
 
-            // 解析 PIID
-            JsonNode jsonNode = objectMapper.readTree(response.getBody());
-            String piid = jsonNode.path("data").path("piid").asText();
-            
-            if (piid.isEmpty()) {
-                throw new RuntimeException("無法從回應中取得 PIID");
-            }
+        logFullResponse("START_PROCESS", response);
 
-            logger.info("✅ BAW 流程啟動成功: PIID={}", piid);
-            return piid;
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new RuntimeException("啟動流程失敗: " + response.getStatusCode() + " - " + response.getBody());
+        }
 
-        } catch (Exception e) {
-            logger.error("❌ 啟動 BAW 流程失敗", e);
-            throw new RuntimeException("Start process failed: " + e.getMessage(), e);
+        // 解析 PIID
+        JsonNode jsonNode = objectMapper.readTree(response.getBody());
+        String piid = jsonNode.path("data").path("piid").asText();
+        
+        if (piid.isEmpty()) {
+            throw new RuntimeException("無法從回應中取得 PIID");
         }
+
+        logger.info("✅ BAW 流程啟動成功: PIID={}", piid);
+        return piid;
     }
 
     /**
      * 啟動安裝排程流程 (高階包裝方法)
      */
     public Map<String, Object> startProcess(InstallationJob job) {
+        Map<String, Object> result = startProcessBatch(List.of(job));
+        if (Boolean.TRUE.equals(result.get("success"))) {
+            result = new HashMap<>(result);
+            result.put("jobId", job.getJobId());
+        }
+        return result;
+    }
+
+    /**
+     * 多張工單合併成一個流程啟動 ({"orders":[...]})，整批共用回傳的 PIID
+     */
+    public Map<String, Object> startProcessBatch(List<InstallationJob> jobs) {
         try {
             if (!config.isEnabled()) {
                 logger.warn("⚠️ BAW 功能已停用，返回模擬結果");
@@ -191,7 +147,7 @@ public class BAWService {
             }
 
             // 準備流程參數
-            Map<String, Object> processParams = buildJobData(job);
+            Map<String, Object> processParams = buildJobData(jobs);
             
             // 使用配置中的預設值
             String bpdId = config.getDefaultBpdId();
@@ -200,18 +156,19 @@ public class BAWService {
                 throw new IllegalArgumentException("BPD ID 未設定，請在 application.properties 中設定 baw.default-bpd-id");
             }
             
-            
-            
             String piid = startProcessRaw(bpdId, processParams);
             
             return Map.of(
                 "success", true,
                 "piid", piid,
-                "jobId", job.getJobId(),
+                "orderCount", jobs.size(),
                 "bpdId", bpdId,
                 "message", "BAW 流程已啟動"
             );
             
+        } catch (BAWUnavailableException e) {
+            // 斷路器開啟或 bulkhead 已滿：呼叫端應稍後重送
+            return Map.of("error", e.getMessage(), "unavailable", true, "retryAfterMillis", e.getRetryAfterMillis());
         } catch (Exception e) {
             logger.error("❌ BAW 流程啟動失敗: {}", e.getMessage());
             return Map.of("error", e.getMessage());
@@ -227,43 +184,62 @@ public class BAWService {
                 throw new IllegalStateException("BAW 配置不完整");
             }
 
-            String token = getValidJwtToken();
-            String url = config.getBaseUrl() + "/rest/bpm/wle/v1/process" + instanceId;
+            return callGuard.execute("getProcessStatus", () -> fetchProcessStatus(instanceId));
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("BPMCSRFToken", token);
-            headers.set("Authorization", "Bearer " + token);
-            headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        } catch (BAWUnavailableException e) {
+            logger.warn("⛔ 略過查詢流程狀態: {}", e.getMessage());
+            return Map.of("error", e.getMessage(), "unavailable", true);
+        } catch (Exception e) {
+            logger.error("❌ 查詢流程狀態失敗: PIID={}", instanceId, e);
+            return Map.of("error", e.getMessage());
+        }
+    }
 
-            HttpEntity<String> entity = new HttpEntity<>(headers);
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> fetchProcessStatus(String instanceId) throws Exception {
+        String token = tokenManager.getToken();
+        String url = config.getBaseUrl() + "/rest/bpm/wle/v1/process" + instanceId;
 
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            
-            logFullResponse("GET_PROCESS_STATUS", response);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("BPMCSRFToken", token);
+        headers.set("Authorization", "Bearer " + token);
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
 
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                throw new RuntimeException("查詢狀態失敗: " + response.getStatusCode());
-            }
+        HttpEntity<String> entity = new HttpEntity<>(headers);
 
-            // 解析回應
-            JsonNode jsonNode = objectMapper.readTree(response.getBody());
-            Map<String, Object> result = objectMapper.convertValue(jsonNode, Map.class);
-            
-            logger.info("✅ 查詢流程狀態成功: PIID={}", instanceId);
-            return result;
+        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+        
+        logFullResponse("GET_PROCESS_STATUS", response);
 
-        } catch (Exception e) {
-            logger.error("❌ 查詢流程狀態失敗: PIID={}", instanceId, e);
-            return Map.of("error", e.getMessage());
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new RuntimeException("查詢狀態失敗: " + response.getStatusCode());
         }
+
+        // 解析回應
+        JsonNode jsonNode = objectMapper.readTree(response.getBody());
+        Map<String, Object> result = objectMapper.convertValue(jsonNode, Map.class);
+        
+        logger.info("✅ 查詢流程狀態成功: PIID={}", instanceId);
+        return result;
     }
 
     /**
      * 轉換工單資料為 BAW 參數格式
      */
-    private Map<String, Object> buildJobData(InstallationJob job) {
+    private Map<String, Object> buildJobData(List<InstallationJob> jobs) {
         Map<String, Object> data = new HashMap<>();
         List<Map<String, Object>> orders = new ArrayList<>();
+        for (InstallationJob job : jobs) {
+            orders.add(buildOrderData(job));
+        }
+        data.put("orders", orders);
+
+        logger.info("📦 BAW 流程參數: {} 張訂單", orders.size());
+        logger.debug("📦 BAW 流程參數: {}", data);
+        return data;
+    }
+
+    private Map<String, Object> buildOrderData(InstallationJob job) {
         Map<String, Object> order = new java.util.LinkedHashMap<>();
         order.put("orderId", job.getJobId());
         String machineName = "";
@@ -286,13 +262,7 @@ public class BAWService {
             }
         }
         order.put("needs", needs);
-
-        orders.add(order);
-        data.put("orders", orders);
-
-
-        logger.info("📦 BAW 流程參數: {}", data);
-        return data;
+        return order;
     }
 
     /**
@@ -0,0 +1,270 @@
+package com.example.installation.baw;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * BAW JWT/CSRF Token 管理
+ *
+ * <ul>
+ *   <li>目前的 token 以 AtomicReference 發布，讀取不加鎖</li>
+ *   <li>single-flight：同一時間只有一個呼叫端登入，其餘等待同一個結果；
+ *       搶到時 token 已被別人更新就直接使用，不重複登入</li>
+ *   <li>到期前 baw.token-refresh-ahead-seconds 由背景執行緒預先更新，
+ *       更新期間呼叫端繼續使用舊 token；更新失敗時 30 秒後由背景重試</li>
+ *   <li>登入回應沒有 expiration 或有效期短於 60 秒視為失敗，不會以 0 延遲反覆登入</li>
+ * </ul>
+ * 每次實際登入記錄於 baw.token.refresh (trigger=request/background, outcome=success/failure)；
+ * single-flight 中等待別人結果的呼叫端不重複計算。
+ */
+@Component
+public class BAWTokenManager {
+    private static final Logger logger = LoggerFactory.getLogger(BAWTokenManager.class);
+
+    private static final long RETRY_DELAY_MILLIS = 30_000;
+    // 剩餘有效期低於此值就不再使用，改為同步更新
+    private static final long MIN_VALIDITY_MILLIS = 30_000;
+    // 有效期至少要能使用 MIN_VALIDITY_MILLIS 並在一半時更新
+    private static final long MIN_LIFETIME_MILLIS = 2 * MIN_VALIDITY_MILLIS;
+    private static final long MIN_REFRESH_DELAY_MILLIS = 5_000;
+
+    private final RestTemplate restTemplate;
+    private final BAWConfig config;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicReference<Token> current = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<Token>> inFlight = new AtomicReference<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile ScheduledFuture<?> scheduledRefresh;
+
+    public BAWTokenManager(RestTemplate bawRestTemplate, BAWConfig config, MeterRegistry meterRegistry) {
+        this.restTemplate = bawRestTemplate;
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "baw-token-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 取得有效的 token；只有沒有可用 token 時才會在呼叫端等待登入
+     */
+    public String getToken() {
+        Token token = current.get();
+        if (token != null && token.usableAt(System.currentTimeMillis())) {
+            return token.value;
+        }
+        return refresh("request").value;
+    }
+
+    /**
+     * BAW 回應 401/403 時呼叫：只有失效的仍是目前的 token 才清除，避免把別人剛更新的 token 清掉
+     */
+    public void invalidate(String tokenValue) {
+        Token token = current.get();
+        if (token != null && token.value.equals(tokenValue)) {
+            current.compareAndSet(token, null);
+        }
+    }
+
+    /**
+     * single-flight 更新：搶到的呼叫端執行登入，其餘等待同一個 future
+     */
+    Token refresh(String trigger) {
+        CompletableFuture<Token> mine = new CompletableFuture<>();
+        CompletableFuture<Token> running = inFlight.compareAndExchange(null, mine);
+        if (running != null) {
+            return await(running);
+        }
+
+        try {
+            // 呼叫端讀到舊 token 之後、搶到之前，別人可能已完成更新
+            Token latest = current.get();
+            if (latest != null && latest.freshAt(System.currentTimeMillis())) {
+                mine.complete(latest);
+                return latest;
+            }
+            Token token = timedLogin(trigger);
+            current.set(token);
+            mine.complete(token);
+            scheduleRefresh(token.refreshAt - System.currentTimeMillis());
+            return token;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            scheduleRefresh(RETRY_DELAY_MILLIS);
+            throw e;
+        } finally {
+            inFlight.set(null);
+        }
+    }
+
+    private Token timedLogin(String trigger) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            Token token = login();
+            outcome = "success";
+            return token;
+        } finally {
+            sample.stop(Timer.builder("baw.token.refresh")
+                .description("BAW JWT Token 登入耗時")
+                .tag("trigger", trigger)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+        }
+    }
+
+    private Token await(CompletableFuture<Token> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void scheduleRefresh(long delayMillis) {
+        ScheduledFuture<?> previous = scheduledRefresh;
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        scheduledRefresh = scheduler.schedule(this::backgroundRefresh,
+            Math.max(MIN_REFRESH_DELAY_MILLIS, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    private void backgroundRefresh() {
+        try {
+            refresh("background");
+        } catch (Exception e) {
+            // refresh 已排定重試；舊 token 也快到期時，重試前的呼叫端會自行同步登入
+            Token token = current.get();
+            if (token != null && token.usableAt(System.currentTimeMillis() + RETRY_DELAY_MILLIS)) {
+                logger.warn("⚠️ 背景更新 JWT Token 失敗，{} 秒後重試: {}", RETRY_DELAY_MILLIS / 1000, e.getMessage());
+            } else {
+                logger.warn("⚠️ 背景更新 JWT Token 失敗，舊 token 已不可用，{} 秒後重試: {}",
+                    RETRY_DELAY_MILLIS / 1000, e.getMessage());
+            }
+        }
+    }
+
+    private Token login() {
+        try {
+            logger.info("🔑 取得新的 JWT Token...");
+
+            String loginUrl = config.getBaseUrl() + "/ops/system/login";
+            logger.info("🌐 登入 URL: {}", loginUrl);
+            logger.info("👤 使用帳號: {}", config.getUsername());
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.set("Accept", "application/json");
+            headers.set("Authorization", config.createBasicAuthHeader());
+
+            Map<String, Object> loginBody = Map.of(
+                "refresh_groups", true,
+                "requested_lifetime", 7200
+            );
+            String jsonBody = objectMapper.writeValueAsString(loginBody);
+            logger.debug("📤 Request Body: {}", jsonBody);
+
+            ResponseEntity<String> response = restTemplate.exchange(
+                loginUrl, HttpMethod.POST, new HttpEntity<>(jsonBody, headers), String.class);
+
+            logger.info("📥 收到回應: Status={}", response.getStatusCode());
+            logger.debug("📥 Response Headers: {}", response.getHeaders());
+
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                throw new RuntimeException("JWT 登入失敗: " + response.getStatusCode());
+            }
+
+            JsonNode jsonNode = objectMapper.readTree(response.getBody());
+            String value = jsonNode.path("csrf_token").asText();
+            long lifetimeMillis = jsonNode.path("expiration").asLong(0) * 1000;
+            if (value.isEmpty()) {
+                throw new IllegalStateException("登入回應沒有 csrf_token");
+            }
+            if (lifetimeMillis < MIN_LIFETIME_MILLIS) {
+                // 沒有 expiration (0) 或太短：token 永遠不可用，接受的話會立即排程下一次登入而不斷循環
+                throw new IllegalStateException("登入回應的 expiration 無效: " + jsonNode.path("expiration"));
+            }
+            long now = System.currentTimeMillis();
+            long expiresAt = now + lifetimeMillis;
+            // 提前更新；有效期比提前量還短時改在有效期一半時更新
+            long refreshAhead = Math.min(config.getTokenRefreshAheadSeconds() * 1000L, (expiresAt - now) / 2);
+
+            logger.info("✅ JWT Token 取得成功，有效期至: {}", new Date(expiresAt));
+            logger.debug("🎫 Token: {}", value.substring(0, Math.min(50, value.length())) + "...");
+
+            return new Token(value, expiresAt, expiresAt - refreshAhead);
+
+        } catch (Exception e) {
+            logger.error("❌ 取得 JWT Token 失敗", e);
+
+            // 額外的錯誤診斷
+            if (e instanceof org.springframework.web.client.HttpClientErrorException) {
+                var httpError = (org.springframework.web.client.HttpClientErrorException) e;
+                logger.error("🔍 HTTP Status Code: {}", httpError.getStatusCode());
+                logger.error("🔍 Response Body: {}", httpError.getResponseBodyAsString());
+                logger.error("🔍 Response Headers: {}", httpError.getResponseHeaders());
+            }
+
+            throw new RuntimeException("Failed to get JWT token: " + e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 不可變的 token 快照
+     */
+    static final class Token {
+        final String value;
+        final long expiresAt;
+        final long refreshAt;
+
+        Token(String value, long expiresAt, long refreshAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+        }
+
+        boolean usableAt(long time) {
+            return time < expiresAt - MIN_VALIDITY_MILLIS;
+        }
+
+        // 還不需要更新 (未到預先更新時間且可用)
+        boolean freshAt(long time) {
+            return time < refreshAt && usableAt(time);
+        }
+    }
+}
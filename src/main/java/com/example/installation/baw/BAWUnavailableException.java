@@ -0,0 +1,20 @@
+package com.example.installation.baw;
+
+/**
+ * BAW 呼叫未送出即被拒絕 (斷路器開啟或同時呼叫數已滿)
+ */
+public class BAWUnavailableException extends RuntimeException {
+    private final long retryAfterMillis;
+
+    public BAWUnavailableException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * 建議多久後再試 (毫秒)
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.installation.baw;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以 httpclient5 連線池執行 RestTemplate 請求
+ *
+ * Spring 5.3 的 HttpComponentsClientHttpRequestFactory 只支援 httpclient 4.x，這裡做最小的轉接：
+ * 請求內容先緩衝 (BAW 請求都很小)，回應關閉時讀完剩餘內容，讓連線回到連線池重用。
+ */
+class HttpClient5RequestFactory implements ClientHttpRequestFactory {
+    private final CloseableHttpClient httpClient;
+
+    HttpClient5RequestFactory(CloseableHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+        return new Request(httpClient, new HttpUriRequestBase(httpMethod.name(), uri));
+    }
+
+    private static class Request extends AbstractClientHttpRequest {
+        private final CloseableHttpClient httpClient;
+        private final HttpUriRequestBase request;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+        Request(CloseableHttpClient httpClient, HttpUriRequestBase request) {
+            this.httpClient = httpClient;
+            this.request = request;
+        }
+
+        @Override
+        public String getMethodValue() {
+            return request.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            try {
+                return request.getUri();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        protected OutputStream getBodyInternal(HttpHeaders headers) {
+            return body;
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                String name = entry.getKey();
+                // 長度與傳輸編碼由 httpclient 依 entity 設定
+                if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) || HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name)) {
+                    continue;
+                }
+                for (String value : entry.getValue()) {
+                    request.addHeader(name, value);
+                }
+            }
+            if (body.size() > 0) {
+                ContentType contentType = headers.getContentType() != null
+                    ? ContentType.parse(headers.getContentType().toString())
+                    : null;
+                request.setEntity(new ByteArrayEntity(body.toByteArray(), contentType));
+            }
+            return new Response(httpClient.execute(request));
+        }
+    }
+
+    private static class Response extends AbstractClientHttpResponse {
+        private final CloseableHttpResponse response;
+        private HttpHeaders headers;
+
+        Response(CloseableHttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return response.getCode();
+        }
+
+        @Override
+        public String getStatusText() {
+            return response.getReasonPhrase();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            if (headers == null) {
+                headers = new HttpHeaders();
+                for (Header header : response.getHeaders()) {
+                    headers.add(header.getName(), header.getValue());
+                }
+            }
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            HttpEntity entity = response.getEntity();
+            return entity != null ? entity.getContent() : InputStream.nullInputStream();
+        }
+
+        @Override
+        public void close() {
+            try {
+                try {
+                    // 讀完內容連線才能回到連線池
+                    EntityUtils.consume(response.getEntity());
+                } finally {
+                    response.close();
+                }
+            } catch (IOException ignored) {
+                // 連線已損壞時 httpclient 會直接丟棄，不影響呼叫端
+            }
+        }
+    }
+}
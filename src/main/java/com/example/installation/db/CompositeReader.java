@@ -0,0 +1,217 @@
+package com.example.installation.db;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 組合頁面的平行讀取 (儀表板、排程、資料總覽)
+ *
+ * 同一頁面需要的多個獨立查詢同時送出，頁面延遲約等於最慢的一個查詢而不是全部相加。
+ * 執行緒池與佇列都有上限；佇列滿時不在請求執行緒上執行 (那樣沒有逾時保護)，該分支直接使用預設值 (部分結果)。
+ * 每個分支各自有逾時，逾時、失敗或被拒絕時使用呼叫端給的預設值，不拖垮整個頁面。
+ */
+@Component
+public class CompositeReader {
+    private static final Logger logger = LoggerFactory.getLogger(CompositeReader.class);
+
+    private final ThreadPoolExecutor executor;
+    private final long defaultTimeoutMillis;
+    private final Counter rejectedCounter;
+
+    public CompositeReader(MeterRegistry meterRegistry,
+            @Value("${composite-read.pool-size:8}") int poolSize,
+            @Value("${composite-read.queue-capacity:64}") int queueCapacity,
+            @Value("${composite-read.timeout-ms:3000}") long defaultTimeoutMillis) {
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+            poolSize, poolSize, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            r -> {
+                Thread t = new Thread(r, "composite-read-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        this.rejectedCounter = Counter.builder("composite.read.rejected")
+            .description("執行緒池與佇列已滿、直接使用預設值的查詢分支數")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 開始一組平行讀取
+     */
+    public Batch batch(String name) {
+        return new Batch(name);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 一次頁面請求中的一組分支；add() 立即送出，join() 等待全部完成
+     */
+    public class Batch {
+        private final String name;
+        private final List<Branch<?>> branches = new ArrayList<>();
+
+        private Batch(String name) {
+            this.name = name;
+        }
+
+        public <T> Branch<T> add(String branchName, Supplier<T> query, T fallback) {
+            return add(branchName, query, fallback, defaultTimeoutMillis);
+        }
+
+        public <T> Branch<T> add(String branchName, Supplier<T> query, T fallback, long timeoutMillis) {
+            Branch<T> branch = new Branch<>(branchName, fallback, timeoutMillis);
+            try {
+                branch.future = executor.submit(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        return query.get();
+                    } finally {
+                        branch.elapsedNanos = System.nanoTime() - start;
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                branch.rejected = true;
+                rejectedCounter.increment();
+                logger.warn("🚫 {} 查詢分支 {} 被拒絕 (執行緒池與佇列已滿)，使用預設值", name, branchName);
+            }
+            branches.add(branch);
+            return branch;
+        }
+
+        /**
+         * 等待所有分支；每個分支的逾時從送出時起算
+         */
+        public Batch join() {
+            long start = System.nanoTime();
+            for (Branch<?> branch : branches) {
+                branch.await();
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("⚡ {} 平行讀取完成 {} ms: {}", name, (System.nanoTime() - start) / 1_000_000, getLatencies());
+            }
+            return this;
+        }
+
+        /**
+         * 各分支耗時 (毫秒)；逾時的分支記為逾時上限
+         */
+        public Map<String, Long> getLatencies() {
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (Branch<?> branch : branches) {
+                result.put(branch.name, branch.elapsedMillis());
+            }
+            return result;
+        }
+
+        /**
+         * HTTP Server-Timing 標頭值，瀏覽器開發工具可直接顯示各分支耗時
+         */
+        public String serverTiming() {
+            StringBuilder sb = new StringBuilder();
+            for (Branch<?> branch : branches) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(branch.name).append(";dur=").append(branch.elapsedMillis());
+                if (branch.timedOut) {
+                    sb.append(";desc=\"timeout\"");
+                } else if (branch.rejected) {
+                    sb.append(";desc=\"rejected\"");
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 單一查詢分支
+     */
+    public static class Branch<T> {
+        private final String name;
+        private final T fallback;
+        private final long timeoutMillis;
+        private final long submittedAt = System.nanoTime();
+        private Future<T> future;
+        private volatile long elapsedNanos = -1;
+        private volatile boolean timedOut;
+        private boolean rejected;
+        private T value;
+        private boolean done;
+
+        private Branch(String name, T fallback, long timeoutMillis) {
+            this.name = name;
+            this.fallback = fallback;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        private void await() {
+            if (done) {
+                return;
+            }
+            done = true;
+            if (rejected) {
+                value = fallback;
+                return;
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis) - (System.nanoTime() - submittedAt);
+            try {
+                value = future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                timedOut = true;
+                future.cancel(true);
+                logger.warn("⏱️ 查詢分支 {} 超過 {} ms，使用預設值", name, timeoutMillis);
+                value = fallback;
+            } catch (ExecutionException e) {
+                logger.warn("❌ 查詢分支 {} 失敗: {}", name, e.getCause().getMessage());
+                value = fallback;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                value = fallback;
+            }
+        }
+
+        /**
+         * 取得結果 (尚未 join 時會在此等待)
+         */
+        public T get() {
+            await();
+            return value;
+        }
+
+        public long elapsedMillis() {
+            if (timedOut) {
+                return timeoutMillis;
+            }
+            long nanos = elapsedNanos;
+            return nanos < 0 ? 0 : nanos / 1_000_000;
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package com.example.installation.db;
 
+import com.example.installation.schedule.MaterialAvailabilityIndex;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 
@@ -10,10 +17,24 @@ import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
 
 @Service
 public class DbOrderService {
+    private static final Logger logger = LoggerFactory.getLogger(DbOrderService.class);
+    // 逐筆診斷 (每筆材料需求、每個庫存項目)，依 logging.sampling 抽樣
+    private static final Logger rowLogger = LoggerFactory.getLogger(DbOrderService.class.getName() + ".rows");
+    
     private final JdbcTemplate jdbc;
+    private final ReferenceDataCache referenceCache;
+    private final MaterialAvailabilityIndex availabilityIndex;
+    private final MeterRegistry meterRegistry;
     
     // ✅ 修正：資料庫實際使用 A/B/C，對應到中文顯示名稱
     private static final Map<String, String> MATERIAL_CODE_TO_NAME = Map.of(
@@ -28,9 +49,58 @@ public class DbOrderService {
         "真空管", "C"
     );
     
-    public DbOrderService(JdbcTemplate jdbc) {
+    // IN 查詢每批訂單數 (SQL Server 參數上限 2100)
+    private static final int MATERIAL_BATCH_SIZE = 1000;
+    
+    // 參考資料快取 key
+    private static final String CACHE_INVENTORY_STATUS = "inventoryStatus";
+    private static final String CACHE_INVENTORY_MAP = "inventoryMap";
+    private static final String CACHE_INBOUND_PLANS = "inboundPlans";
+    private static final String CACHE_WORKER_CAPACITY = "workerCapacity";
+    
+    public DbOrderService(JdbcTemplate jdbc, ReferenceDataCache referenceCache,
+                          MaterialAvailabilityIndex availabilityIndex, MeterRegistry meterRegistry) {
         this.jdbc = jdbc;
-        System.out.println("🔧 DbOrderService 初始化完成");
+        this.referenceCache = referenceCache;
+        this.availabilityIndex = availabilityIndex;
+        this.meterRegistry = meterRegistry;
+        logger.info("🔧 DbOrderService 初始化完成");
+    }
+    
+    /**
+     * 記錄一次查詢：耗時 (db.query，outcome=success/error) 與回傳筆數 (db.query.rows)，依 query 名稱分開；
+     * DEBUG 時另輸出一行 query/rows/durationMs
+     */
+    private <T> T timed(String query, Supplier<T> call, ToIntFunction<T> rows) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            sample.stop(queryTimer(query, "error"));
+            throw e;
+        }
+        long nanos = sample.stop(queryTimer(query, "success"));
+        int count = rows.applyAsInt(result);
+        DistributionSummary.builder("db.query.rows")
+            .description("DbOrderService 查詢回傳筆數")
+            .tag("query", query)
+            .register(meterRegistry)
+            .record(count);
+        logger.debug("⏱️ 查詢完成 {} {} {}", kv("query", query), kv("rows", count), kv("durationMs", nanos / 1_000_000));
+        return result;
+    }
+    
+    private <T> List<T> timedList(String query, Supplier<List<T>> call) {
+        return timed(query, call, List::size);
+    }
+    
+    private Timer queryTimer(String query, String outcome) {
+        return Timer.builder("db.query")
+            .description("DbOrderService 查詢耗時")
+            .tag("query", query)
+            .tag("outcome", outcome)
+            .register(meterRegistry);
     }
     
     private static class OrderMapper implements RowMapper<DbOrder> {
@@ -51,122 +121,332 @@ public class DbOrderService {
     
     public List<DbOrder> list() {
         try {
-            System.out.println("📋 開始載入訂單列表...");
+            logger.debug("📋 開始載入訂單列表...");
             
-            List<DbOrder> orders = jdbc.query(
+            List<DbOrder> orders = timedList("orders.list", () -> jdbc.query(
                 "SELECT id, machine_name, due_date, eta_date, status FROM orders ORDER BY due_date, id",
                 new OrderMapper()
-            );
+            ));
             
-            System.out.println("✅ 成功載入 " + orders.size() + " 個訂單");
+            logger.debug("✅ 成功載入訂單 {}", kv("rows", orders.size()));
             
-            // 載入庫存資料 (A/B/C 轉換為中文名稱)
-            Map<String, Integer> inventory = getInventoryMap();
-            System.out.println("📦 庫存資料: " + inventory);
-            
-            // 為每個訂單載入材料需求
-            for (DbOrder order : orders) {
-                try {
-                    List<DbOrder.MaterialRequirement> materials = jdbc.query(
-                        "SELECT material, qty_needed FROM order_materials WHERE order_id = ?",
-                        (rs, rowNum) -> {
-                            String code = rs.getString("material").trim(); // A, B, C
-                            String chineseName = MATERIAL_CODE_TO_NAME.get(code); // 轉為中文
-                            int qtyNeeded = rs.getInt("qty_needed");
-                            int qtyOnHand = inventory.getOrDefault(code, 0); // 用代碼查庫存
-                            
-                            System.out.println("  📦 " + order.getMachineName() + " 需要 " + chineseName + "(" + code + ") " + qtyNeeded + " 單位，庫存 " + qtyOnHand);
-                            
-                            return new DbOrder.MaterialRequirement(chineseName, qtyNeeded, qtyOnHand);
-                        },
-                        order.getId()
-                    );
-                    order.setMaterials(materials);
-                } catch (Exception e) {
-                    System.err.println("⚠️ 載入訂單 " + order.getId() + " 的材料需求失敗: " + e.getMessage());
-                    order.setMaterials(new ArrayList<>());
-                }
-            }
+            // 一次載入全部材料需求，不再逐筆查詢
+            attachMaterials(orders, true);
             
             return orders;
             
         } catch (Exception e) {
-            System.err.println("❌ 載入訂單列表失敗: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("❌ 載入訂單列表失敗: {}", e.getMessage(), e);
             return new ArrayList<>();
         }
     }
     
-    public List<InventoryStatus> getInventoryStatus() {
-        try {
-            System.out.println("📦 開始載入庫存狀態...");
-            
-            List<InventoryStatus> result = jdbc.query(
-                "SELECT i.material, i.qty_on_hand, " +
-                "COALESCE(SUM(om.qty_needed), 0) as total_demand " +
-                "FROM inventory i " +
-                "LEFT JOIN order_materials om ON i.material = om.material " +
-                "GROUP BY i.material, i.qty_on_hand " +
-                "ORDER BY i.material",
-                (rs, rowNum) -> {
-                    InventoryStatus status = new InventoryStatus();
-                    String code = rs.getString("material").trim(); // A, B, C
-                    String chineseName = MATERIAL_CODE_TO_NAME.get(code); // 轉為中文顯示
-                    
-                    status.setMaterial(chineseName != null ? chineseName : code);
-                    status.setQtyOnHand(rs.getInt("qty_on_hand"));
-                    status.setTotalDemand(rs.getInt("total_demand"));
-                    status.setShortage(Math.max(0, status.getTotalDemand() - status.getQtyOnHand()));
-                    
-                    System.out.println("  📦 " + status.getMaterial() + ": 庫存 " + status.getQtyOnHand() + ", 需求 " + status.getTotalDemand() + ", 缺口 " + status.getShortage());
-                    
-                    return status;
+    /**
+     * Keyset 分頁查詢：篩選條件與游標都在 SQL 端處理，只載入並組裝當頁訂單
+     */
+    public OrderPage findPage(OrderQuery query) {
+        StringBuilder sql = new StringBuilder(
+            "SELECT id, machine_name, due_date, eta_date, status FROM orders WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        
+        if (query.getStatus() != null && !query.getStatus().isBlank()) {
+            // 畫面上的 DRAFT 代表尚未排程 (status 為 NULL)
+            if ("DRAFT".equalsIgnoreCase(query.getStatus().trim())) {
+                sql.append(" AND status IS NULL");
+            } else {
+                sql.append(" AND status = ?");
+                args.add(query.getStatus().trim().toUpperCase());
+            }
+        }
+        if (query.getId() != null) {
+            sql.append(" AND id = ?");
+            args.add(query.getId());
+        }
+        if (query.getMachineName() != null && !query.getMachineName().isBlank()) {
+            sql.append(" AND ");
+            appendMachinePredicate(sql, args, query.getMachineName().trim(), query.getMachineMatch(),
+                query.getIdOrMachine());
+        }
+        if (query.getDueFrom() != null) {
+            sql.append(" AND due_date >= ?");
+            args.add(Date.valueOf(query.getDueFrom()));
+        }
+        if (query.getDueTo() != null) {
+            sql.append(" AND due_date <= ?");
+            args.add(Date.valueOf(query.getDueTo()));
+        }
+        if (query.getAfterDueDate() != null && query.getAfterId() != null) {
+            sql.append(" AND (due_date > ? OR (due_date = ? AND id > ?))");
+            args.add(Date.valueOf(query.getAfterDueDate()));
+            args.add(Date.valueOf(query.getAfterDueDate()));
+            args.add(query.getAfterId());
+        }
+        // 多取一筆判斷是否還有下一頁 (OFFSET/FETCH 在 SQL Server 與 H2 皆可用)
+        sql.append(" ORDER BY due_date, id OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY");
+        args.add(query.getLimit() + 1);
+        
+        List<DbOrder> orders = timedList("orders.page",
+            () -> jdbc.query(sql.toString(), new OrderMapper(), args.toArray()));
+        
+        String nextCursor = null;
+        if (orders.size() > query.getLimit()) {
+            orders = new ArrayList<>(orders.subList(0, query.getLimit()));
+            nextCursor = OrderQuery.cursorOf(orders.get(orders.size() - 1));
+        }
+        
+        attachMaterials(orders, false);
+        return new OrderPage(orders, nextCursor);
+    }
+    
+    /**
+     * 機台名稱條件 (orId 不為 null 時訂單編號相符也算)：完全相符與前綴可走 idx_orders_machine 範圍搜尋；
+     * 包含 (3 個字元以上) 先由 order_name_grams 找出擁有全部 trigram 的訂單，再以 LIKE 排除順序不符的。
+     * orId 併入 trigram 子查詢 (UNION ALL)，讓整個條件仍是 id IN (...)，不會因 OR 退化成全表掃描
+     */
+    private void appendMachinePredicate(StringBuilder sql, List<Object> args, String name, OrderQuery.Match match,
+            Long orId) {
+        List<String> grams = match == OrderQuery.Match.CONTAINS ? OrderNameGrams.of(name) : List.of();
+        if (!grams.isEmpty()) {
+            sql.append("id IN (SELECT order_id FROM order_name_grams WHERE gram IN (")
+                .append(String.join(", ", Collections.nCopies(grams.size(), "?")))
+                .append(") GROUP BY order_id HAVING COUNT(*) = ?");
+            args.addAll(grams);
+            args.add(grams.size());
+            if (orId != null) {
+                sql.append(" UNION ALL SELECT CAST(? AS BIGINT)");
+                args.add(orId);
+            }
+            sql.append(") AND ");
+        }
+        sql.append("(");
+        if (orId != null) {
+            sql.append("id = ? OR ");
+            args.add(orId);
+        }
+        switch (match) {
+            case EXACT:
+                sql.append("machine_name = ?");
+                args.add(name);
+                break;
+            case PREFIX:
+                sql.append("machine_name LIKE ? ESCAPE '\\'");
+                args.add(escapeLike(name) + "%");
+                break;
+            case CONTAINS:
+                sql.append("UPPER(machine_name) LIKE ? ESCAPE '\\'");
+                args.add("%" + escapeLike(name.toUpperCase(Locale.ROOT)) + "%");
+                break;
+            default:
+                throw new IllegalArgumentException("未知的比對方式: " + match);
+        }
+        sql.append(")");
+    }
+    
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+    
+    /**
+     * 串流讀取全部訂單與材料需求 (匯出用)
+     *
+     * 單一 JOIN 查詢、forward-only 游標並設定 fetch size，依 (due_date, id) 排序讀取，
+     * 每讀完一張訂單就交給 consumer，記憶體中最多只保留一張訂單。
+     */
+    public void streamOrders(int fetchSize, Consumer<DbOrder> consumer) {
+        timed("orders.stream", () -> streamRows(fetchSize, consumer), Integer::intValue);
+    }
+    
+    // 回傳讀取的訂單數
+    private int streamRows(int fetchSize, Consumer<DbOrder> consumer) {
+        Map<String, Integer> inventory = getInventoryMap();
+        OrderMapper mapper = new OrderMapper();
+        DbOrder[] current = { null };
+        int[] count = { 0 };
+        
+        jdbc.query(
+            con -> {
+                PreparedStatement ps = con.prepareStatement(
+                    "SELECT o.id, o.machine_name, o.due_date, o.eta_date, o.status, om.material, om.qty_needed " +
+                    "FROM orders o LEFT JOIN order_materials om ON om.order_id = o.id " +
+                    "ORDER BY o.due_date, o.id, om.id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                return ps;
+            },
+            (RowCallbackHandler) rs -> {
+                long id = rs.getLong("id");
+                if (current[0] == null || current[0].getId() != id) {
+                    if (current[0] != null) {
+                        consumer.accept(current[0]);
+                    }
+                    current[0] = mapper.mapRow(rs, 0);
+                    count[0]++;
+                }
+                String code = rs.getString("material");
+                if (code != null) {
+                    code = code.trim();
+                    String chineseName = MATERIAL_CODE_TO_NAME.get(code);
+                    current[0].getMaterials().add(new DbOrder.MaterialRequirement(
+                        chineseName != null ? chineseName : code,
+                        rs.getInt("qty_needed"),
+                        inventory.getOrDefault(code, 0)
+                    ));
                 }
-            );
+            }
+        );
+        if (current[0] != null) {
+            consumer.accept(current[0]);
+        }
+        return count[0];
+    }
+    
+    /**
+     * 為一批訂單掛上材料需求，查詢次數固定，與訂單數量無關：
+     * 庫存 1 次 + 材料需求 1 次 (全表) 或每 {@value #MATERIAL_BATCH_SIZE} 筆訂單 1 次 (IN 查詢)。
+     */
+    private void attachMaterials(List<DbOrder> orders, boolean allOrders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        
+        // 載入庫存資料 (A/B/C 代碼)
+        Map<String, Integer> inventory = getInventoryMap();
+        logger.debug("📦 庫存資料: {}", inventory);
+        
+        Map<Long, DbOrder> byId = new HashMap<>(orders.size() * 2);
+        for (DbOrder order : orders) {
+            order.setMaterials(new ArrayList<>());
+            byId.put(order.getId(), order);
+        }
+        
+        int[] rows = { 0 };
+        RowCallbackHandler handler = rs -> {
+            rows[0]++;
+            DbOrder order = byId.get(rs.getLong("order_id"));
+            if (order == null) {
+                return;
+            }
+            String code = rs.getString("material").trim(); // A, B, C
+            String chineseName = MATERIAL_CODE_TO_NAME.get(code); // 轉為中文
+            int qtyNeeded = rs.getInt("qty_needed");
+            int qtyOnHand = inventory.getOrDefault(code, 0); // 用代碼查庫存
             
-            System.out.println("✅ 成功載入 " + result.size() + " 個庫存項目");
-            return result;
+            rowLogger.debug("📦 材料需求 {} {} {} {} {}", kv("orderId", order.getId()), kv("machineName", order.getMachineName()),
+                kv("material", code), kv("qtyNeeded", qtyNeeded), kv("qtyOnHand", qtyOnHand));
             
+            order.getMaterials().add(new DbOrder.MaterialRequirement(
+                chineseName != null ? chineseName : code,
+                qtyNeeded,
+                qtyOnHand
+            ));
+        };
+        
+        try {
+            if (allOrders) {
+                timed("order_materials.all", () -> {
+                    jdbc.query("SELECT order_id, material, qty_needed FROM order_materials ORDER BY order_id, id", handler);
+                    return rows[0];
+                }, Integer::intValue);
+            } else {
+                timed("order_materials.by_order", () -> {
+                    // SQL Server 單一語句最多 2100 個參數，分批送出
+                    for (int from = 0; from < orders.size(); from += MATERIAL_BATCH_SIZE) {
+                        List<DbOrder> batch = orders.subList(from, Math.min(orders.size(), from + MATERIAL_BATCH_SIZE));
+                        String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+                        Object[] ids = batch.stream().map(DbOrder::getId).toArray();
+                        jdbc.query(
+                            "SELECT order_id, material, qty_needed FROM order_materials WHERE order_id IN (" + placeholders + ") ORDER BY order_id, id",
+                            handler,
+                            ids
+                        );
+                    }
+                    return rows[0];
+                }, Integer::intValue);
+            }
         } catch (Exception e) {
-            System.err.println("❌ 載入庫存狀態失敗: " + e.getMessage());
-            e.printStackTrace();
+            logger.warn("⚠️ 載入訂單材料需求失敗: {}", e.getMessage());
+            orders.forEach(o -> o.setMaterials(new ArrayList<>()));
+        }
+    }
+    
+    public List<InventoryStatus> getInventoryStatus() {
+        try {
+            return referenceCache.get(CACHE_INVENTORY_STATUS, this::loadInventoryStatus);
+        } catch (Exception e) {
+            logger.error("❌ 載入庫存狀態失敗: {}", e.getMessage(), e);
             return new ArrayList<>();
         }
     }
     
+    private List<InventoryStatus> loadInventoryStatus() {
+        logger.debug("📦 開始載入庫存狀態...");
+        
+        List<InventoryStatus> result = timedList("inventory.status", () -> jdbc.query(
+            "SELECT i.material, i.qty_on_hand, " +
+            "COALESCE(SUM(om.qty_needed), 0) as total_demand " +
+            "FROM inventory i " +
+            "LEFT JOIN order_materials om ON i.material = om.material " +
+            "GROUP BY i.material, i.qty_on_hand " +
+            "ORDER BY i.material",
+            (rs, rowNum) -> {
+                InventoryStatus status = new InventoryStatus();
+                String code = rs.getString("material").trim(); // A, B, C
+                String chineseName = MATERIAL_CODE_TO_NAME.get(code); // 轉為中文顯示
+                
+                status.setMaterial(chineseName != null ? chineseName : code);
+                status.setQtyOnHand(rs.getInt("qty_on_hand"));
+                status.setTotalDemand(rs.getInt("total_demand"));
+                // 缺口計入到貨計劃：分時段可用量索引中最低餘量的不足數
+                status.setShortage((int) availabilityIndex.projectedShortage(code));
+                status.setCoverageDate(availabilityIndex.earliestAvailableDate(code, 0));
+                
+                rowLogger.debug("📦 庫存狀態 {} {} {} {} {}", kv("material", code), kv("qtyOnHand", status.getQtyOnHand()),
+                    kv("totalDemand", status.getTotalDemand()), kv("shortage", status.getShortage()),
+                    kv("coverageDate", status.getCoverageDate()));
+                
+                return status;
+            }
+        ));
+        
+        logger.info("✅ 成功載入庫存項目 {}", kv("rows", result.size()));
+        return Collections.unmodifiableList(result);
+    }
+    
     public List<InboundPlan> getInboundPlans() {
         try {
-            System.out.println("🚚 開始載入到貨計劃...");
-            
-            List<InboundPlan> result = jdbc.query(
-                "SELECT material, arrival_date, qty FROM inbound_plans ORDER BY arrival_date, material",
-                (rs, rowNum) -> {
-                    InboundPlan plan = new InboundPlan();
-                    String code = rs.getString("material").trim(); // A, B, C
-                    String chineseName = MATERIAL_CODE_TO_NAME.get(code); // 轉為中文顯示
-                    
-                    plan.setMaterial(chineseName != null ? chineseName : code);
-                    plan.setArrivalDate(rs.getDate("arrival_date").toLocalDate());
-                    plan.setQty(rs.getInt("qty"));
-                    return plan;
-                }
-            );
-            
-            System.out.println("✅ 成功載入 " + result.size() + " 個到貨計劃");
-            return result;
-            
+            return referenceCache.get(CACHE_INBOUND_PLANS, this::loadInboundPlans);
         } catch (Exception e) {
-            System.err.println("❌ 載入到貨計劃失敗: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("❌ 載入到貨計劃失敗: {}", e.getMessage(), e);
             return new ArrayList<>();
         }
     }
     
+    private List<InboundPlan> loadInboundPlans() {
+        logger.debug("🚚 開始載入到貨計劃...");
+        
+        List<InboundPlan> result = timedList("inbound_plans.all", () -> jdbc.query(
+            "SELECT material, arrival_date, qty FROM inbound_plans ORDER BY arrival_date, material",
+            (rs, rowNum) -> {
+                InboundPlan plan = new InboundPlan();
+                String code = rs.getString("material").trim(); // A, B, C
+                String chineseName = MATERIAL_CODE_TO_NAME.get(code); // 轉為中文顯示
+                
+                plan.setMaterial(chineseName != null ? chineseName : code);
+                plan.setArrivalDate(rs.getDate("arrival_date").toLocalDate());
+                plan.setQty(rs.getInt("qty"));
+                return plan;
+            }
+        ));
+        
+        logger.info("✅ 成功載入到貨計劃 {}", kv("rows", result.size()));
+        return Collections.unmodifiableList(result);
+    }
+    
     public List<InboundPlan> getUpcomingInboundPlans(int limit) {
         try {
-            System.out.println("🚚 開始載入近期到貨計劃 (前" + limit + "個)...");
+            logger.debug("🚚 開始載入近期到貨計劃 (前 {} 個)...", limit);
             
-            List<InboundPlan> result = jdbc.query(
+            List<InboundPlan> result = timedList("inbound_plans.upcoming", () -> jdbc.query(
                 "SELECT TOP (" + limit + ") material, arrival_date, qty FROM inbound_plans " +
                 "WHERE arrival_date >= CAST(GETDATE() AS DATE) " +
                 "ORDER BY arrival_date, material",
@@ -180,52 +460,22 @@ public class DbOrderService {
                     plan.setQty(rs.getInt("qty"));
                     return plan;
                 }
-            );
+            ));
             
-            System.out.println("✅ 成功載入 " + result.size() + " 個近期到貨計劃");
+            logger.debug("✅ 成功載入近期到貨計劃 {}", kv("rows", result.size()));
             return result;
             
         } catch (Exception e) {
-            System.err.println("❌ 載入近期到貨計劃失敗: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("❌ 載入近期到貨計劃失敗: {}", e.getMessage(), e);
             return new ArrayList<>();
         }
     }
     
     public List<WorkerCapacity> getWorkerCapacity() {
         try {
-            System.out.println("👷 開始載入工人產能...");
-            
-            List<WorkerCapacity> capacities = jdbc.query(
-                "SELECT work_date, hours_total FROM worker_capacity ORDER BY work_date",
-                (rs, rowNum) -> {
-                    WorkerCapacity capacity = new WorkerCapacity();
-                    capacity.setWorkDate(rs.getDate("work_date").toLocalDate());
-                    capacity.setWorkerCount(3);
-                    capacity.setHoursPerWorker(8);
-                    capacity.setUnitsPerHour(1);
-                    capacity.setTotalUnitsPerDay(rs.getInt("hours_total"));
-                    return capacity;
-                }
-            );
-            
-            // 如果沒有資料，返回預設值
-            if (capacities.isEmpty()) {
-                System.out.println("⚠️ 沒有工人產能資料，使用預設值");
-                WorkerCapacity defaultCapacity = new WorkerCapacity();
-                defaultCapacity.setWorkDate(LocalDate.now());
-                defaultCapacity.setWorkerCount(3);
-                defaultCapacity.setHoursPerWorker(8);
-                defaultCapacity.setUnitsPerHour(1);
-                defaultCapacity.setTotalUnitsPerDay(24);
-                capacities.add(defaultCapacity);
-            }
-            
-            System.out.println("✅ 成功載入 " + capacities.size() + " 個工人產能記錄");
-            return capacities;
-            
+            return referenceCache.get(CACHE_WORKER_CAPACITY, this::loadWorkerCapacity);
         } catch (Exception e) {
-            System.err.println("❌ 載入工人產能失敗: " + e.getMessage());
+            logger.error("❌ 載入工人產能失敗: {}", e.getMessage());
             // 返回預設值
             WorkerCapacity defaultCapacity = new WorkerCapacity();
             defaultCapacity.setWorkDate(LocalDate.now());
@@ -239,22 +489,54 @@ public class DbOrderService {
         }
     }
     
+    private List<WorkerCapacity> loadWorkerCapacity() {
+        logger.debug("👷 開始載入工人產能...");
+        
+        List<WorkerCapacity> capacities = timedList("worker_capacity", () -> jdbc.query(
+            "SELECT work_date, hours_total FROM worker_capacity ORDER BY work_date",
+            (rs, rowNum) -> {
+                WorkerCapacity capacity = new WorkerCapacity();
+                capacity.setWorkDate(rs.getDate("work_date").toLocalDate());
+                capacity.setWorkerCount(3);
+                capacity.setHoursPerWorker(8);
+                capacity.setUnitsPerHour(1);
+                capacity.setTotalUnitsPerDay(rs.getInt("hours_total"));
+                return capacity;
+            }
+        ));
+        
+        // 如果沒有資料，返回預設值
+        if (capacities.isEmpty()) {
+            logger.warn("⚠️ 沒有工人產能資料，使用預設值");
+            WorkerCapacity defaultCapacity = new WorkerCapacity();
+            defaultCapacity.setWorkDate(LocalDate.now());
+            defaultCapacity.setWorkerCount(3);
+            defaultCapacity.setHoursPerWorker(8);
+            defaultCapacity.setUnitsPerHour(1);
+            defaultCapacity.setTotalUnitsPerDay(24);
+            capacities.add(defaultCapacity);
+        }
+        
+        logger.info("✅ 成功載入工人產能記錄 {}", kv("rows", capacities.size()));
+        return Collections.unmodifiableList(capacities);
+    }
+    
     public List<String> getAvailableMaterials() {
         try {
-            List<String> result = jdbc.query(
+            List<String> result = timedList("inventory.materials", () -> jdbc.query(
                 "SELECT material FROM inventory ORDER BY material",
                 (rs, rowNum) -> {
                     String code = rs.getString("material").trim(); // A, B, C
                     String chineseName = MATERIAL_CODE_TO_NAME.get(code); // 轉為中文
                     return chineseName != null ? chineseName : code;
                 }
-            );
+            ));
             
-            System.out.println("✅ 可用材料: " + result);
+            logger.debug("✅ 可用材料: {}", result);
             return result;
             
         } catch (Exception e) {
-            System.err.println("❌ 載入可用材料失敗: " + e.getMessage());
+            logger.error("❌ 載入可用材料失敗: {}", e.getMessage());
             // 返回預設材料
             List<String> materials = new ArrayList<>();
             materials.add("氮氣管");
@@ -278,26 +560,36 @@ public class DbOrderService {
 //        }
 //    }
     
+    /**
+     * 儀表板 KPI：以彙總查詢計算，不載入訂單明細，成本與訂單數量無關
+     *
+     * 風險訂單 = 任一材料需求量大於現有庫存 (與 DbOrder.MaterialRequirement 的 shortage 定義相同)
+     */
     public DashboardStats getDashboardStats() {
         try {
-            System.out.println("📊 開始計算統計資料...");
+            long start = System.nanoTime();
+            DashboardStats stats = timed("dashboard.totals", () -> jdbc.queryForObject(
+                "SELECT COUNT(*) AS total_orders, " +
+                "SUM(CASE WHEN status = 'ON_TIME' THEN 1 ELSE 0 END) AS on_time_orders, " +
+                "SUM(CASE WHEN status = 'LATE' THEN 1 ELSE 0 END) AS late_orders " +
+                "FROM orders",
+                (rs, rowNum) -> {
+                    DashboardStats s = new DashboardStats();
+                    s.setTotalOrders(rs.getInt("total_orders"));
+                    s.setOnTimeOrders(rs.getInt("on_time_orders"));
+                    s.setLateOrders(rs.getInt("late_orders"));
+                    return s;
+                }), s -> 1);
             
-            List<DbOrder> orders = list();
-            List<InventoryStatus> inventory = getInventoryStatus();
+            Integer atRisk = timed("dashboard.at_risk", () -> jdbc.queryForObject(
+                "SELECT COUNT(DISTINCT om.order_id) FROM order_materials om " +
+                "LEFT JOIN inventory i ON i.material = om.material " +
+                "WHERE om.qty_needed > COALESCE(i.qty_on_hand, 0)",
+                Integer.class), n -> 1);
+            stats.setAtRiskOrders(atRisk == null ? 0 : atRisk);
             
-            DashboardStats stats = new DashboardStats();
-            stats.setTotalOrders(orders.size());
-            stats.setOnTimeOrders((int) orders.stream()
-                .filter(o -> "ON_TIME".equals(o.getStatus()))
-                .count());
-            stats.setLateOrders((int) orders.stream()
-                .filter(o -> "LATE".equals(o.getStatus()))
-                .count());
-            stats.setAtRiskOrders((int) orders.stream()
-                .filter(order -> order.getMaterials().stream()
-                    .anyMatch(m -> m.getShortage() > 0))
-                .count());
-            stats.setLowStockMaterials((int) inventory.stream()
+            // 庫存狀態已在快取中
+            stats.setLowStockMaterials((int) getInventoryStatus().stream()
                 .filter(InventoryStatus::hasShortage)
                 .count());
             
@@ -307,15 +599,14 @@ public class DbOrderService {
                 stats.setOnTimeRate(0);
             }
             
-            System.out.println("📊 統計完成: 總訂單 " + stats.getTotalOrders() + 
-                             ", 準時 " + stats.getOnTimeOrders() + 
-                             ", 風險 " + stats.getAtRiskOrders());
+            logger.debug("📊 統計完成 {} {} {} {}", kv("totalOrders", stats.getTotalOrders()),
+                kv("onTimeOrders", stats.getOnTimeOrders()), kv("atRiskOrders", stats.getAtRiskOrders()),
+                kv("durationMs", (System.nanoTime() - start) / 1_000_000));
             
             return stats;
             
         } catch (Exception e) {
-            System.err.println("❌ 載入統計資料失敗: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("❌ 載入統計資料失敗: {}", e.getMessage(), e);
             // 返回空統計
             return new DashboardStats();
         }
@@ -323,64 +614,79 @@ public class DbOrderService {
     
     public DbOrder findById(Long id) {
         try {
-            List<DbOrder> orders = jdbc.query(
+            List<DbOrder> orders = timedList("orders.by_id", () -> jdbc.query(
                 "SELECT id, machine_name, due_date, eta_date, status FROM orders WHERE id = ?",
                 new OrderMapper(),
                 id
-            );
+            ));
             
             if (orders.isEmpty()) {
                 return null;
             }
             
-            DbOrder order = orders.get(0);
+            // 與 list() 共用同一條材料載入路徑
+            attachMaterials(orders, false);
             
-            // 載入材料需求
-            Map<String, Integer> inventory = getInventoryMap();
-            List<DbOrder.MaterialRequirement> materials = jdbc.query(
-                "SELECT material, qty_needed FROM order_materials WHERE order_id = ?",
-                (rs, rowNum) -> {
-                    String code = rs.getString("material").trim(); // A, B, C
-                    String chineseName = MATERIAL_CODE_TO_NAME.get(code); // 轉為中文
-                    int qtyNeeded = rs.getInt("qty_needed");
-                    int qtyOnHand = inventory.getOrDefault(code, 0); // 用代碼查庫存
-                    return new DbOrder.MaterialRequirement(
-                        chineseName != null ? chineseName : code, 
-                        qtyNeeded, 
-                        qtyOnHand
-                    );
-                },
-                order.getId()
-            );
-            order.setMaterials(materials);
-            
-            return order;
+            return orders.get(0);
         } catch (Exception e) {
-            System.err.println("❌ 根據ID載入訂單失敗: " + e.getMessage());
+            logger.error("❌ 根據ID載入訂單失敗: {} {}", kv("orderId", id), e.getMessage());
             return null;
         }
     }
     
+    /**
+     * 推送給儀表板的庫存狀態與 KPI (inventory-changed 事件)：推送執行緒查詢一次，所有連線共用
+     */
+    public Map<String, Object> getInventoryUpdate() {
+        Map<String, Object> update = new HashMap<>();
+        update.put("inventory", getInventoryStatus());
+        update.put("stats", getDashboardStats());
+        return update;
+    }
+    
+    /**
+     * 清除參考資料快取；所有會改動庫存、到貨計劃、工人產能或訂單需求的寫入路徑都必須呼叫
+     */
+    public void invalidateReferenceData() {
+        referenceCache.invalidateAll();
+    }
+    
+    /**
+     * 只清除庫存狀態 (缺口、補足日取自可用量索引)；排程重建索引並 commit 後呼叫
+     */
+    public void invalidateInventoryStatus() {
+        referenceCache.invalidate(CACHE_INVENTORY_STATUS);
+    }
+    
+    public Map<String, Object> getReferenceCacheStats() {
+        return referenceCache.getStats();
+    }
+    
     // ✅ 修正：返回 A/B/C 代碼對應的庫存，不做中文轉換
     private Map<String, Integer> getInventoryMap() {
         try {
-            return jdbc.query(
-                "SELECT material, qty_on_hand FROM inventory",
-                (rs) -> {
-                    Map<String, Integer> inv = new HashMap<>();
-                    while (rs.next()) {
-                        String code = rs.getString("material").trim(); // A, B, C
-                        inv.put(code, rs.getInt("qty_on_hand")); // 保持原代碼
-                    }
-                    return inv;
-                }
-            );
+            return referenceCache.get(CACHE_INVENTORY_MAP, this::loadInventoryMap);
         } catch (Exception e) {
-            System.err.println("❌ 載入庫存對應表失敗: " + e.getMessage());
+            logger.error("❌ 載入庫存對應表失敗: {}", e.getMessage());
             return new HashMap<>();
         }
     }
     
+    private Map<String, Integer> loadInventoryMap() {
+        Map<String, Integer> inventory = timed("inventory.map", () -> jdbc.query(
+            "SELECT material, qty_on_hand FROM inventory",
+            (rs) -> {
+                Map<String, Integer> inv = new HashMap<>();
+                while (rs.next()) {
+                    String code = rs.getString("material").trim(); // A, B, C
+                    inv.put(code, rs.getInt("qty_on_hand")); // 保持原代碼
+                }
+                return inv;
+            }
+        ), Map::size);
+        return Collections.unmodifiableMap(inventory);
+    }
+    
     // 靜態內部類：統計數據
     public static class DashboardStats {
         private int totalOrders = 0;
@@ -8,6 +8,7 @@ public class InventoryStatus {
     private int qtyOnHand;
     private int totalDemand;
     private int shortage;
+    private LocalDate coverageDate; // 到貨後需求全數補足的最早日期 (null = 現有到貨計劃無法補足)
     
     // Getters and Setters
     public String getMaterial() { return material; }
@@ -22,5 +23,8 @@ public class InventoryStatus {
     public int getShortage() { return shortage; }
     public void setShortage(int shortage) { this.shortage = shortage; }
     
+    public LocalDate getCoverageDate() { return coverageDate; }
+    public void setCoverageDate(LocalDate coverageDate) { this.coverageDate = coverageDate; }
+    
     public boolean hasShortage() { return shortage > 0; }
 }
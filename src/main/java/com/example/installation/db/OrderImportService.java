@@ -0,0 +1,137 @@
+package com.example.installation.db;
+
+import com.example.installation.baw.BAWOutbox;
+import com.example.installation.model.InstallationJob;
+import com.example.installation.schedule.MaterialAvailabilityIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 批次匯入訂單
+ *
+ * 每列先以與表單相同的規則驗證，不合法的列記錄錯誤後略過；
+ * 合法的列每 order-import.chunk-size 筆一個交易，以 batch 寫入訂單、材料需求與 BAW outbox。
+ * 某個 chunk 寫入失敗只回滾該 chunk，其餘 chunk 照常匯入。
+ * 之後不跑完整排程時，由這裡更新可用量索引中有新需求的材料，後續訂單的 ETA 估算才會計入這批需求。
+ */
+@Service
+public class OrderImportService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderImportService.class);
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final OrderRepository orderRepository;
+    private final BAWOutbox bawOutbox;
+    private final MaterialAvailabilityIndex availabilityIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public OrderImportService(OrderRepository orderRepository, BAWOutbox bawOutbox,
+            MaterialAvailabilityIndex availabilityIndex, TransactionTemplate transactionTemplate,
+            @Value("${order-import.chunk-size:1000}") int chunkSize) {
+        this.orderRepository = orderRepository;
+        this.bawOutbox = bawOutbox;
+        this.availabilityIndex = availabilityIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * @param rows 每列為表單欄位 (machineName, dueDate, nitrogenPipe, waterPipe, vacuumPipe)
+     * @param lineNumbers 每列在來源中的列號，錯誤訊息使用 (CSV 為檔案中的實際行號)；null 時為 1, 2, 3...
+     * @param enqueueBaw 是否為每張訂單排入 BAW 流程啟動
+     * @param refreshAvailability 寫入後更新可用量索引 (之後會跑完整排程時不需要)
+     */
+    public Map<String, Object> importOrders(List<Map<String, String>> rows, List<Integer> lineNumbers,
+            boolean enqueueBaw, boolean refreshAvailability) {
+        long start = System.nanoTime();
+        List<Map<String, Object>> errors = new ArrayList<>();
+        int failed = 0;
+
+        // 1. 驗證
+        List<OrderInput> valid = new ArrayList<>(rows.size());
+        List<Integer> rowNumbers = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            int row = lineNumbers != null ? lineNumbers.get(i) : i + 1;
+            try {
+                OrderInput input = OrderInput.fromParams(rows.get(i));
+                input.setEtaDate(availabilityIndex.estimateEta(OrderInput.MATERIAL_CODES, input.getQuantities()));
+                input.setStatus(input.getEtaDate().isAfter(input.getDueDate()) ? "LATE" : "ON_TIME");
+                valid.add(input);
+                rowNumbers.add(row);
+            } catch (IllegalArgumentException e) {
+                failed++;
+                addError(errors, row, e.getMessage());
+            }
+        }
+
+        // 2. 分 chunk 寫入
+        int imported = 0;
+        Set<String> changedMaterials = new LinkedHashSet<>();
+        for (int from = 0; from < valid.size(); from += chunkSize) {
+            List<OrderInput> chunk = valid.subList(from, Math.min(valid.size(), from + chunkSize));
+            try {
+                transactionTemplate.executeWithoutResult(tx -> {
+                    long[] ids = orderRepository.insertAll(chunk);
+                    if (enqueueBaw) {
+                        List<InstallationJob> jobs = new ArrayList<>(chunk.size());
+                        for (OrderInput input : chunk) {
+                            jobs.add(input.toInstallationJob());
+                        }
+                        bawOutbox.enqueueAll(ids, jobs);
+                    }
+                });
+                imported += chunk.size();
+                for (OrderInput input : chunk) {
+                    for (int i = 0; i < OrderInput.MATERIAL_CODES.length; i++) {
+                        if (input.getQuantity(i) > 0) {
+                            changedMaterials.add(OrderInput.MATERIAL_CODES[i]);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("❌ 訂單匯入第 {}-{} 列寫入失敗: {}",
+                    rowNumbers.get(from), rowNumbers.get(from + chunk.size() - 1), e.getMessage());
+                failed += chunk.size();
+                for (int i = from; i < from + chunk.size(); i++) {
+                    addError(errors, rowNumbers.get(i), "寫入失敗: " + e.getMessage());
+                }
+            }
+        }
+
+        // 3. 新需求計入可用量索引
+        if (refreshAvailability && !changedMaterials.isEmpty()) {
+            availabilityIndex.refreshMaterials(changedMaterials);
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        logger.info("📥 訂單匯入完成：共 {} 列，成功 {}，失敗 {}，耗時 {} ms", rows.size(), imported, failed, elapsedMillis);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("totalRows", rows.size());
+        result.put("imported", imported);
+        result.put("failed", failed);
+        result.put("errors", errors);
+        result.put("errorsTruncated", failed > errors.size());
+        result.put("elapsedMillis", elapsedMillis);
+        return result;
+    }
+
+    private void addError(List<Map<String, Object>> errors, int row, String message) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("row", row);
+            error.put("error", message);
+            errors.add(error);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.installation.db;
+
+import com.example.installation.model.BomItem;
+import com.example.installation.model.InstallationJob;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 新訂單輸入 (表單建立與批次匯入共用同一套驗證規則)
+ *
+ * 材料需求依 A/B/C (氮氣管、水管、真空管) 順序存放。
+ */
+public class OrderInput {
+    public static final String[] MATERIAL_CODES = { "A", "B", "C" };
+    public static final String[] MATERIAL_NAMES = { "氮氣管", "水管", "真空管" };
+    // 表單/匯入欄位名稱，與 MATERIAL_CODES 同順序
+    public static final String[] QUANTITY_FIELDS = { "nitrogenPipe", "waterPipe", "vacuumPipe" };
+    public static final int MAX_QTY = 1000;
+
+    private final String machineName;
+    private final LocalDate dueDate;
+    private final int[] quantities;
+    private LocalDate etaDate;
+    private String status;
+
+    public OrderInput(String machineName, LocalDate dueDate, int[] quantities) {
+        this.machineName = machineName;
+        this.dueDate = dueDate;
+        this.quantities = quantities;
+    }
+
+    /**
+     * 由表單欄位建立並驗證 (machineName, dueDate, nitrogenPipe, waterPipe, vacuumPipe)
+     *
+     * @throws IllegalArgumentException 欄位不合法
+     */
+    public static OrderInput fromParams(Map<String, String> params) {
+        String machineName = params.get("machineName");
+        String dueDateStr = params.get("dueDate");
+
+        validateInput(machineName, dueDateStr);
+
+        LocalDate dueDate;
+        try {
+            dueDate = LocalDate.parse(dueDateStr.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("截止日期格式錯誤，請使用 yyyy-MM-dd");
+        }
+        if (dueDate.isBefore(LocalDate.now())) {
+            throw new IllegalArgumentException("截止日期不能是過去的日期");
+        }
+
+        int[] quantities = new int[MATERIAL_CODES.length];
+        boolean any = false;
+        for (int i = 0; i < QUANTITY_FIELDS.length; i++) {
+            quantities[i] = parseIntSafely(params.get(QUANTITY_FIELDS[i]));
+            any |= quantities[i] > 0;
+        }
+        if (!any) {
+            throw new IllegalArgumentException("請至少填寫一種材料的需求量");
+        }
+
+        return new OrderInput(machineName, dueDate, quantities);
+    }
+
+    public static void validateInput(String machineName, String dueDateStr) {
+        if (machineName == null || machineName.trim().isEmpty()) {
+            throw new IllegalArgumentException("機台名稱不能為空");
+        }
+
+        if (dueDateStr == null || dueDateStr.trim().isEmpty()) {
+            throw new IllegalArgumentException("截止日期不能為空");
+        }
+
+        if (!machineName.matches("^M\\d+$")) {
+            throw new IllegalArgumentException("機台名稱格式錯誤，請使用 M + 數字的格式 (如 M3)");
+        }
+    }
+
+    public static int parseIntSafely(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return 0;
+        }
+        try {
+            int result = Integer.parseInt(value.trim());
+            return Math.max(0, Math.min(MAX_QTY, result)); // 限制在0-1000範圍
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 轉換為 BAW 工單格式
+     */
+    public InstallationJob toInstallationJob() {
+        InstallationJob job = new InstallationJob();
+
+        // 基本資訊
+        job.setJobId("JOB-" + machineName + "-" + System.currentTimeMillis());
+        job.setStatus("Draft");
+        job.setPriority(dueDate.isBefore(LocalDate.now().plusDays(30)) ? "High" : "Normal");
+        job.setCustomerName("系統建立");
+        job.setCustomerPhone("待填寫");
+        job.setAddress("待填寫");
+        job.setSlaDue(dueDate.atTime(17, 0, 0).toString());
+
+        // 建立材料清單
+        List<BomItem> bom = new ArrayList<>();
+        for (int i = 0; i < MATERIAL_CODES.length; i++) {
+            if (quantities[i] > 0) {
+                bom.add(new BomItem(MATERIAL_CODES[i], MATERIAL_NAMES[i], quantities[i], 0, null, null));
+            }
+        }
+        job.setBom(bom);
+
+        return job;
+    }
+
+    public int getMaterialCount() {
+        int count = 0;
+        for (int qty : quantities) {
+            if (qty > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Getters and Setters
+    public String getMachineName() { return machineName; }
+    public LocalDate getDueDate() { return dueDate; }
+    public int getQuantity(int material) { return quantities[material]; }
+    public int[] getQuantities() { return quantities; }
+
+    public LocalDate getEtaDate() { return etaDate; }
+    public void setEtaDate(LocalDate etaDate) { this.etaDate = etaDate; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+}
@@ -0,0 +1,46 @@
+package com.example.installation.db;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 機台名稱的 trigram (order_name_grams)，供 /jobs 的「包含」搜尋走索引
+ *
+ * 名稱轉大寫後每個連續 3 個字元一列；少於 3 個字元的名稱沒有 trigram (搜尋時改用 LIKE)。
+ * 訂單的機台名稱寫入後不會修改，只需在新增訂單時寫入；刪除訂單由外鍵 ON DELETE CASCADE 清除。
+ * 既有資料由 V5 migration 以相同規則 (UPPER + SUBSTRING) 回填。
+ */
+final class OrderNameGrams {
+    static final int GRAM_LENGTH = 3;
+    static final String INSERT_SQL = "INSERT INTO order_name_grams (gram, order_id) VALUES (?, ?)";
+
+    private OrderNameGrams() {
+    }
+
+    /**
+     * 不重複的 trigram，依出現順序
+     */
+    static List<String> of(String name) {
+        if (name == null) {
+            return List.of();
+        }
+        String upper = name.toUpperCase(Locale.ROOT);
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= upper.length(); i++) {
+            grams.add(upper.substring(i, i + GRAM_LENGTH));
+        }
+        return new ArrayList<>(grams);
+    }
+
+    /**
+     * 把一張訂單的 trigram 加到 batch 參數列 (gram, order_id)
+     */
+    static void addRows(List<Object[]> rows, long orderId, String name) {
+        for (String gram : of(name)) {
+            rows.add(new Object[] { gram, orderId });
+        }
+    }
+}
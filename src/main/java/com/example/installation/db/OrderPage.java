@@ -0,0 +1,20 @@
+package com.example.installation.db;
+
+import java.util.List;
+
+/**
+ * 訂單分頁結果；nextCursor 為 null 表示已到最後一頁
+ */
+public class OrderPage {
+    private final List<DbOrder> items;
+    private final String nextCursor;
+    
+    public OrderPage(List<DbOrder> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+    
+    public List<DbOrder> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+    public int getCount() { return items.size(); }
+}
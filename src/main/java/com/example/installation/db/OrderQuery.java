@@ -0,0 +1,114 @@
+package com.example.installation.db;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 訂單分頁查詢條件 (keyset 分頁，排序固定為 due_date, id)
+ */
+public class OrderQuery {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+    
+    private static final Pattern ORDER_ID = Pattern.compile("(?:工單-|#)(\\d{1,18})");
+    private static final Pattern DIGITS = Pattern.compile("\\d{1,18}");
+    
+    /**
+     * 機台名稱比對方式：EXACT / PREFIX 走 idx_orders_machine，CONTAINS 走 order_name_grams (trigram)
+     */
+    public enum Match { EXACT, PREFIX, CONTAINS }
+    
+    private String status;
+    private String machineName;
+    private Match machineMatch = Match.EXACT;
+    private Long id;
+    // 純數字搜尋：訂單編號相符「或」機台名稱相符
+    private Long idOrMachine;
+    private LocalDate dueFrom;
+    private LocalDate dueTo;
+    // 游標：上一頁最後一筆的 (due_date, id)
+    private LocalDate afterDueDate;
+    private Long afterId;
+    private int limit = DEFAULT_LIMIT;
+    
+    /**
+     * 解析游標字串 "yyyy-MM-dd:id"
+     */
+    public void setCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            afterDueDate = null;
+            afterId = null;
+            return;
+        }
+        String[] parts = cursor.trim().split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("游標格式錯誤: " + cursor);
+        }
+        try {
+            afterDueDate = LocalDate.parse(parts[0]);
+            afterId = Long.parseLong(parts[1]);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("游標格式錯誤: " + cursor, e);
+        }
+    }
+    
+    /**
+     * 解析 /jobs 的搜尋框：「工單-12」、「#12」為訂單編號，ON_TIME / LATE / DRAFT 為狀態，
+     * 其餘依 match 比對機台名稱 (轉大寫，與表單驗證的 M 開頭一致)；
+     * 純數字在 EXACT / PREFIX 時為訂單編號 (機台名稱都以 M 開頭)，CONTAINS 時訂單編號或機台名稱包含皆可
+     */
+    public void setSearch(String q, Match match) {
+        if (q == null || q.isBlank()) {
+            return;
+        }
+        String term = q.trim().toUpperCase(Locale.ROOT);
+        Matcher orderId = ORDER_ID.matcher(term);
+        if (orderId.matches()) {
+            id = Long.parseLong(orderId.group(1));
+        } else if (term.equals("ON_TIME") || term.equals("LATE") || term.equals("DRAFT")) {
+            status = term;
+        } else if (DIGITS.matcher(term).matches() && match != Match.CONTAINS) {
+            id = Long.parseLong(term);
+        } else {
+            if (DIGITS.matcher(term).matches()) {
+                idOrMachine = Long.parseLong(term);
+            }
+            machineName = term;
+            machineMatch = match;
+        }
+    }
+    
+    public static String cursorOf(DbOrder order) {
+        return order.getDueDate() + ":" + order.getId();
+    }
+    
+    // Getters and Setters
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public String getMachineName() { return machineName; }
+    public void setMachineName(String machineName) { this.machineName = machineName; }
+    
+    public Match getMachineMatch() { return machineMatch; }
+    public void setMachineMatch(Match machineMatch) { this.machineMatch = machineMatch == null ? Match.EXACT : machineMatch; }
+    
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public Long getIdOrMachine() { return idOrMachine; }
+    
+    public LocalDate getDueFrom() { return dueFrom; }
+    public void setDueFrom(LocalDate dueFrom) { this.dueFrom = dueFrom; }
+    
+    public LocalDate getDueTo() { return dueTo; }
+    public void setDueTo(LocalDate dueTo) { this.dueTo = dueTo; }
+    
+    public LocalDate getAfterDueDate() { return afterDueDate; }
+    public Long getAfterId() { return afterId; }
+    
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = Math.max(1, Math.min(MAX_LIMIT, limit)); }
+}
@@ -0,0 +1,151 @@
+package com.example.installation.db;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 訂單寫入 (訂單主檔 + 材料需求 + 機台名稱 trigram)
+ *
+ * 以 JDBC batch 寫入並取回產生的 id，不再用 "SELECT id ... ORDER BY id DESC" 反查。
+ * mssql-jdbc 的 executeBatch 不回傳每一列的 generated key，SQL Server 改用
+ * MERGE ... OUTPUT 一次寫入多列並取回 (列序號, id)；其他資料庫用 batch + getGeneratedKeys。
+ */
+@Repository
+public class OrderRepository {
+    // SQL Server 單一語句最多 2100 個參數，每列 5 個參數
+    private static final int MERGE_ROWS = 400;
+
+    private final JdbcTemplate jdbc;
+    private volatile Boolean sqlServer;
+
+    public OrderRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * 新增訂單與材料需求，回傳與 inputs 同順序的訂單 id；必須在呼叫端的交易內執行
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long[] insertAll(List<OrderInput> inputs) {
+        if (inputs.isEmpty()) {
+            return new long[0];
+        }
+        long[] ids = jdbc.execute((ConnectionCallback<long[]>) con ->
+            isSqlServer(con) ? insertOrdersMerge(con, inputs) : insertOrdersBatch(con, inputs));
+        insertMaterials(ids, inputs);
+        insertNameGrams(ids, inputs);
+        return ids;
+    }
+
+    private long[] insertOrdersBatch(Connection con, List<OrderInput> inputs) throws SQLException {
+        long[] ids = new long[inputs.size()];
+        try (PreparedStatement ps = con.prepareStatement(
+                "INSERT INTO orders (machine_name, due_date, eta_date, status) VALUES (?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            for (OrderInput input : inputs) {
+                bindOrder(ps, 1, input);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            int i = 0;
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                while (keys.next() && i < ids.length) {
+                    ids[i++] = keys.getLong(1);
+                }
+            }
+            if (i != ids.length) {
+                // 驅動程式不支援批次取回 key：拋出例外讓交易回滾，不留下無法對應材料的訂單
+                throw new SQLException("JDBC 驅動程式只回傳 " + i + "/" + ids.length + " 個 generated key");
+            }
+        }
+        return ids;
+    }
+
+    private long[] insertOrdersMerge(Connection con, List<OrderInput> inputs) throws SQLException {
+        long[] ids = new long[inputs.size()];
+        for (int from = 0; from < inputs.size(); from += MERGE_ROWS) {
+            int to = Math.min(inputs.size(), from + MERGE_ROWS);
+            String values = String.join(",", Collections.nCopies(to - from, "(?, ?, ?, ?, ?)"));
+            String sql =
+                "MERGE INTO orders AS t " +
+                "USING (VALUES " + values + ") AS s (rn, machine_name, due_date, eta_date, status) ON 1 = 0 " +
+                "WHEN NOT MATCHED THEN INSERT (machine_name, due_date, eta_date, status) " +
+                "VALUES (s.machine_name, s.due_date, s.eta_date, s.status) " +
+                "OUTPUT s.rn, inserted.id;";
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                int p = 1;
+                for (int i = from; i < to; i++) {
+                    ps.setInt(p++, i);
+                    bindOrder(ps, p, inputs.get(i));
+                    p += 4;
+                }
+                // OUTPUT 的列順序不保證與 VALUES 相同，以列序號對應
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ids[rs.getInt(1)] = rs.getLong(2);
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    private void bindOrder(PreparedStatement ps, int index, OrderInput input) throws SQLException {
+        ps.setString(index, input.getMachineName());
+        ps.setDate(index + 1, Date.valueOf(input.getDueDate()));
+        if (input.getEtaDate() != null) {
+            ps.setDate(index + 2, Date.valueOf(input.getEtaDate()));
+        } else {
+            ps.setNull(index + 2, Types.DATE);
+        }
+        if (input.getStatus() != null) {
+            ps.setString(index + 3, input.getStatus());
+        } else {
+            ps.setNull(index + 3, Types.VARCHAR);
+        }
+    }
+
+    private void insertMaterials(long[] ids, List<OrderInput> inputs) {
+        List<Object[]> rows = new ArrayList<>(inputs.size() * OrderInput.MATERIAL_CODES.length);
+        for (int i = 0; i < inputs.size(); i++) {
+            OrderInput input = inputs.get(i);
+            for (int m = 0; m < OrderInput.MATERIAL_CODES.length; m++) {
+                if (input.getQuantity(m) > 0) {
+                    rows.add(new Object[] { ids[i], OrderInput.MATERIAL_CODES[m], input.getQuantity(m) });
+                }
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO order_materials (order_id, material, qty_needed) VALUES (?, ?, ?)", rows);
+    }
+
+    private void insertNameGrams(long[] ids, List<OrderInput> inputs) {
+        List<Object[]> rows = new ArrayList<>(inputs.size() * 4);
+        for (int i = 0; i < inputs.size(); i++) {
+            OrderNameGrams.addRows(rows, ids[i], inputs.get(i).getMachineName());
+        }
+        jdbc.batchUpdate(OrderNameGrams.INSERT_SQL, rows);
+    }
+
+    private boolean isSqlServer(Connection con) throws SQLException {
+        Boolean result = sqlServer;
+        if (result == null) {
+            result = con.getMetaData().getDatabaseProductName().toLowerCase().contains("sql server");
+            sqlServer = result;
+        }
+        return result;
+    }
+}
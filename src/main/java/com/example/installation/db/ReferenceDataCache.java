@@ -0,0 +1,79 @@
+package com.example.installation.db;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 參考資料快取 (庫存、到貨計劃、工人產能)
+ *
+ * 這些資料一天只變動幾次，但每次頁面渲染都會重新查詢。
+ * 讀取時 read-through，寫入路徑 (建立訂單、庫存/到貨異動) 必須呼叫 {@link #invalidateAll()}。
+ * 命中率等統計以 cache.* 指標 (cache=referenceData) 發布。
+ */
+@Component
+public class ReferenceDataCache implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceDataCache.class);
+
+    private final Cache<String, Object> cache;
+
+    public ReferenceDataCache(
+            @Value("${reference-cache.maximum-size:64}") long maximumSize,
+            @Value("${reference-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+        logger.info("🗄️ 參考資料快取初始化: 上限 {} 筆, TTL {} 秒", maximumSize, ttlSeconds);
+    }
+
+    /**
+     * 取得快取值，未命中時呼叫 loader 載入；loader 拋出例外時不會寫入快取
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        return (T) cache.get(key, k -> loader.get());
+    }
+
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        logger.debug("🗑️ 參考資料快取已清除");
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "referenceData");
+    }
+
+    /**
+     * 命中/未命中/逐出統計，用於調整快取大小
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("loadFailureCount", stats.loadFailureCount());
+        return result;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.installation.db;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 合成測試資料 (訂單、材料需求、到貨計劃、工人產能)
+ *
+ * 相同的 seed、設定與執行日期一定產生相同的資料，方便重現效能問題。材料以代碼 A/B/C 寫入 (與訂單表單、匯入相同)。
+ * 預設值讓一年的產能與到貨量大致等於 10000 張訂單的需求 (約 45 萬單位)，調整訂單數時請一併調整產能與到貨量。
+ * 分佈：
+ * <ul>
+ *   <li>截止日：rushRatio 比例的訂單落在 30 天內 (急件)，其餘平均分佈在 dueDays 天內</li>
+ *   <li>材料：每種材料以 materialProbability 機率出現 (至少一種)；
+ *       數量 = 1 + (maxQty - 1) * r^qtySkew，skew 越大小單越多</li>
+ *   <li>到貨計劃：平均分散在 capacityDays 天內，每筆 inboundMinQty~inboundMaxQty</li>
+ *   <li>工人產能：今天起 capacityDays 天，平日 weekdayHours、週末 weekendHours</li>
+ * </ul>
+ */
+public class SyntheticDataGenerator {
+    private static final String[] MATERIALS = OrderInput.MATERIAL_CODES;
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbc;
+    private final Settings settings;
+
+    public SyntheticDataGenerator(JdbcTemplate jdbc, Settings settings) {
+        this.jdbc = jdbc;
+        this.settings = settings;
+    }
+
+    /**
+     * 寫入全部資料，回傳各表筆數與耗時
+     */
+    public Map<String, Object> generate() {
+        long start = System.nanoTime();
+        Random random = new Random(settings.getSeed());
+        LocalDate today = LocalDate.now();
+
+        int capacityDays = generateWorkerCapacity(today);
+        int inboundPlans = generateInboundPlans(random, today);
+        int[] orderCounts = generateOrders(random, today);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("orders", orderCounts[0]);
+        result.put("orderMaterials", orderCounts[1]);
+        result.put("inboundPlans", inboundPlans);
+        result.put("workerCapacityDays", capacityDays);
+        result.put("seed", settings.getSeed());
+        result.put("elapsedMillis", (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    private int generateWorkerCapacity(LocalDate today) {
+        int days = settings.getCapacityDays();
+        if (days <= 0) {
+            return 0;
+        }
+        jdbc.update("DELETE FROM worker_capacity WHERE work_date >= ? AND work_date < ?",
+            Date.valueOf(today), Date.valueOf(today.plusDays(days)));
+        List<Object[]> rows = new ArrayList<>(days);
+        for (int d = 0; d < days; d++) {
+            LocalDate date = today.plusDays(d);
+            boolean weekend = date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY;
+            rows.add(new Object[] { Date.valueOf(date), weekend ? settings.getWeekendHours() : settings.getWeekdayHours() });
+        }
+        jdbc.batchUpdate("INSERT INTO worker_capacity (work_date, hours_total) VALUES (?, ?)", rows);
+        return days;
+    }
+
+    private int generateInboundPlans(Random random, LocalDate today) {
+        int count = settings.getInboundPlans();
+        int span = Math.max(1, settings.getCapacityDays());
+        int qtyRange = Math.max(1, settings.getInboundMaxQty() - settings.getInboundMinQty() + 1);
+        List<Object[]> rows = new ArrayList<>(Math.min(count, BATCH_SIZE));
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[] { MATERIALS[random.nextInt(MATERIALS.length)],
+                Date.valueOf(today.plusDays(random.nextInt(span))),
+                settings.getInboundMinQty() + random.nextInt(qtyRange) });
+            if (rows.size() == BATCH_SIZE) {
+                jdbc.batchUpdate("INSERT INTO inbound_plans (material, arrival_date, qty) VALUES (?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO inbound_plans (material, arrival_date, qty) VALUES (?, ?, ?)", rows);
+        }
+        return count;
+    }
+
+    // 回傳 {訂單數, 材料需求筆數}
+    private int[] generateOrders(Random random, LocalDate today) {
+        int total = settings.getOrders();
+        int materialRows = 0;
+        for (int from = 0; from < total; from += BATCH_SIZE) {
+            int size = Math.min(BATCH_SIZE, total - from);
+            String[] names = new String[size];
+            LocalDate[] dueDates = new LocalDate[size];
+            int[][] quantities = new int[size][];
+            for (int i = 0; i < size; i++) {
+                names[i] = "M" + (10000 + from + i);
+                dueDates[i] = nextDueDate(random, today);
+                quantities[i] = nextQuantities(random);
+            }
+
+            long[] ids = jdbc.execute((ConnectionCallback<long[]>) con -> {
+                long[] keys = new long[size];
+                try (PreparedStatement ps = con.prepareStatement(
+                        "INSERT INTO orders (machine_name, due_date) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+                    for (int i = 0; i < size; i++) {
+                        ps.setString(1, names[i]);
+                        ps.setDate(2, Date.valueOf(dueDates[i]));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    int n = 0;
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        while (rs.next() && n < size) {
+                            keys[n++] = rs.getLong(1);
+                        }
+                    }
+                    if (n != size) {
+                        // 與 OrderRepository 相同：不能讓材料需求寫到 id 0
+                        throw new SQLException("JDBC 驅動程式只回傳 " + n + "/" + size + " 個 generated key");
+                    }
+                }
+                return keys;
+            });
+
+            List<Object[]> rows = new ArrayList<>(size * MATERIALS.length);
+            for (int i = 0; i < size; i++) {
+                for (int m = 0; m < MATERIALS.length; m++) {
+                    if (quantities[i][m] > 0) {
+                        rows.add(new Object[] { ids[i], MATERIALS[m], quantities[i][m] });
+                    }
+                }
+            }
+            jdbc.batchUpdate("INSERT INTO order_materials (order_id, material, qty_needed) VALUES (?, ?, ?)", rows);
+            materialRows += rows.size();
+
+            List<Object[]> grams = new ArrayList<>(size * 4);
+            for (int i = 0; i < size; i++) {
+                OrderNameGrams.addRows(grams, ids[i], names[i]);
+            }
+            jdbc.batchUpdate(OrderNameGrams.INSERT_SQL, grams);
+        }
+        return new int[] { total, materialRows };
+    }
+
+    private LocalDate nextDueDate(Random random, LocalDate today) {
+        if (random.nextDouble() < settings.getRushRatio()) {
+            return today.plusDays(1 + random.nextInt(30));
+        }
+        return today.plusDays(1 + random.nextInt(Math.max(1, settings.getDueDays())));
+    }
+
+    private int[] nextQuantities(Random random) {
+        int[] q = new int[MATERIALS.length];
+        boolean any = false;
+        for (int m = 0; m < q.length; m++) {
+            if (random.nextDouble() < settings.getMaterialProbability()) {
+                q[m] = nextQuantity(random);
+                any = true;
+            }
+        }
+        if (!any) {
+            q[random.nextInt(q.length)] = nextQuantity(random);
+        }
+        return q;
+    }
+
+    private int nextQuantity(Random random) {
+        return 1 + (int) ((settings.getMaxQty() - 1) * Math.pow(random.nextDouble(), settings.getQtySkew()));
+    }
+
+    /**
+     * 產生數量與分佈設定
+     */
+    public static class Settings {
+        private long seed = 42;
+        private int orders = 10000;
+        private int inboundPlans = 2000;
+        private int capacityDays = 365;
+        private int dueDays = 365;
+        private double rushRatio = 0.2;
+        private double materialProbability = 0.7;
+        private int maxQty = 60;
+        private double qtySkew = 2.0;
+        private int inboundMinQty = 100;
+        private int inboundMaxQty = 500;
+        private int weekdayHours = 1500;
+        private int weekendHours = 500;
+
+        // Getters and Setters
+        public long getSeed() { return seed; }
+        public void setSeed(long seed) { this.seed = seed; }
+
+        public int getOrders() { return orders; }
+        public void setOrders(int orders) { this.orders = orders; }
+
+        public int getInboundPlans() { return inboundPlans; }
+        public void setInboundPlans(int inboundPlans) { this.inboundPlans = inboundPlans; }
+
+        public int getCapacityDays() { return capacityDays; }
+        public void setCapacityDays(int capacityDays) { this.capacityDays = capacityDays; }
+
+        public int getDueDays() { return dueDays; }
+        public void setDueDays(int dueDays) { this.dueDays = dueDays; }
+
+        public double getRushRatio() { return rushRatio; }
+        public void setRushRatio(double rushRatio) { this.rushRatio = rushRatio; }
+
+        public double getMaterialProbability() { return materialProbability; }
+        public void setMaterialProbability(double materialProbability) { this.materialProbability = materialProbability; }
+
+        public int getMaxQty() { return maxQty; }
+        public void setMaxQty(int maxQty) { this.maxQty = maxQty; }
+
+        public double getQtySkew() { return qtySkew; }
+        public void setQtySkew(double qtySkew) { this.qtySkew = qtySkew; }
+
+        public int getInboundMinQty() { return inboundMinQty; }
+        public void setInboundMinQty(int inboundMinQty) { this.inboundMinQty = inboundMinQty; }
+
+        public int getInboundMaxQty() { return inboundMaxQty; }
+        public void setInboundMaxQty(int inboundMaxQty) { this.inboundMaxQty = inboundMaxQty; }
+
+        public int getWeekdayHours() { return weekdayHours; }
+        public void setWeekdayHours(int weekdayHours) { this.weekdayHours = weekdayHours; }
+
+        public int getWeekendHours() { return weekendHours; }
+        public void setWeekendHours(int weekendHours) { this.weekendHours = weekendHours; }
+    }
+}
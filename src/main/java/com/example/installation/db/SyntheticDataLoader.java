@@ -0,0 +1,61 @@
+package com.example.installation.db;
+
+import com.example.installation.schedule.ScheduleService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * devh2 啟動時填入大量合成資料 (devdata.enabled=true 才啟用)
+ *
+ * 數量與分佈由 devdata.* 設定 (對應 {@link SyntheticDataGenerator.Settings} 的欄位，例如 devdata.orders、devdata.rush-ratio)。
+ * devdata.schedule=true 時接著執行一次完整排程，讓 ETA/排程任務也是大量資料。
+ */
+@Component
+@Profile("devh2")
+@ConditionalOnProperty(name = "devdata.enabled", havingValue = "true")
+public class SyntheticDataLoader implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(SyntheticDataLoader.class);
+
+    private final JdbcTemplate jdbc;
+    private final DbOrderService dbOrderService;
+    private final ScheduleService scheduleService;
+    private final Environment environment;
+
+    public SyntheticDataLoader(JdbcTemplate jdbc, DbOrderService dbOrderService, ScheduleService scheduleService,
+            Environment environment) {
+        this.jdbc = jdbc;
+        this.dbOrderService = dbOrderService;
+        this.scheduleService = scheduleService;
+        this.environment = environment;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Binder binder = Binder.get(environment);
+        SyntheticDataGenerator.Settings settings = binder.bind("devdata", SyntheticDataGenerator.Settings.class)
+            .orElseGet(SyntheticDataGenerator.Settings::new);
+
+        logger.info("🧪 產生合成資料: {} 張訂單, {} 筆到貨計劃, seed={}",
+            settings.getOrders(), settings.getInboundPlans(), settings.getSeed());
+        Map<String, Object> result = new SyntheticDataGenerator(jdbc, settings).generate();
+        dbOrderService.invalidateReferenceData();
+        // 訂單、到貨與產能都已改寫，之前的排程快照 (若有) 不再有效
+        scheduleService.invalidate();
+        logger.info("🧪 合成資料完成: {}", result);
+
+        if (binder.bind("devdata.schedule", Boolean.class).orElse(true)) {
+            Map<String, Object> schedule = scheduleService.runFullSchedule();
+            logger.info("🧪 完整排程完成: {}", schedule);
+        }
+    }
+}
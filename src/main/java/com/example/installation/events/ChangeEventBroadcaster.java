@@ -0,0 +1,385 @@
+package com.example.installation.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * 資料異動推送 (Server-Sent Events)：寫入路徑發布事件，所有開著儀表板/排程頁的連線各收到一份
+ *
+ * <ul>
+ *   <li>連線是 Servlet 非同步請求 ({@link SseEmitter})，不占用 Tomcat 請求執行緒；連線數上限見 server.tomcat.max-connections</li>
+ *   <li>單一 fan-out 執行緒依序編號、序列化一次 JSON，放進每條連線自己的佇列；
+ *       少數 writer 執行緒輪流寫出有資料的連線，慢的連線只拖住一個 writer，佇列滿時直接斷線 (瀏覽器會自動重連)</li>
+ *   <li>需要查詢資料庫的「最新狀態」事件由另一個 loader 執行緒查詢與序列化，fan-out 執行緒只處理算好的內容，
+ *       查詢變慢時不會延誤其他事件與補送</li>
+ *   <li>最近的事件保留在環狀緩衝區，重連時依 Last-Event-ID 補送；漏掉太多或伺服器重啟過則送 reload 請頁面重新載入</li>
+ *   <li>在交易內發布的事件等 commit 後才送出，回滾時不送</li>
+ * </ul>
+ */
+@Component
+public class ChangeEventBroadcaster {
+    private static final Logger logger = LoggerFactory.getLogger(ChangeEventBroadcaster.class);
+
+    /** 新訂單：{orders: [{id, machineName, dueDate, etaDate, status}], count}；批次匯入時 orders 為空、只有 count */
+    public static final String ORDER_CREATED = "order-created";
+    /** 排程結果異動：{orders: [{id, etaDate, status}], count, full}；full = true 時為完整排程，不列出訂單 */
+    public static final String ETA_CHANGED = "eta-changed";
+    /** 庫存/需求與 KPI：{inventory: [...], stats: {...}} */
+    public static final String INVENTORY_CHANGED = "inventory-changed";
+    /** 補送不完整，請重新載入頁面 */
+    public static final String RELOAD = "reload";
+
+    private static final long RECONNECT_MILLIS = 3000;
+
+    private final ObjectMapper objectMapper;
+    private final long timeoutMillis;
+    private final int replaySize;
+    private final int queueSize;
+    private final ExecutorService fanout;
+    private final ExecutorService loader;
+    private final ExecutorService writers;
+    // 每次啟動不同，重連時辨別事件編號是否屬於這次啟動
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicBoolean> pendingLatest = new ConcurrentHashMap<>();
+    private final Counter overflowCounter;
+    private final Counter errorCounter;
+    private final MeterRegistry meterRegistry;
+
+    // 以下只在 fan-out 執行緒存取
+    private final ArrayDeque<Event> replay = new ArrayDeque<>();
+    private long sequence;
+
+    public ChangeEventBroadcaster(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${events.sse.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${events.sse.replay-size:256}") int replaySize,
+            @Value("${events.sse.queue-size:256}") int queueSize,
+            @Value("${events.sse.writer-threads:2}") int writerThreads) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.timeoutMillis = timeoutMillis;
+        this.replaySize = replaySize;
+        this.queueSize = queueSize;
+        this.fanout = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "sse-fanout");
+            t.setDaemon(true);
+            return t;
+        });
+        this.loader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "sse-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger seq = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(writerThreads, r -> {
+            Thread t = new Thread(r, "sse-writer-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Gauge.builder("sse.connections", subscribers, Set::size)
+            .description("目前的 SSE 連線數")
+            .register(meterRegistry);
+        this.overflowCounter = Counter.builder("sse.disconnects").tag("reason", "overflow").register(meterRegistry);
+        this.errorCounter = Counter.builder("sse.disconnects").tag("reason", "error").register(meterRegistry);
+    }
+
+    /**
+     * 開啟一條連線；lastEventId 為瀏覽器重連時帶的 Last-Event-ID (第一次連線為 null)
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        // 先送出回應標頭與重連間隔，瀏覽器才會觸發 open
+        enqueue(subscriber, Event.HELLO);
+        // 補送與加入在 fan-out 執行緒做，與新事件的順序一致，不重複也不遺漏
+        fanout.execute(() -> {
+            replayTo(subscriber, lastEventId);
+            synchronized (subscriber) {
+                // 等待加入期間已斷線的不加入
+                if (!subscriber.closed) {
+                    subscribers.add(subscriber);
+                }
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * 發布事件 (data 以 JSON 送出)；交易內呼叫時 commit 後才送
+     */
+    public void publish(String type, Object data) {
+        afterCommit(() -> fanout.execute(() -> {
+            String json = toJson(type, data);
+            if (json != null) {
+                broadcast(type, json);
+            }
+        }));
+    }
+
+    /**
+     * 發布「最新狀態」類事件：data 在 loader 執行緒計算並序列化後才交給 fan-out，
+     * 尚未計算前的多次發布合併成一次 (例如連續建立多張訂單時只查詢一次庫存與 KPI，所有連線共用)
+     */
+    public void publishLatest(String type, Supplier<?> data) {
+        AtomicBoolean pending = pendingLatest.computeIfAbsent(type, k -> new AtomicBoolean());
+        afterCommit(() -> {
+            if (!pending.compareAndSet(false, true)) {
+                return;
+            }
+            loader.execute(() -> {
+                // 先清除旗標：計算期間的新異動會再排一次，送出的一定是最新的
+                pending.set(false);
+                String json;
+                try {
+                    json = toJson(type, data.get());
+                } catch (RuntimeException e) {
+                    logger.error("❌ 推送事件資料載入失敗 {}", kv("type", type), e);
+                    return;
+                }
+                if (json != null) {
+                    fanout.execute(() -> broadcast(type, json));
+                }
+            });
+        });
+    }
+
+    public int getConnectionCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * 定期送出註解行：維持經過 proxy 的閒置連線，並及早發現已斷線的用戶端
+     */
+    @Scheduled(fixedDelayString = "${events.sse.heartbeat-ms:15000}",
+               initialDelayString = "${events.sse.heartbeat-ms:15000}")
+    public void heartbeat() {
+        fanout.execute(() -> {
+            for (Subscriber subscriber : subscribers) {
+                enqueue(subscriber, Event.HEARTBEAT);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+        fanout.shutdownNow();
+        writers.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    private void afterCommit(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    // 序列化失敗回傳 null (已記錄)
+    private String toJson(String type, Object data) {
+        try {
+            return objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            logger.error("❌ 推送事件序列化失敗 {}", kv("type", type), e);
+            return null;
+        }
+    }
+
+    // fan-out 執行緒
+    private void broadcast(String type, String json) {
+        Event event = new Event(bootId + "-" + (++sequence), sequence, type, json);
+        replay.addLast(event);
+        if (replay.size() > replaySize) {
+            replay.removeFirst();
+        }
+        for (Subscriber subscriber : subscribers) {
+            enqueue(subscriber, event);
+        }
+        Counter.builder("sse.events").tag("type", type).register(meterRegistry).increment();
+        logger.debug("📡 推送事件 {} {} {}", kv("type", type), kv("eventId", event.id),
+            kv("connections", subscribers.size()));
+    }
+
+    // fan-out 執行緒
+    private void replayTo(Subscriber subscriber, String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return;
+        }
+        long after = parseSequence(lastEventId);
+        if (after < 0 || after > sequence) {
+            enqueue(subscriber, Event.RELOAD);
+            return;
+        }
+        if (after == sequence) {
+            return;
+        }
+        // 缺的第一筆已被擠出緩衝區
+        if (replay.isEmpty() || replay.peekFirst().sequence > after + 1) {
+            enqueue(subscriber, Event.RELOAD);
+            return;
+        }
+        for (Event event : replay) {
+            if (event.sequence > after) {
+                enqueue(subscriber, event);
+            }
+        }
+    }
+
+    // "bootId-序號"；不是這次啟動的編號回傳 -1
+    private long parseSequence(String eventId) {
+        int dash = eventId.lastIndexOf('-');
+        if (dash < 0 || !eventId.substring(0, dash).equals(bootId)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, Event event) {
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return;
+            }
+            if (subscriber.queue.size() >= queueSize) {
+                // 讀取太慢：斷線讓瀏覽器重連後補送或重新載入，不讓佇列無限成長
+                overflowCounter.increment();
+                close(subscriber);
+                return;
+            }
+            subscriber.queue.addLast(event);
+            if (subscriber.draining) {
+                return;
+            }
+            subscriber.draining = true;
+        }
+        writers.execute(() -> drain(subscriber));
+    }
+
+    // writer 執行緒：同一條連線同時只有一個 writer
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            Event event;
+            synchronized (subscriber) {
+                event = subscriber.queue.pollFirst();
+                if (event == null || subscriber.closed) {
+                    subscriber.draining = false;
+                    return;
+                }
+            }
+            try {
+                subscriber.emitter.send(event.toSse());
+            } catch (IOException | IllegalStateException e) {
+                // 用戶端已斷線 (或連線已逾時結束)
+                errorCounter.increment();
+                close(subscriber);
+                return;
+            }
+        }
+    }
+
+    private void close(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return;
+            }
+            subscriber.closed = true;
+            subscriber.queue.clear();
+            subscribers.remove(subscriber);
+        }
+        try {
+            subscriber.emitter.complete();
+        } catch (IllegalStateException e) {
+            // 已結束
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        synchronized (subscriber) {
+            subscriber.closed = true;
+            subscriber.queue.clear();
+            subscribers.remove(subscriber);
+        }
+    }
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        // 以下由 synchronized (this) 保護
+        final ArrayDeque<Event> queue = new ArrayDeque<>();
+        boolean draining;
+        boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    private static final class Event {
+        static final Event HELLO = new Event(null, 0, null, null);
+        static final Event HEARTBEAT = new Event(null, 0, null, null);
+        static final Event RELOAD = new Event(null, 0, ChangeEventBroadcaster.RELOAD, "{}");
+
+        final String id;
+        final long sequence;
+        final String type;
+        final String json;
+
+        Event(String id, long sequence, String type, String json) {
+            this.id = id;
+            this.sequence = sequence;
+            this.type = type;
+            this.json = json;
+        }
+
+        SseEmitter.SseEventBuilder toSse() {
+            if (this == HELLO) {
+                return SseEmitter.event().reconnectTime(RECONNECT_MILLIS).comment("connected");
+            }
+            if (this == HEARTBEAT) {
+                return SseEmitter.event().comment("");
+            }
+            SseEmitter.SseEventBuilder builder = SseEmitter.event().name(type).data(json, MediaType.APPLICATION_JSON);
+            return id == null ? builder : builder.id(id);
+        }
+    }
+}
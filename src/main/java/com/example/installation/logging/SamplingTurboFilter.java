@@ -0,0 +1,70 @@
+package com.example.installation.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 依 logger 類別抽樣：逐筆診斷 (每筆材料需求、每個庫存項目) 每 N 筆只輸出 1 筆
+ *
+ * 設定格式 (logback-spring.xml 的 categories，來源為 logging.sampling)：
+ * {@code com.example.installation.db.DbOrderService.rows=100,com.example.installation.other=10}，
+ * logger 名稱以前綴比對，N=1 表示全部輸出。只對 INFO 以下層級抽樣，WARN/ERROR 一律保留。
+ * 在 level 判斷之前執行，被抽掉的事件不會組字串也不會進入 async 佇列。
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private final List<Category> categories = new ArrayList<>();
+
+    public void setCategories(String spec) {
+        categories.clear();
+        if (spec == null || spec.isBlank()) {
+            return;
+        }
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2 || kv[0].isBlank()) {
+                addWarn("忽略格式錯誤的抽樣設定: " + part);
+                continue;
+            }
+            try {
+                categories.add(new Category(kv[0].trim(), Math.max(1, Long.parseLong(kv[1].trim()))));
+            } catch (NumberFormatException e) {
+                addWarn("忽略格式錯誤的抽樣設定: " + part);
+            }
+        }
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // format 為 null 是 isDebugEnabled() 之類的詢問，不計數
+        if (format == null || level == null || level.isGreaterOrEqual(Level.WARN) || categories.isEmpty()) {
+            return FilterReply.NEUTRAL;
+        }
+        String name = logger.getName();
+        for (Category category : categories) {
+            if (name.startsWith(category.prefix)) {
+                // 每個類別第 1、N+1、2N+1... 筆輸出
+                return category.counter.getAndIncrement() % category.every == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+            }
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    private static final class Category {
+        final String prefix;
+        final long every;
+        final AtomicLong counter = new AtomicLong();
+
+        Category(String prefix, long every) {
+            this.prefix = prefix;
+            this.every = every;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.installation.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分時段材料可用量索引
+ *
+ * 每種材料一條時間軸：事件日 (現有庫存、到貨、已承諾需求) 排序後存成 primitive 陣列，
+ * balance 為「累計到貨 - 累計承諾需求」的前綴和，suffixMin 為該日之後的最小餘量。
+ * 某日可再承諾的數量 = suffixMin (之後任何一天都不能變成負數)，且 suffixMin 隨日期遞增，
+ * 因此「最早哪天有 X 單位可用」只需一次二分搜尋 O(log n)。
+ *
+ * 承諾需求取自 schedule_tasks 的施工日；尚未排程的需求視為今天就要用。
+ * 到貨計劃或訂單異動後呼叫 {@link #refreshMaterials(Collection)} 只重建相關材料。
+ */
+@Component
+public class MaterialAvailabilityIndex {
+    private static final Logger logger = LoggerFactory.getLogger(MaterialAvailabilityIndex.class);
+
+    // 資料庫一律存代碼 A/B/C；以中文名稱查詢時轉為代碼
+    private static final Map<String, String> NAME_TO_CODE = Map.of(
+        "氮氣管", "A",
+        "水管", "B",
+        "真空管", "C"
+    );
+    private static final int MATERIAL_PREP_DAYS = 10; // 無到貨計劃可滿足時的基本準備時間
+
+    private final JdbcTemplate jdbc;
+    private volatile Map<String, Timeline> timelines = new ConcurrentHashMap<>();
+    private volatile LocalDate builtOn;
+
+    public MaterialAvailabilityIndex(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * 最早可取得 qty 單位的日期；排程資料範圍內都不足時回傳 null
+     */
+    public LocalDate earliestAvailableDate(String material, long qty) {
+        Timeline t = timeline(material);
+        if (t == null) {
+            return null;
+        }
+        int i = t.firstIndexWithFree(qty);
+        return i < 0 ? null : LocalDate.ofEpochDay(t.days[i]);
+    }
+
+    /**
+     * 指定日期可再承諾的數量 (之後每天都不會透支)
+     */
+    public long availableOn(String material, LocalDate date) {
+        Timeline t = timeline(material);
+        return t == null ? 0 : Math.max(0, t.freeOn(date.toEpochDay()));
+    }
+
+    /**
+     * 計入所有到貨後仍然不足的數量 (時間軸上最低餘量的缺口)
+     */
+    public long projectedShortage(String material) {
+        Timeline t = timeline(material);
+        return t == null || t.days.length == 0 ? 0 : Math.max(0, -t.suffixMin[0]);
+    }
+
+    /**
+     * 新訂單的預估完成日 = 所有材料最早可用日 + 施工天數 (每天處理24單位)
+     *
+     * materials 與 quantities 同順序；現有到貨計劃無法滿足的材料以基本準備時間估算。
+     */
+    public LocalDate estimateEta(String[] materials, int[] quantities) {
+        LocalDate now = LocalDate.now();
+        LocalDate materialReady = now;
+        int total = 0;
+        for (int i = 0; i < materials.length; i++) {
+            if (quantities[i] <= 0) {
+                continue;
+            }
+            total += quantities[i];
+            LocalDate available = earliestAvailableDate(materials[i], quantities[i]);
+            if (available == null) {
+                available = now.plusDays(MATERIAL_PREP_DAYS);
+            }
+            if (available.isAfter(materialReady)) {
+                materialReady = available;
+            }
+        }
+        return materialReady.plusDays((int) Math.ceil(total / 24.0));
+    }
+
+    /**
+     * 重建全部材料
+     */
+    public synchronized void rebuildAll() {
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        Set<String> materials = new LinkedHashSet<>();
+        jdbc.query("SELECT material FROM inventory", rs -> { materials.add(rs.getString("material").trim()); });
+        jdbc.query("SELECT DISTINCT material FROM inbound_plans", rs -> { materials.add(rs.getString("material").trim()); });
+
+        Map<String, Timeline> rebuilt = new ConcurrentHashMap<>();
+        for (String material : materials) {
+            rebuilt.put(material, build(material, today));
+        }
+        timelines = rebuilt;
+        builtOn = today;
+        logger.info("📈 材料可用量索引重建: {} 種材料, {} ms", materials.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 只重建指定材料 (到貨計劃或訂單異動後呼叫)
+     */
+    public synchronized void refreshMaterials(Collection<String> materials) {
+        LocalDate today = LocalDate.now();
+        if (builtOn == null || !builtOn.equals(today)) {
+            rebuildAll();
+            return;
+        }
+        for (String material : materials) {
+            String key = code(material.trim());
+            timelines.put(key, build(key, today));
+        }
+    }
+
+    private Timeline timeline(String material) {
+        if (builtOn == null || !builtOn.equals(LocalDate.now())) {
+            rebuildAll();
+        }
+        return timelines.get(code(material));
+    }
+
+    private static String code(String material) {
+        return NAME_TO_CODE.getOrDefault(material, material);
+    }
+
+    private Timeline build(String material, LocalDate today) {
+        long todayDay = today.toEpochDay();
+        // 事件日 -> 當日淨變動；逾期未到的到貨、未排程的需求都歸到今天
+        TreeMap<Long, Long> delta = new TreeMap<>();
+        delta.put(todayDay, 0L);
+
+        jdbc.query("SELECT qty_on_hand FROM inventory WHERE material = ?",
+            rs -> { delta.merge(todayDay, (long) rs.getInt("qty_on_hand"), Long::sum); },
+            material);
+        jdbc.query("SELECT arrival_date, SUM(qty) AS qty FROM inbound_plans WHERE material = ? GROUP BY arrival_date",
+            rs -> {
+                long day = Math.max(todayDay, rs.getDate("arrival_date").toLocalDate().toEpochDay());
+                delta.merge(day, rs.getLong("qty"), Long::sum);
+            },
+            material);
+
+        long[] planned = {0};
+        jdbc.query("SELECT work_date, SUM(units_planned) AS units FROM schedule_tasks WHERE material = ? GROUP BY work_date",
+            rs -> {
+                long units = rs.getLong("units");
+                long day = Math.max(todayDay, rs.getDate("work_date").toLocalDate().toEpochDay());
+                delta.merge(day, -units, Long::sum);
+                planned[0] += units;
+            },
+            material);
+        Long totalDemand = jdbc.queryForObject(
+            "SELECT COALESCE(SUM(qty_needed), 0) FROM order_materials WHERE material = ?", Long.class, material);
+        long unplanned = (totalDemand == null ? 0 : totalDemand) - planned[0];
+        if (unplanned > 0) {
+            delta.merge(todayDay, -unplanned, Long::sum);
+        }
+
+        int n = delta.size();
+        int[] days = new int[n];
+        long[] balance = new long[n];
+        int i = 0;
+        long running = 0;
+        for (Map.Entry<Long, Long> e : delta.entrySet()) {
+            running += e.getValue();
+            days[i] = (int) (long) e.getKey();
+            balance[i++] = running;
+        }
+        return new Timeline(days, balance);
+    }
+
+    /**
+     * 單一材料的時間軸 (不可變)
+     */
+    static final class Timeline {
+        final int[] days;        // epoch day，遞增
+        final long[] balance;    // 當日結束時的累計餘量
+        final long[] suffixMin;  // min(balance[i..])，隨 i 遞增
+
+        Timeline(int[] days, long[] balance) {
+            this.days = days;
+            this.balance = balance;
+            this.suffixMin = new long[balance.length];
+            long min = Long.MAX_VALUE;
+            for (int i = balance.length - 1; i >= 0; i--) {
+                min = Math.min(min, balance[i]);
+                suffixMin[i] = min;
+            }
+        }
+
+        int firstIndexWithFree(long qty) {
+            int lo = 0, hi = days.length - 1, found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (suffixMin[mid] >= qty) {
+                    found = mid;
+                    hi = mid - 1;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return found;
+        }
+
+        long freeOn(long day) {
+            // 最後一個 <= day 的事件；在第一個事件之前視為第一個事件
+            int lo = 0, hi = days.length - 1, idx = 0;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (days[mid] <= day) {
+                    idx = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return days.length == 0 ? 0 : suffixMin[idx];
+        }
+    }
+}
@@ -0,0 +1,595 @@
+package com.example.installation.schedule;
+
+import com.example.installation.db.DbOrderService;
+import com.example.installation.events.ChangeEventBroadcaster;
+import com.example.installation.schedule.ScheduleState.PlannedOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 排程服務
+ *
+ * 完整排程：從資料庫載入訂單/庫存/到貨/產能，交給 {@link SchedulingEngine} 計算，
+ * 再以 JDBC batch 寫回 schedule_tasks、schedule_results 與 orders.eta_date/status。
+ * 增量修補：單一訂單新增/修改/刪除時，只重排優先順序在它之後、且與它競爭同一批材料或同一批產能日的訂單。
+ * ETA/狀態有變動時 commit 後推送 eta-changed 事件 ({@link ChangeEventBroadcaster})。
+ * 可用量索引重建後，快取的庫存狀態也在 commit 後清除。
+ *
+ * 排程與修補以物件鎖序列化，交易在鎖內開始並 commit (不用 @Transactional：proxy 在方法返回、
+ * 釋放鎖之後才 commit，下一個排程會讀到尚未 commit 前的 schedule_tasks 並覆蓋)。
+ */
+@Service
+public class ScheduleService {
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleService.class);
+
+    private static final int BATCH_SIZE = 1000;
+    // eta-changed 事件最多列出的訂單數，超過時改送 full (頁面重新載入)
+    private static final int MAX_EVENT_ORDERS = 500;
+
+    private final JdbcTemplate jdbc;
+    private final int horizonDays;
+    private final int defaultDailyCapacity;
+    private final MaterialAvailabilityIndex availabilityIndex;
+    private final DbOrderService dbOrderService;
+    private final ChangeEventBroadcaster events;
+    private final TransactionTemplate transactionTemplate;
+
+    // 最近一次排程結果；null 表示需要完整排程
+    private ScheduleState state;
+
+    public ScheduleService(JdbcTemplate jdbc,
+            @Value("${schedule.horizon-days:365}") int horizonDays,
+            @Value("${schedule.default-daily-capacity:24}") int defaultDailyCapacity,
+            MaterialAvailabilityIndex availabilityIndex,
+            DbOrderService dbOrderService,
+            ChangeEventBroadcaster events,
+            PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        // 一律在自己的交易內 commit，即使呼叫端已有交易，鎖釋放前結果也已可見
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.availabilityIndex = availabilityIndex;
+        this.dbOrderService = dbOrderService;
+        this.events = events;
+        this.horizonDays = horizonDays;
+        this.defaultDailyCapacity = defaultDailyCapacity;
+    }
+
+    /**
+     * 重新計算全部訂單的排程並整批寫回
+     */
+    public synchronized Map<String, Object> runFullSchedule() {
+        return inTransaction(this::fullSchedule);
+    }
+
+    /**
+     * 單一訂單新增、修改或刪除後的增量修補
+     *
+     * 受影響訂單 = 該訂單本身 + 優先順序在其 (新/舊) 位置之後、與受影響集合共用材料，
+     * 或排程時查看過受影響集合可能釋放/占用的產能日的訂單 (遞移封閉)。
+     * 其餘訂單的任務、材料保留與產能占用維持不動，資料庫也只改寫受影響訂單的資料列。
+     */
+    public synchronized Map<String, Object> repairOrder(long orderId) {
+        return inTransaction(() -> repair(orderId));
+    }
+
+    /**
+     * 捨棄排程快照 (庫存、到貨計劃、產能異動，或不經排程直接寫入訂單後)，下次修補會先做完整排程
+     */
+    public synchronized void invalidate() {
+        state = null;
+    }
+
+    // 呼叫端持有鎖；失敗 (含 commit 失敗) 時快照可能已部分修改，交易回滾後下次改做完整排程
+    private Map<String, Object> inTransaction(Supplier<Map<String, Object>> work) {
+        try {
+            return transactionTemplate.execute(tx -> work.get());
+        } catch (RuntimeException e) {
+            state = null;
+            throw e;
+        }
+    }
+
+    private Map<String, Object> fullSchedule() {
+        long t0 = System.nanoTime();
+        LocalDate horizonStart = LocalDate.now();
+
+        ScheduleState s = loadState(horizonStart);
+        long t1 = System.nanoTime();
+
+        SchedulingEngine engine = new SchedulingEngine(s.dailyCapacity, s.cumulativeSupply);
+        planOrders(engine, s.orders);
+        int lateCount = 0, unscheduledCount = 0;
+        for (PlannedOrder o : s.orders) {
+            s.account(o, 1);
+            if (o.finishDay == SchedulingEngine.UNSCHEDULED) {
+                unscheduledCount++;
+            }
+            if (!isOnTime(o)) {
+                lateCount++;
+            }
+        }
+        long t2 = System.nanoTime();
+
+        jdbc.update("DELETE FROM schedule_tasks");
+        jdbc.update("DELETE FROM schedule_results");
+        persist(s, s.orders);
+        availabilityIndex.rebuildAll();
+        invalidateInventoryStatusAfterCommit();
+        long t3 = System.nanoTime();
+
+        state = s;
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("horizonStart", horizonStart.toString());
+        summary.put("horizonDays", horizonDays);
+        summary.put("orders", s.orders.size());
+        summary.put("tasks", engine.getTaskCount());
+        summary.put("lateOrders", lateCount);
+        summary.put("unscheduledOrders", unscheduledCount);
+        summary.put("loadMillis", (t1 - t0) / 1_000_000);
+        summary.put("computeMillis", (t2 - t1) / 1_000_000);
+        summary.put("persistMillis", (t3 - t2) / 1_000_000);
+
+        logger.info("📅 完整排程完成: {}", summary);
+        publishEtaChanged(List.of(), s.orders.size(), true);
+        return summary;
+    }
+
+    private Map<String, Object> repair(long orderId) {
+        long t0 = System.nanoTime();
+
+        if (state == null || !state.horizonStart.equals(LocalDate.now())) {
+            Map<String, Object> full = fullSchedule();
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("orderId", orderId);
+            report.put("mode", "full");
+            report.put("affectedOrders", full.get("orders"));
+            report.put("elapsedMillis", (System.nanoTime() - t0) / 1_000_000);
+            putOrderResult(report, state, orderId);
+            return report;
+        }
+
+        return repairIncrementally(state, orderId, t0);
+    }
+
+    private Map<String, Object> repairIncrementally(ScheduleState s, long orderId, long t0) {
+        PlannedOrder updated = loadOrder(s, orderId);
+        if (updated == null && s.indexOf(orderId) < 0) {
+            return Map.of("orderId", orderId, "mode", "noop", "affectedOrders", 0);
+        }
+        if (updated != null && updated.demand == null) {
+            // 訂單使用了排程快照中沒有的材料，改用完整排程
+            state = null;
+            return repair(orderId);
+        }
+
+        // 移除舊版本、插入新版本，受影響範圍從兩者較前的位置開始
+        boolean[] competing = new boolean[s.materials.length];
+        int from = Integer.MAX_VALUE;
+        List<PlannedOrder> removed = new ArrayList<>();
+        int oldIndex = s.indexOf(orderId);
+        if (oldIndex >= 0) {
+            PlannedOrder old = s.orders.remove(oldIndex);
+            markMaterials(competing, old);
+            removed.add(old);
+            from = oldIndex;
+        }
+        if (updated != null) {
+            int newIndex = s.insertionPoint(updated.dueDay, updated.id);
+            s.orders.add(newIndex, updated);
+            markMaterials(competing, updated);
+            from = Math.min(from, newIndex);
+        }
+
+        // 工人產能是所有材料共用的：受影響訂單釋放或改占的產能日 >= changedFrom，
+        // 之後查看過這些日子的訂單即使材料不同也要重排 (再把它的材料與產能日併入，直到不再擴大)
+        long[] reservedBefore = new long[s.materials.length];
+        for (int i = 0; i < from; i++) {
+            addDemand(reservedBefore, s.orders.get(i));
+        }
+        int changedFrom = Integer.MAX_VALUE;
+        for (PlannedOrder o : removed) {
+            changedFrom = Math.min(changedFrom, o.firstTaskDay());
+        }
+
+        List<PlannedOrder> affected = new ArrayList<>();
+        for (int i = from; i < s.orders.size(); i++) {
+            PlannedOrder o = s.orders.get(i);
+            if (o == updated || o.usesAny(competing) || o.lastCapacityDay() >= changedFrom) {
+                affected.add(o);
+                markMaterials(competing, o);
+                changedFrom = Math.min(changedFrom,
+                    Math.min(s.earliestStart(o, reservedBefore), o.firstTaskDay()));
+            }
+            addDemand(reservedBefore, o);
+        }
+
+        // 扣除受影響訂單 (含舊版本) 的占用，剩下的就是維持不動的訂單
+        for (PlannedOrder o : removed) {
+            s.account(o, -1);
+        }
+        for (PlannedOrder o : affected) {
+            if (o != updated) {
+                s.account(o, -1);
+            }
+        }
+
+        int[] capacityLeft = new int[s.horizonDays()];
+        for (int d = 0; d < capacityLeft.length; d++) {
+            capacityLeft[d] = s.dailyCapacity[d] - s.usedCapacity[d];
+        }
+        SchedulingEngine engine = new SchedulingEngine(capacityLeft, s.cumulativeSupply);
+        for (int m = 0; m < s.materials.length; m++) {
+            engine.presetReserved(m, s.reservedTotal[m]);
+        }
+
+        Map<Long, Date> previousEta = new HashMap<>();
+        Map<Long, Boolean> previousOnTime = new HashMap<>();
+        for (PlannedOrder o : affected) {
+            previousEta.put(o.id, etaOf(s, o));
+            previousOnTime.put(o.id, isOnTime(o));
+        }
+        for (PlannedOrder o : removed) {
+            // 修改的訂單以舊版本的結果比較
+            previousEta.put(o.id, etaOf(s, o));
+            previousOnTime.put(o.id, isOnTime(o));
+        }
+
+        planOrders(engine, affected);
+        int etaChanged = 0;
+        List<Map<String, Object>> changes = new ArrayList<>();
+        for (PlannedOrder o : affected) {
+            s.account(o, 1);
+            if (!etaOf(s, o).equals(previousEta.get(o.id)) || isOnTime(o) != previousOnTime.get(o.id)) {
+                etaChanged++;
+                if (changes.size() < MAX_EVENT_ORDERS) {
+                    changes.add(orderChange(s, o));
+                }
+            }
+        }
+
+        // 只改寫受影響訂單的資料列
+        List<Long> ids = new ArrayList<>();
+        affected.forEach(o -> ids.add(o.id));
+        removed.forEach(o -> { if (!ids.contains(o.id)) ids.add(o.id); });
+        deleteScheduleRows(ids);
+        persist(s, affected);
+
+        // 承諾需求的施工日已變動，重建相關材料的可用量時間軸
+        List<String> changedMaterials = new ArrayList<>();
+        for (int m = 0; m < competing.length; m++) {
+            if (competing[m]) {
+                changedMaterials.add(s.materials[m]);
+            }
+        }
+        availabilityIndex.refreshMaterials(changedMaterials);
+        invalidateInventoryStatusAfterCommit();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("orderId", orderId);
+        report.put("mode", "incremental");
+        report.put("affectedOrders", affected.size());
+        report.put("etaChangedOrders", etaChanged);
+        report.put("tasksWritten", engine.getTaskCount());
+        report.put("totalOrders", s.orders.size());
+        report.put("elapsedMillis", (System.nanoTime() - t0) / 1_000_000);
+        putOrderResult(report, s, orderId);
+
+        logger.info("🔧 增量排程修補: {}", report);
+        if (etaChanged > 0) {
+            publishEtaChanged(changes, etaChanged, etaChanged > MAX_EVENT_ORDERS);
+        }
+        return report;
+    }
+
+    // 依序排入訂單，並把引擎輸出的任務拆回各訂單
+    private void planOrders(SchedulingEngine engine, List<PlannedOrder> orders) {
+        for (int i = 0; i < orders.size(); i++) {
+            PlannedOrder o = orders.get(i);
+            o.finishDay = engine.schedule(i, o.demand);
+        }
+
+        int[] counts = new int[orders.size()];
+        for (int t = 0; t < engine.getTaskCount(); t++) {
+            counts[engine.getTaskOrder(t)]++;
+        }
+        for (int i = 0; i < orders.size(); i++) {
+            orders.get(i).tasks = new int[counts[i] * 3];
+            counts[i] = 0;
+        }
+        for (int t = 0; t < engine.getTaskCount(); t++) {
+            int i = engine.getTaskOrder(t);
+            int[] tasks = orders.get(i).tasks;
+            int k = counts[i]++ * 3;
+            tasks[k] = engine.getTaskMaterial(t);
+            tasks[k + 1] = engine.getTaskDay(t);
+            tasks[k + 2] = engine.getTaskUnits(t);
+        }
+    }
+
+    private static void markMaterials(boolean[] materials, PlannedOrder o) {
+        for (int m = 0; m < o.demand.length; m++) {
+            if (o.demand[m] > 0) {
+                materials[m] = true;
+            }
+        }
+    }
+
+    private static void addDemand(long[] reserved, PlannedOrder o) {
+        for (int m = 0; m < o.demand.length; m++) {
+            reserved[m] += o.demand[m];
+        }
+    }
+
+    private static boolean isOnTime(PlannedOrder o) {
+        return o.finishDay != SchedulingEngine.UNSCHEDULED && o.finishDay <= o.dueDay;
+    }
+
+    // 排程範圍內無法完成的訂單，ETA 記為範圍結束隔天
+    private static Date etaOf(ScheduleState s, PlannedOrder o) {
+        int day = o.finishDay == SchedulingEngine.UNSCHEDULED ? s.horizonDays() : o.finishDay;
+        return Date.valueOf(s.horizonStart.plusDays(day));
+    }
+
+    private static void putOrderResult(Map<String, Object> report, ScheduleState s, long orderId) {
+        int i = s == null ? -1 : s.indexOf(orderId);
+        if (i >= 0) {
+            PlannedOrder o = s.orders.get(i);
+            report.put("etaDate", etaOf(s, o).toLocalDate().toString());
+            report.put("status", isOnTime(o) ? "ON_TIME" : "LATE");
+        }
+    }
+
+    private static Map<String, Object> orderChange(ScheduleState s, PlannedOrder o) {
+        Map<String, Object> change = new LinkedHashMap<>();
+        change.put("id", o.id);
+        change.put("etaDate", etaOf(s, o).toLocalDate().toString());
+        change.put("status", isOnTime(o) ? "ON_TIME" : "LATE");
+        return change;
+    }
+
+    // 索引已是新的排程，但 commit 前並行讀取的庫存狀態仍可能以舊需求寫回快取，所以在 commit 後才清除
+    private void invalidateInventoryStatusAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dbOrderService.invalidateInventoryStatus();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dbOrderService.invalidateInventoryStatus();
+            }
+        });
+    }
+
+    // 在排程交易內呼叫，commit 後才送出
+    private void publishEtaChanged(List<Map<String, Object>> orders, int count, boolean full) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("orders", full ? List.of() : orders);
+        data.put("count", count);
+        data.put("full", full);
+        events.publish(ChangeEventBroadcaster.ETA_CHANGED, data);
+    }
+
+    private ScheduleState loadState(LocalDate horizonStart) {
+        ScheduleState s = new ScheduleState();
+        s.horizonStart = horizonStart;
+        Map<String, Integer> materialIndex = new LinkedHashMap<>();
+        long startDay = horizonStart.toEpochDay();
+
+        // 庫存與到貨計劃 (資料量小，先建立材料索引)
+        Map<String, Integer> onHand = new HashMap<>();
+        jdbc.query("SELECT material, qty_on_hand FROM inventory", rs -> {
+            String material = rs.getString("material").trim();
+            materialIndex.computeIfAbsent(material, k -> materialIndex.size());
+            onHand.merge(material, rs.getInt("qty_on_hand"), Integer::sum);
+        });
+
+        List<Object[]> inbound = jdbc.query(
+            "SELECT material, arrival_date, qty FROM inbound_plans",
+            (rs, rowNum) -> new Object[] {
+                rs.getString("material").trim(),
+                rs.getDate("arrival_date").toLocalDate().toEpochDay() - startDay,
+                rs.getInt("qty")
+            });
+        for (Object[] row : inbound) {
+            materialIndex.computeIfAbsent((String) row[0], k -> materialIndex.size());
+        }
+
+        // 訂單依截止日、ID 排序即為排程優先順序
+        List<long[]> orderRows = new ArrayList<>();
+        Map<Long, Integer> orderIndex = new HashMap<>();
+        jdbc.query("SELECT id, due_date FROM orders ORDER BY due_date, id", rs -> {
+            long id = rs.getLong("id");
+            orderIndex.put(id, orderRows.size());
+            orderRows.add(new long[] { id, rs.getDate("due_date").toLocalDate().toEpochDay() - startDay });
+        });
+
+        // 材料需求先暫存為 (訂單, 材料, 數量)，材料數確定後再攤平
+        List<int[]> lines = new ArrayList<>();
+        jdbc.query("SELECT order_id, material, qty_needed FROM order_materials", rs -> {
+            Integer i = orderIndex.get(rs.getLong("order_id"));
+            if (i != null) {
+                int m = materialIndex.computeIfAbsent(rs.getString("material").trim(), k -> materialIndex.size());
+                lines.add(new int[] { i, m, rs.getInt("qty_needed") });
+            }
+        });
+
+        int materialCount = materialIndex.size();
+        s.materialIndex = materialIndex;
+        s.materials = materialIndex.keySet().toArray(new String[0]);
+        int[][] demand = new int[orderRows.size()][materialCount];
+        for (int[] line : lines) {
+            demand[line[0]][line[1]] += line[2];
+        }
+        for (int i = 0; i < orderRows.size(); i++) {
+            long[] row = orderRows.get(i);
+            s.orders.add(new PlannedOrder(row[0], (int) row[1], demand[i]));
+        }
+
+        // 每日產能：worker_capacity 沒有的日子用預設值
+        s.dailyCapacity = new int[horizonDays];
+        Arrays.fill(s.dailyCapacity, defaultDailyCapacity);
+        jdbc.query(
+            "SELECT work_date, hours_total FROM worker_capacity WHERE work_date >= ? AND work_date < ?",
+            rs -> {
+                int d = (int) (rs.getDate("work_date").toLocalDate().toEpochDay() - startDay);
+                s.dailyCapacity[d] = rs.getInt("hours_total");
+            },
+            Date.valueOf(horizonStart), Date.valueOf(horizonStart.plusDays(horizonDays)));
+
+        // 累計可用量：現有庫存 + 到貨 (逾期未到的視為今天到貨，超出範圍的忽略)
+        s.cumulativeSupply = new long[materialCount][horizonDays];
+        for (Map.Entry<String, Integer> e : onHand.entrySet()) {
+            s.cumulativeSupply[materialIndex.get(e.getKey())][0] += e.getValue();
+        }
+        for (Object[] row : inbound) {
+            long day = Math.max(0, (Long) row[1]);
+            if (day < horizonDays) {
+                s.cumulativeSupply[materialIndex.get((String) row[0])][(int) day] += (Integer) row[2];
+            }
+        }
+        for (long[] supply : s.cumulativeSupply) {
+            for (int d = 1; d < horizonDays; d++) {
+                supply[d] += supply[d - 1];
+            }
+        }
+
+        s.usedCapacity = new int[horizonDays];
+        s.reservedTotal = new long[materialCount];
+
+        logger.info("📥 排程資料載入: {} 張訂單, {} 種材料, {} 筆到貨計劃", s.orders.size(), materialCount, inbound.size());
+        return s;
+    }
+
+    /**
+     * 載入單一訂單的最新內容；訂單已刪除時回傳 null，含未知材料時 demand 為 null
+     */
+    private PlannedOrder loadOrder(ScheduleState s, long orderId) {
+        List<LocalDate> due = jdbc.query(
+            "SELECT due_date FROM orders WHERE id = ?",
+            (rs, rowNum) -> rs.getDate("due_date").toLocalDate(),
+            orderId);
+        if (due.isEmpty()) {
+            return null;
+        }
+
+        int[] demand = new int[s.materials.length];
+        boolean[] unknownMaterial = {false};
+        jdbc.query("SELECT material, qty_needed FROM order_materials WHERE order_id = ?", rs -> {
+            Integer m = s.materialIndex.get(rs.getString("material").trim());
+            if (m == null) {
+                unknownMaterial[0] = true;
+            } else {
+                demand[m] += rs.getInt("qty_needed");
+            }
+        }, orderId);
+
+        int dueDay = (int) (due.get(0).toEpochDay() - s.horizonStart.toEpochDay());
+        return new PlannedOrder(orderId, dueDay, unknownMaterial[0] ? null : demand);
+    }
+
+    private void deleteScheduleRows(List<Long> orderIds) {
+        for (int from = 0; from < orderIds.size(); from += BATCH_SIZE) {
+            List<Long> batch = orderIds.subList(from, Math.min(orderIds.size(), from + BATCH_SIZE));
+            String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+            Object[] args = batch.toArray();
+            jdbc.update("DELETE FROM schedule_tasks WHERE order_id IN (" + placeholders + ")", args);
+            jdbc.update("DELETE FROM schedule_results WHERE order_id IN (" + placeholders + ")", args);
+        }
+    }
+
+    private void persist(ScheduleState s, List<PlannedOrder> orders) {
+        // 任務攤平成 (訂單索引, 任務偏移) 方便分批寫入
+        int taskCount = 0;
+        for (PlannedOrder o : orders) {
+            taskCount += o.tasks.length / 3;
+        }
+        int[] taskOrder = new int[taskCount];
+        int[] taskOffset = new int[taskCount];
+        int t = 0;
+        for (int i = 0; i < orders.size(); i++) {
+            for (int k = 0; k < orders.get(i).tasks.length; k += 3) {
+                taskOrder[t] = i;
+                taskOffset[t++] = k;
+            }
+        }
+
+        batchUpdate(
+            "INSERT INTO schedule_tasks (order_id, material, work_date, units_planned) VALUES (?, ?, ?, ?)",
+            taskCount,
+            (ps, i) -> {
+                PlannedOrder o = orders.get(taskOrder[i]);
+                int k = taskOffset[i];
+                ps.setLong(1, o.id);
+                ps.setString(2, s.materials[o.tasks[k]]);
+                ps.setDate(3, Date.valueOf(s.horizonStart.plusDays(o.tasks[k + 1])));
+                ps.setInt(4, o.tasks[k + 2]);
+            });
+        batchUpdate(
+            "INSERT INTO schedule_results (order_id, eta_date, status) VALUES (?, ?, ?)",
+            orders.size(),
+            (ps, i) -> {
+                PlannedOrder o = orders.get(i);
+                ps.setLong(1, o.id);
+                ps.setDate(2, etaOf(s, o));
+                ps.setString(3, isOnTime(o) ? "ON_TIME" : "LATE");
+            });
+        batchUpdate(
+            "UPDATE orders SET eta_date = ?, status = ? WHERE id = ?",
+            orders.size(),
+            (ps, i) -> {
+                PlannedOrder o = orders.get(i);
+                ps.setDate(1, etaOf(s, o));
+                ps.setString(2, isOnTime(o) ? "ON_TIME" : "LATE");
+                ps.setLong(3, o.id);
+            });
+    }
+
+    // 依 BATCH_SIZE 分段送出 JDBC batch
+    private void batchUpdate(String sql, int rowCount, RowBinder binder) {
+        for (int from = 0; from < rowCount; from += BATCH_SIZE) {
+            int start = from;
+            int size = Math.min(BATCH_SIZE, rowCount - from);
+            jdbc.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    binder.bind(ps, start + i);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowBinder {
+        void bind(PreparedStatement ps, int row) throws SQLException;
+    }
+}
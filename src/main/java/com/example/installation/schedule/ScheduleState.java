@@ -0,0 +1,140 @@
+package com.example.installation.schedule;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 最近一次排程結果的記憶體快照，供增量修補使用
+ *
+ * orders 依排程優先順序 (截止日、ID) 排列；usedCapacity 與 reservedTotal
+ * 是所有訂單任務/需求的彙總，修補時扣掉受影響訂單即可得到其餘訂單的占用。
+ */
+class ScheduleState {
+    LocalDate horizonStart;
+    Map<String, Integer> materialIndex;
+    String[] materials;
+    int[] dailyCapacity;
+    long[][] cumulativeSupply;
+    int[] usedCapacity;
+    long[] reservedTotal;
+    List<PlannedOrder> orders = new ArrayList<>();
+
+    int horizonDays() {
+        return dailyCapacity.length;
+    }
+
+    /** 依 (截止日, ID) 找插入位置 */
+    int insertionPoint(int dueDay, long id) {
+        int lo = 0, hi = orders.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            PlannedOrder o = orders.get(mid);
+            if (o.dueDay < dueDay || (o.dueDay == dueDay && o.id < id)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    int indexOf(long id) {
+        for (int i = 0; i < orders.size(); i++) {
+            if (orders.get(i).id == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 訂單在 reservedBefore (排在它前面的訂單已保留的各材料數量) 之下最早可施工的日子：
+     * 各材料第一個累計到貨量足夠的日子取最小值，都沒有則為排程範圍的天數
+     */
+    int earliestStart(PlannedOrder o, long[] reservedBefore) {
+        int start = horizonDays();
+        for (int m = 0; m < o.demand.length; m++) {
+            if (o.demand[m] > 0) {
+                long[] supply = cumulativeSupply[m];
+                int lo = 0, hi = Math.min(start, supply.length) - 1;
+                while (lo <= hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (supply[mid] >= reservedBefore[m] + 1) {
+                        start = mid;
+                        hi = mid - 1;
+                    } else {
+                        lo = mid + 1;
+                    }
+                }
+            }
+        }
+        return start;
+    }
+
+    /** 把訂單的任務與需求加入 (sign = 1) 或移出 (sign = -1) 彙總 */
+    void account(PlannedOrder o, int sign) {
+        for (int t = 0; t < o.tasks.length; t += 3) {
+            usedCapacity[o.tasks[t + 1]] += sign * o.tasks[t + 2];
+        }
+        for (int m = 0; m < o.demand.length; m++) {
+            reservedTotal[m] += sign * (long) o.demand[m];
+        }
+    }
+
+    /**
+     * 已排程訂單
+     */
+    static class PlannedOrder {
+        final long id;
+        final int dueDay;
+        final int[] demand;
+        int[] tasks = new int[0];   // (材料, 天, 單位) 三個一組
+        int finishDay = SchedulingEngine.UNSCHEDULED;
+
+        PlannedOrder(long id, int dueDay, int[] demand) {
+            this.id = id;
+            this.dueDay = dueDay;
+            this.demand = demand;
+        }
+
+        boolean usesAny(boolean[] materials) {
+            for (int m = 0; m < demand.length; m++) {
+                if (demand[m] > 0 && materials[m]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** 最早的任務日，沒有任務則為 Integer.MAX_VALUE */
+        int firstTaskDay() {
+            int first = Integer.MAX_VALUE;
+            for (int t = 0; t < tasks.length; t += 3) {
+                first = Math.min(first, tasks[t + 1]);
+            }
+            return first;
+        }
+
+        /**
+         * 排程時查看過產能的最後一天：完成的訂單是最後的任務日；
+         * 未完成的可能一路找到排程範圍結束，視為 Integer.MAX_VALUE；沒有需求則為 -1
+         */
+        int lastCapacityDay() {
+            if (finishDay == SchedulingEngine.UNSCHEDULED) {
+                for (int qty : demand) {
+                    if (qty > 0) {
+                        return Integer.MAX_VALUE;
+                    }
+                }
+                return -1;
+            }
+            int last = -1;
+            for (int t = 0; t < tasks.length; t += 3) {
+                last = Math.max(last, tasks[t + 1]);
+            }
+            return last;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.installation.schedule;
+
+import java.util.Arrays;
+
+/**
+ * 有限產能排程引擎 (純記憶體、primitive 陣列)
+ *
+ * 訂單依優先順序 (截止日、ID) 逐一呼叫 {@link #schedule(int, int[])}：
+ * <ul>
+ *   <li>材料依優先順序保留：每種材料的累計到貨量 (含現有庫存) 依序切給各訂單，
+ *       某訂單第 n 個單位在累計到貨量達到「前面訂單已保留量 + n」的那天才能施工</li>
+ *   <li>工時：每天剩餘產能 (單位 = 工時，每工時處理 1 單位)，可回填較早日期的剩餘產能</li>
+ * </ul>
+ * 以 union-find 跳過已滿的日子，每筆材料需求只走過實際用到的日子與到貨日。
+ */
+public class SchedulingEngine {
+    /** 無法在排程範圍內完成 */
+    public static final int UNSCHEDULED = -1;
+
+    private final int horizonDays;
+    private final int materialCount;
+    private final int[] capacityLeft;
+    private final int[] nextOpenDay;
+    private final long[][] cumulativeSupply;
+    private final long[] reserved;
+
+    // 輸出：排程任務 (可成長的平行陣列)
+    private int[] taskOrder = new int[1024];
+    private int[] taskMaterial = new int[1024];
+    private int[] taskDay = new int[1024];
+    private int[] taskUnits = new int[1024];
+    private int taskCount = 0;
+
+    /**
+     * @param dailyCapacity    每日產能 (單位)，長度即排程天數
+     * @param cumulativeSupply [材料][天] 當天結束前累計可用量，每列需遞增且長度與 dailyCapacity 相同
+     */
+    public SchedulingEngine(int[] dailyCapacity, long[][] cumulativeSupply) {
+        this.horizonDays = dailyCapacity.length;
+        this.materialCount = cumulativeSupply.length;
+        this.capacityLeft = Arrays.copyOf(dailyCapacity, horizonDays);
+        this.cumulativeSupply = cumulativeSupply;
+        this.reserved = new long[materialCount];
+
+        // nextOpenDay[d] == d 表示當天仍有產能；最後一格為哨兵
+        this.nextOpenDay = new int[horizonDays + 1];
+        for (int d = 0; d <= horizonDays; d++) {
+            nextOpenDay[d] = (d < horizonDays && capacityLeft[d] <= 0) ? d + 1 : d;
+        }
+    }
+
+    /**
+     * 預先保留材料 (增量修補時代表優先順序在前、維持不動的訂單)
+     */
+    public void presetReserved(int material, long qty) {
+        reserved[material] = qty;
+    }
+
+    /**
+     * 排入一張訂單
+     *
+     * @param orderIndex    呼叫端的訂單索引，會寫入任務輸出
+     * @param qtyByMaterial 各材料需求量 (長度 = 材料數)
+     * @return 完工日 (排程範圍內的天數索引)，或 {@link #UNSCHEDULED}
+     */
+    public int schedule(int orderIndex, int[] qtyByMaterial) {
+        int finishDay = 0;
+        boolean complete = true;
+
+        for (int m = 0; m < materialCount; m++) {
+            int qty = qtyByMaterial[m];
+            if (qty <= 0) {
+                continue;
+            }
+            int lastDay = scheduleLine(orderIndex, m, qty);
+            if (lastDay == UNSCHEDULED) {
+                complete = false;
+            } else {
+                finishDay = Math.max(finishDay, lastDay);
+            }
+        }
+        return complete ? finishDay : UNSCHEDULED;
+    }
+
+    private int scheduleLine(int orderIndex, int m, int qty) {
+        long[] supply = cumulativeSupply[m];
+        long start = reserved[m];
+        reserved[m] += qty;
+
+        int planned = 0;
+        int lastDay = UNSCHEDULED;
+        int d = firstDayWithSupply(supply, start + 1);
+
+        while (planned < qty && d >= 0) {
+            d = findOpenDay(d);
+            if (d >= horizonDays) {
+                break;
+            }
+
+            long released = Math.min(qty, supply[d] - start) - planned;
+            if (released <= 0) {
+                // 材料尚未到貨，跳到下一個到貨日
+                d = firstDayWithSupply(supply, start + planned + 1);
+                continue;
+            }
+
+            int units = (int) Math.min(released, capacityLeft[d]);
+            capacityLeft[d] -= units;
+            planned += units;
+            lastDay = d;
+            addTask(orderIndex, m, d, units);
+
+            if (capacityLeft[d] == 0) {
+                nextOpenDay[d] = d + 1;
+            }
+        }
+        return planned == qty ? lastDay : UNSCHEDULED;
+    }
+
+    // 第一個累計到貨量 >= target 的日子，沒有則 -1
+    private int firstDayWithSupply(long[] supply, long target) {
+        int lo = 0, hi = horizonDays - 1, found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (supply[mid] >= target) {
+                found = mid;
+                hi = mid - 1;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return found;
+    }
+
+    // union-find 查詢 d 之後第一個仍有產能的日子 (含 path compression)
+    private int findOpenDay(int d) {
+        int root = d;
+        while (nextOpenDay[root] != root) {
+            root = nextOpenDay[root];
+        }
+        while (nextOpenDay[d] != root) {
+            int next = nextOpenDay[d];
+            nextOpenDay[d] = root;
+            d = next;
+        }
+        return root;
+    }
+
+    private void addTask(int orderIndex, int material, int day, int units) {
+        if (taskCount == taskOrder.length) {
+            int size = taskCount * 2;
+            taskOrder = Arrays.copyOf(taskOrder, size);
+            taskMaterial = Arrays.copyOf(taskMaterial, size);
+            taskDay = Arrays.copyOf(taskDay, size);
+            taskUnits = Arrays.copyOf(taskUnits, size);
+        }
+        taskOrder[taskCount] = orderIndex;
+        taskMaterial[taskCount] = material;
+        taskDay[taskCount] = day;
+        taskUnits[taskCount] = units;
+        taskCount++;
+    }
+
+    // === 輸出 ===
+    public int getHorizonDays() { return horizonDays; }
+    public int getMaterialCount() { return materialCount; }
+    public int getTaskCount() { return taskCount; }
+    public int getTaskOrder(int i) { return taskOrder[i]; }
+    public int getTaskMaterial(int i) { return taskMaterial[i]; }
+    public int getTaskDay(int i) { return taskDay[i]; }
+    public int getTaskUnits(int i) { return taskUnits[i]; }
+    public int getCapacityLeft(int day) { return capacityLeft[day]; }
+}
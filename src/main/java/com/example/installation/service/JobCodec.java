@@ -0,0 +1,200 @@
+package com.example.installation.service;
+
+import com.example.installation.model.BomItem;
+import com.example.installation.model.InstallationJob;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * journal / 快照中 InstallationJob 的二進位格式 (不經 JSON，直接從記憶體映射讀取)
+ *
+ * 字串 = int 位元組數 (-1 為 null) + UTF-8；欄位順序固定，新增欄位時請提高 {@link #VERSION} 並保留舊版讀取。
+ */
+final class JobCodec {
+    static final int VERSION = 1;
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private byte[] buffer = new byte[1024];
+    private int length;
+
+    /**
+     * 新增/取代一筆工單的 journal 內容；回傳的陣列在下次編碼前有效，長度見 {@link #length()}
+     */
+    byte[] put(InstallationJob job) {
+        length = 0;
+        writeByte(PUT);
+        writeJob(job);
+        return buffer;
+    }
+
+    byte[] delete(String jobId) {
+        length = 0;
+        writeByte(DELETE);
+        writeString(jobId);
+        return buffer;
+    }
+
+    /**
+     * 快照中的一筆工單 (不含操作類型)
+     */
+    byte[] job(InstallationJob job) {
+        length = 0;
+        writeJob(job);
+        return buffer;
+    }
+
+    int length() {
+        return length;
+    }
+
+    private void writeJob(InstallationJob job) {
+        writeString(job.getJobId());
+        writeString(job.getStatus());
+        writeString(job.getPriority());
+        writeString(job.getCustomerName());
+        writeString(job.getCustomerPhone());
+        writeString(job.getAddress());
+        writeString(job.getStart());
+        writeString(job.getEnd());
+        writeString(job.getSlaDue());
+
+        List<BomItem> bom = job.getBom() == null ? List.of() : job.getBom();
+        writeInt(bom.size());
+        for (BomItem item : bom) {
+            writeString(item.getItemCode());
+            writeString(item.getName());
+            writeInt(item.getQty());
+            writeByte(item.getReservedQty() == null ? 0 : 1);
+            writeInt(item.getReservedQty() == null ? 0 : item.getReservedQty());
+            writeString(item.getLocation());
+            writeString(item.getEta());
+        }
+
+        List<String> assigned = job.getAssigned() == null ? List.of() : job.getAssigned();
+        writeInt(assigned.size());
+        for (String worker : assigned) {
+            writeString(worker);
+        }
+    }
+
+    /**
+     * 解碼一筆工單 (呼叫端持有同一個 Reader 依序讀取)
+     */
+    static InstallationJob readJob(ByteBuffer in, Reader reader) {
+        InstallationJob job = new InstallationJob();
+        job.setJobId(reader.string(in));
+        job.setStatus(reader.code(in));
+        job.setPriority(reader.code(in));
+        job.setCustomerName(reader.string(in));
+        job.setCustomerPhone(reader.string(in));
+        job.setAddress(reader.string(in));
+        job.setStart(reader.code(in));
+        job.setEnd(reader.code(in));
+        job.setSlaDue(reader.code(in));
+
+        int bomCount = in.getInt();
+        List<BomItem> bom = new ArrayList<>(bomCount);
+        for (int i = 0; i < bomCount; i++) {
+            String itemCode = reader.code(in);
+            String name = reader.code(in);
+            int qty = in.getInt();
+            boolean hasReserved = in.get() != 0;
+            int reserved = in.getInt();
+            bom.add(new BomItem(itemCode, name, qty, hasReserved ? reserved : null, reader.code(in), reader.code(in)));
+        }
+        job.setBom(bom);
+
+        int assignedCount = in.getInt();
+        List<String> assigned = new ArrayList<>(assignedCount);
+        for (int i = 0; i < assignedCount; i++) {
+            assigned.add(reader.code(in));
+        }
+        job.setAssigned(assigned);
+        return job;
+    }
+
+    /**
+     * 解碼用的暫存：字串先複製到共用緩衝區再建立 (不為每個欄位配置暫時陣列)；
+     * 狀態、時間、料號、工人等重複率高的代碼欄位共用同一個 String，百萬筆載入時大幅減少物件與 GC
+     */
+    static final class Reader {
+        private static final int MAX_CODE_BYTES = 64;
+        private static final int CODE_TABLE_SIZE = 1 << 16;
+
+        private byte[] bytes = new byte[256];
+        private final String[] codes = new String[CODE_TABLE_SIZE];
+        private final byte[][] codeBytes = new byte[CODE_TABLE_SIZE][];
+
+        String string(ByteBuffer in) {
+            int size = in.getInt();
+            if (size < 0) {
+                return null;
+            }
+            if (size > bytes.length) {
+                bytes = new byte[Math.max(size, bytes.length * 2)];
+            }
+            in.get(bytes, 0, size);
+            return new String(bytes, 0, size, StandardCharsets.UTF_8);
+        }
+
+        String code(ByteBuffer in) {
+            int size = in.getInt(in.position());
+            if (size < 0 || size > MAX_CODE_BYTES) {
+                return string(in);
+            }
+            in.position(in.position() + 4);
+            in.get(bytes, 0, size);
+            int hash = 1;
+            for (int i = 0; i < size; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            // 直接對應 (不探測)：碰撞時以新的取代，最差情況只是沒有共用
+            int slot = (hash ^ (hash >>> 16)) & (CODE_TABLE_SIZE - 1);
+            byte[] cached = codeBytes[slot];
+            if (cached != null && Arrays.equals(cached, 0, cached.length, bytes, 0, size)) {
+                return codes[slot];
+            }
+            String value = new String(bytes, 0, size, StandardCharsets.UTF_8);
+            codes[slot] = value;
+            codeBytes[slot] = Arrays.copyOf(bytes, size);
+            return value;
+        }
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void writeInt(int value) {
+        ensure(4);
+        buffer[length++] = (byte) (value >>> 24);
+        buffer[length++] = (byte) (value >>> 16);
+        buffer[length++] = (byte) (value >>> 8);
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeByte(int value) {
+        ensure(1);
+        buffer[length++] = (byte) value;
+    }
+
+    private void ensure(int more) {
+        if (length + more > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + more));
+        }
+    }
+}
@@ -0,0 +1,497 @@
+package com.example.installation.service;
+
+import com.example.installation.model.InstallationJob;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * InstallationJob 的記憶體儲存與 n-gram 反向索引 (jobId、customerName、address)
+ *
+ * <ul>
+ *   <li>每個工單取得遞增的 doc 編號，索引以字元為單位 (中文一字一單位，不需斷詞)：
+ *       每個 1~3 字元的片段 (n-gram) 各有一個遞增排序的 doc 編號清單</li>
+ *   <li>查詢取關鍵字所有 trigram (兩個字元用 bigram、一個字元用 unigram) 的清單交集 (leapfrog，
+ *       以指數搜尋跳過不可能的 doc)，再以原字串 contains 確認，所以結果與逐筆 contains 相同 (區分大小寫)</li>
+ *   <li>讀取不加鎖：清單只會在尾端附加，筆數以 volatile 發布，讀到的筆數之前的內容都已寫好</li>
+ *   <li>寫入 (新增/更新/刪除) 由單一鎖序列化；更新 = 附加新版本 + 舊版本標記刪除，
+ *       刪除數超過有效筆數時重建索引再整個替換，讀取端繼續使用舊的直到完成</li>
+ * </ul>
+ * 儲存的工單不可直接修改欄位，必須透過 {@link #put(InstallationJob)} 重新寫入，否則索引會過期。
+ */
+final class JobIndex {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MIN_COMPACT_DELETED = 1024;
+    private static final int MAX_GRAM = 3;
+    // 欄位之間的分隔字元，不建 n-gram，也不會出現在查詢字串中
+    private static final char FIELD_SEPARATOR = '\u0001';
+
+    private final Object writeLock = new Object();
+    private volatile Generation current = new Generation(INITIAL_CAPACITY);
+
+    /**
+     * 新增或取代 (以 jobId 判斷)
+     */
+    void put(InstallationJob job) {
+        synchronized (writeLock) {
+            write(job);
+        }
+    }
+
+    private void write(InstallationJob job) {
+        Generation g = current;
+        int docId = g.append(new Doc(job, normalizedText(job)));
+        // 新版本的 n-gram 已發布，才切換 jobId 對應；查詢以 byId 判斷版本，不會同時回傳新舊兩筆
+        Integer previous = g.byId.put(job.getJobId(), docId);
+        if (previous != null) {
+            g.remove(previous);
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * 以整批工單取代全部內容 (啟動載入用)；相同 jobId 以後面的為準。
+     * 比逐筆 put 快數倍：先算出每個 n-gram 的 doc 數，再一次配置剛好大小的清單，過程中不裝箱
+     */
+    void load(List<InstallationJob> jobs) {
+        Generation loaded = Generation.build(jobs);
+        synchronized (writeLock) {
+            current = loaded;
+        }
+    }
+
+    boolean remove(String jobId) {
+        synchronized (writeLock) {
+            Generation g = current;
+            Integer docId = g.byId.remove(jobId);
+            if (docId == null) {
+                return false;
+            }
+            g.remove(docId);
+            compactIfNeeded();
+            return true;
+        }
+    }
+
+    InstallationJob get(String jobId) {
+        Generation g = current;
+        Integer docId = g.byId.get(jobId);
+        if (docId == null) {
+            return null;
+        }
+        Doc doc = g.docs().get(docId);
+        return doc == null ? null : doc.job;
+    }
+
+    int size() {
+        return current.byId.size();
+    }
+
+    /**
+     * 依寫入順序 (更新過的工單排在最後) 回傳前 limit 筆
+     */
+    List<InstallationJob> list(int limit) {
+        Generation g = current;
+        int size = g.size;
+        AtomicReferenceArray<Doc> docs = g.docs();
+        List<InstallationJob> result = new ArrayList<>(Math.min(limit, g.byId.size()));
+        for (int docId = 0; docId < size && result.size() < limit; docId++) {
+            Doc doc = docs.get(docId);
+            if (doc != null) {
+                result.add(doc.job);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 任一欄位包含關鍵字 (區分大小寫) 的工單，依寫入順序回傳前 limit 筆
+     */
+    List<InstallationJob> search(String query, int limit) {
+        String needle = normalize(query);
+        if (needle.isEmpty()) {
+            return list(limit);
+        }
+        Generation g = current;
+
+        long[] grams = queryGrams(needle);
+        int[][] lists = new int[grams.length][];
+        int[] sizes = new int[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            Postings postings = g.postings.get(grams[i]);
+            if (postings == null) {
+                return new ArrayList<>();
+            }
+            // 先讀 volatile 筆數再讀陣列
+            sizes[i] = postings.size;
+            lists[i] = postings.ids;
+        }
+        sortBySize(lists, sizes);
+
+        AtomicReferenceArray<Doc> docs = g.docs();
+        List<InstallationJob> result = new ArrayList<>();
+        int[] positions = new int[lists.length];
+        while (positions[0] < sizes[0]) {
+            // 以最短清單目前的 doc 為目標，其餘清單跳到 >= 目標；有清單超過目標就把目標往前推
+            int target = lists[0][positions[0]];
+            int k = 1;
+            while (k < lists.length) {
+                int pos = gallop(lists[k], positions[k], sizes[k], target);
+                positions[k] = pos;
+                if (pos == sizes[k]) {
+                    return result;
+                }
+                int next = lists[k][pos];
+                if (next == target) {
+                    k++;
+                    continue;
+                }
+                positions[0] = gallop(lists[0], positions[0], sizes[0], next);
+                if (positions[0] == sizes[0]) {
+                    return result;
+                }
+                target = lists[0][positions[0]];
+                k = 1;
+            }
+
+            Doc doc = docs.get(target);
+            if (doc != null && doc.text.contains(needle) && isCurrent(g, doc, target)) {
+                result.add(doc.job);
+                if (result.size() >= limit) {
+                    break;
+                }
+            }
+            positions[0]++;
+        }
+        return result;
+    }
+
+    // 更新進行中時新舊版本可能同時在清單中，只接受 jobId 目前對應的版本
+    private static boolean isCurrent(Generation g, Doc doc, int docId) {
+        Integer current = g.byId.get(doc.job.getJobId());
+        return current != null && current == docId;
+    }
+
+    private void compactIfNeeded() {
+        Generation g = current;
+        if (g.deleted < MIN_COMPACT_DELETED || g.deleted <= g.byId.size()) {
+            return;
+        }
+        Generation rebuilt = new Generation(Math.max(INITIAL_CAPACITY, g.byId.size() * 2));
+        AtomicReferenceArray<Doc> docs = g.docs();
+        for (int docId = 0; docId < g.size; docId++) {
+            Doc doc = docs.get(docId);
+            if (doc != null) {
+                rebuilt.byId.put(doc.job.getJobId(), rebuilt.append(doc));
+            }
+        }
+        current = rebuilt;
+    }
+
+    // 清單 k 從 from 開始第一個 >= target 的位置 (指數搜尋 + 二分搜尋)
+    private static int gallop(int[] ids, int from, int size, int target) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < size && ids[high] < target) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        high = Math.min(high, size);
+        int found = Arrays.binarySearch(ids, low, high, target);
+        return found >= 0 ? found : -found - 1;
+    }
+
+    private static void sortBySize(int[][] lists, int[] sizes) {
+        for (int i = 1; i < sizes.length; i++) {
+            for (int j = i; j > 0 && sizes[j] < sizes[j - 1]; j--) {
+                int size = sizes[j];
+                sizes[j] = sizes[j - 1];
+                sizes[j - 1] = size;
+                int[] list = lists[j];
+                lists[j] = lists[j - 1];
+                lists[j - 1] = list;
+            }
+        }
+    }
+
+    private static long[] queryGrams(String needle) {
+        int n = Math.min(needle.length(), MAX_GRAM);
+        long[] grams = new long[needle.length() - n + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = gram(needle, i, n);
+        }
+        return distinct(grams, grams.length);
+    }
+
+    // 文件的 n-gram (不重複)
+    private static long[] documentGrams(String text) {
+        long[] grams = new long[text.length() * MAX_GRAM];
+        return distinct(grams, documentGrams(text, grams));
+    }
+
+    // 每個位置 1~3 字元的片段，不跨欄位，可能重複；回傳寫入 grams 的個數 (grams 至少 text.length() * MAX_GRAM)
+    private static int documentGrams(String text, long[] grams) {
+        int count = 0;
+        int fieldStart = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == FIELD_SEPARATOR) {
+                fieldStart = i + 1;
+                continue;
+            }
+            for (int n = 1; n <= MAX_GRAM && i - n + 1 >= fieldStart; n++) {
+                grams[count++] = gram(text, i - n + 1, n);
+            }
+        }
+        return count;
+    }
+
+    // 最高 16 位元為長度，其餘依序放 n 個字元
+    private static long gram(String text, int from, int n) {
+        long key = n;
+        for (int i = 0; i < n; i++) {
+            key = (key << 16) | text.charAt(from + i);
+        }
+        return key << (16 * (MAX_GRAM - n));
+    }
+
+    private static long[] distinct(long[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || values[i] != values[unique - 1]) {
+                values[unique++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, unique);
+    }
+
+    private static String normalizedText(InstallationJob job) {
+        return normalize(job.getJobId()) + FIELD_SEPARATOR + normalize(job.getCustomerName())
+            + FIELD_SEPARATOR + normalize(job.getAddress());
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().replace(FIELD_SEPARATOR, ' ');
+    }
+
+    /**
+     * 一次完整的索引；壓縮時整個替換
+     */
+    private static final class Generation {
+        final ConcurrentHashMap<String, Integer> byId = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, Postings> postings = new ConcurrentHashMap<>();
+        private volatile AtomicReferenceArray<Doc> docs;
+        // 已發布的 doc 數 (含已刪除)；寫入端最後才更新
+        volatile int size;
+        // 只由寫入端存取
+        int deleted;
+
+        Generation(int capacity) {
+            this.docs = new AtomicReferenceArray<>(capacity);
+        }
+
+        static Generation build(List<InstallationJob> jobs) {
+            int count = jobs.size();
+            Doc[] docs = new Doc[count];
+            GramTable table = new GramTable();
+            long[] grams = new long[256];
+            for (int docId = 0; docId < count; docId++) {
+                InstallationJob job = jobs.get(docId);
+                docs[docId] = new Doc(job, normalizedText(job));
+                grams = ensureGramCapacity(grams, docs[docId].text);
+                int n = documentGrams(docs[docId].text, grams);
+                for (int i = 0; i < n; i++) {
+                    table.count(grams[i], docId);
+                }
+            }
+            // 第二輪依 doc 編號順序填入，清單自然遞增；同一 doc 重複的 n-gram 以最後一筆 doc 編號略過 (不必排序去重)
+            int[][] lists = new int[table.size()][];
+            for (int slot = 0; slot < lists.length; slot++) {
+                lists[slot] = new int[table.countOf(slot)];
+            }
+            int[] filled = new int[lists.length];
+            for (int docId = 0; docId < count; docId++) {
+                int n = documentGrams(docs[docId].text, grams);
+                for (int i = 0; i < n; i++) {
+                    int slot = table.slotOf(grams[i]);
+                    int[] list = lists[slot];
+                    if (filled[slot] == 0 || list[filled[slot] - 1] != docId) {
+                        list[filled[slot]++] = docId;
+                    }
+                }
+            }
+
+            Generation g = new Generation(Math.max(INITIAL_CAPACITY, count + (count >> 1)));
+            for (int slot = 0; slot < lists.length; slot++) {
+                g.postings.put(table.gramOf(slot), new Postings(lists[slot]));
+            }
+            for (int docId = 0; docId < count; docId++) {
+                g.docs.set(docId, docs[docId]);
+                Integer previous = g.byId.put(docs[docId].job.getJobId(), docId);
+                if (previous != null) {
+                    g.remove(previous);
+                }
+            }
+            g.size = count;
+            return g;
+        }
+
+        private static long[] ensureGramCapacity(long[] grams, String text) {
+            int needed = text.length() * MAX_GRAM;
+            return grams.length >= needed ? grams : new long[needed];
+        }
+
+        AtomicReferenceArray<Doc> docs() {
+            return docs;
+        }
+
+        int append(Doc doc) {
+            int docId = size;
+            AtomicReferenceArray<Doc> array = docs;
+            if (docId == array.length()) {
+                AtomicReferenceArray<Doc> grown = new AtomicReferenceArray<>(array.length() * 2);
+                for (int i = 0; i < docId; i++) {
+                    grown.set(i, array.get(i));
+                }
+                docs = grown;
+                array = grown;
+            }
+            array.set(docId, doc);
+            for (long gram : documentGrams(doc.text)) {
+                postings.computeIfAbsent(gram, k -> new Postings()).add(docId);
+            }
+            size = docId + 1;
+            return docId;
+        }
+
+        void remove(int docId) {
+            docs.set(docId, null);
+            deleted++;
+        }
+    }
+
+    /**
+     * 一個 n-gram 的 doc 編號清單 (遞增)；單一寫入端只在尾端附加
+     */
+    private static final class Postings {
+        int[] ids;
+        volatile int size;
+
+        Postings() {
+            this.ids = new int[4];
+        }
+
+        // 批次建立：已排序且填滿的清單
+        Postings(int[] ids) {
+            this.ids = ids;
+            this.size = ids.length;
+        }
+
+        void add(int docId) {
+            int n = size;
+            if (n == ids.length) {
+                ids = Arrays.copyOf(ids, n + (n >> 1) + 1);
+            }
+            ids[n] = docId;
+            size = n + 1;
+        }
+    }
+
+    /**
+     * 批次建立用的 n-gram → 連續編號 (開放定址 long 表，不裝箱) 與每個 n-gram 的 doc 數 (同一 doc 只算一次)；n-gram 編碼不會是 0，0 代表空位
+     */
+    private static final class GramTable {
+        private long[] keys = new long[1 << 16];
+        private int[] slots = new int[1 << 16];
+        private long[] grams = new long[1 << 12];
+        private int[] counts = new int[1 << 12];
+        // 每個 n-gram 最後計入的 doc，同一 doc 只算一次
+        private int[] lastDoc = new int[1 << 12];
+        private int size;
+
+        void count(long gram, int docId) {
+            int mask = keys.length - 1;
+            int i = hash(gram) & mask;
+            while (keys[i] != 0) {
+                if (keys[i] == gram) {
+                    int slot = slots[i];
+                    if (lastDoc[slot] != docId) {
+                        lastDoc[slot] = docId;
+                        counts[slot]++;
+                    }
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            if (size == grams.length) {
+                grams = Arrays.copyOf(grams, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+                lastDoc = Arrays.copyOf(lastDoc, size * 2);
+            }
+            keys[i] = gram;
+            slots[i] = size;
+            grams[size] = gram;
+            counts[size] = 1;
+            lastDoc[size] = docId;
+            size++;
+            // 維持負載 <= 1/2
+            if (size * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+        }
+
+        int slotOf(long gram) {
+            int mask = keys.length - 1;
+            int i = hash(gram) & mask;
+            while (keys[i] != gram) {
+                i = (i + 1) & mask;
+            }
+            return slots[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        long gramOf(int slot) {
+            return grams[slot];
+        }
+
+        int countOf(int slot) {
+            return counts[slot];
+        }
+
+        private void rehash(int capacity) {
+            keys = new long[capacity];
+            slots = new int[capacity];
+            int mask = capacity - 1;
+            for (int slot = 0; slot < size; slot++) {
+                int i = hash(grams[slot]) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = grams[slot];
+                slots[i] = slot;
+            }
+        }
+
+        private static int hash(long gram) {
+            return (int) ((gram * 0x9E3779B97F4A7C15L) >>> 32);
+        }
+    }
+
+    private static final class Doc {
+        final InstallationJob job;
+        final String text;
+
+        Doc(InstallationJob job, String text) {
+            this.job = job;
+            this.text = text;
+        }
+    }
+}
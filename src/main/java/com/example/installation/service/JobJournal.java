@@ -0,0 +1,246 @@
+package com.example.installation.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * 工單異動的 append-only journal (記憶體映射)
+ *
+ * <ul>
+ *   <li>檔案 = 16 bytes 檔頭 (magic、格式版本、世代) + 記錄 (格式見 {@link MappedRecordReader})</li>
+ *   <li>append 只是把記錄複製到映射區：資料已在作業系統的 page cache，應用程式當掉也不會遺失</li>
+ *   <li>{@link #sync(long)} 等到該筆寫入磁碟 (group commit)：同時等待的寫入者由第一個取得鎖的執行 force，
+ *       一次涵蓋當時已寫入的全部記錄，其他人醒來時已完成就直接返回</li>
+ *   <li>映射區以 regionBytes 為單位往後延伸 (檔案尾端預先配置為 0)，換區之前先 force 舊區</li>
+ * </ul>
+ * 序號：每筆記錄依序編號，從建立時的 baseSequence + 1 開始；換 journal 時延續上一個的序號。
+ */
+final class JobJournal implements Closeable {
+    private static final int MAGIC = 0x4A4F424A; // "JOBJ"
+    private static final int FILE_HEADER_BYTES = 16;
+
+    private final Path file;
+    private final long generation;
+    private final long baseSequence;
+    private final FileChannel channel;
+    private final int regionBytes;
+    private final Object syncLock = new Object();
+
+    // 以下由 this 保護
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long written;
+    private long writtenSequence;
+    private long records;
+    private boolean closed;
+
+    // 已確定寫入磁碟的序號與檔案位置 (後者由 syncLock 保護)
+    private volatile long durableSequence;
+    private long durablePosition;
+
+    private JobJournal(Path file, long generation, long baseSequence, FileChannel channel, int regionBytes) {
+        this.file = file;
+        this.generation = generation;
+        this.baseSequence = baseSequence;
+        this.channel = channel;
+        this.regionBytes = regionBytes;
+        this.writtenSequence = baseSequence;
+        this.durableSequence = baseSequence;
+    }
+
+    /**
+     * 建立新的 journal 檔 (檔頭立即寫入磁碟)
+     */
+    static JobJournal create(Path file, long generation, long baseSequence, int regionBytes) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        JobJournal journal = new JobJournal(file, generation, baseSequence, channel, regionBytes);
+        journal.region = channel.map(FileChannel.MapMode.READ_WRITE, 0, regionBytes);
+        journal.region.putInt(0, MAGIC).putInt(4, JobCodec.VERSION).putLong(8, generation);
+        journal.region.force(0, FILE_HEADER_BYTES);
+        journal.written = FILE_HEADER_BYTES;
+        journal.durablePosition = FILE_HEADER_BYTES;
+        return journal;
+    }
+
+    /**
+     * 開啟既有 journal：依序把每筆記錄交給 replay，不完整的尾端清為 0，之後的 append 接在最後一筆有效記錄後面
+     */
+    static JobJournal open(Path file, long generation, int regionBytes, Consumer<ByteBuffer> replay) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedRecordReader reader = new MappedRecordReader(channel, FILE_HEADER_BYTES);
+            long records = replay(channel, file, generation, reader, replay);
+            long end = reader.position();
+            long size = channel.size();
+
+            JobJournal journal = new JobJournal(file, generation, 0, channel, regionBytes);
+            journal.regionStart = end;
+            // 沿用檔案中預先配置的空間，不再延伸檔案
+            int available = (int) Math.min(size - end, Integer.MAX_VALUE);
+            journal.region = channel.map(FileChannel.MapMode.READ_WRITE, end, available > 0 ? available : regionBytes);
+            // 當掉時寫到一半的記錄：清掉，避免之後較短的新記錄後面殘留舊資料
+            if (available >= 4 && journal.region.getInt(0) != 0) {
+                for (int i = 0; i < available; i++) {
+                    journal.region.put(i, (byte) 0);
+                }
+                journal.region.force(0, available);
+            }
+            journal.written = end;
+            journal.durablePosition = end;
+            journal.records = records;
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 只讀取 (不再寫入的舊 journal)；回傳記錄數
+     */
+    static long replay(Path file, long generation, Consumer<ByteBuffer> replay) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return replay(channel, file, generation, new MappedRecordReader(channel, FILE_HEADER_BYTES), replay);
+        }
+    }
+
+    private static long replay(FileChannel channel, Path file, long generation, MappedRecordReader reader,
+            Consumer<ByteBuffer> replay) throws IOException {
+        readHeader(channel, file, generation);
+        long records = 0;
+        for (ByteBuffer body = reader.next(); body != null; body = reader.next()) {
+            replay.accept(body);
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * 附加一筆記錄，回傳序號 (尚未保證寫入磁碟，需要時呼叫 {@link #sync(long)})
+     */
+    synchronized long append(byte[] body, int length) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("journal 已關閉: " + file);
+        }
+        int recordBytes = MappedRecordReader.HEADER_BYTES + length;
+        if (written + recordBytes > regionStart + region.capacity()) {
+            nextRegion(recordBytes);
+        }
+        int at = (int) (written - regionStart);
+        region.put(at + MappedRecordReader.HEADER_BYTES, body, 0, length);
+        region.putInt(at + 4, MappedRecordReader.crc(body, length));
+        // 長度最後寫入：讀取端看到非 0 長度時內容已完整 (斷電時仍以 CRC 判斷)
+        region.putInt(at, length);
+        written += recordBytes;
+        records++;
+        return ++writtenSequence;
+    }
+
+    private void nextRegion(int recordBytes) throws IOException {
+        region.force();
+        regionStart = written;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(regionBytes, recordBytes));
+    }
+
+    /**
+     * 等到序號 sequence (含) 之前的記錄都寫入磁碟
+     */
+    void sync(long sequence) {
+        if (sequence <= durableSequence) {
+            return;
+        }
+        synchronized (syncLock) {
+            // 等鎖期間前一個 force 可能已經涵蓋
+            if (sequence <= durableSequence) {
+                return;
+            }
+            MappedByteBuffer target;
+            long targetStart;
+            long end;
+            long endSequence;
+            synchronized (this) {
+                target = region;
+                targetStart = regionStart;
+                end = written;
+                endSequence = writtenSequence;
+            }
+            // 換區時舊區已 force，只需要目前映射區中尚未 force 的部分
+            long from = Math.max(durablePosition, targetStart);
+            target.force((int) (from - targetStart), (int) (end - from));
+            durablePosition = end;
+            durableSequence = endSequence;
+        }
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    /**
+     * 建立時的序號；小於等於此值的記錄屬於之前的 journal
+     */
+    long baseSequence() {
+        return baseSequence;
+    }
+
+    synchronized long lastSequence() {
+        return writtenSequence;
+    }
+
+    synchronized long size() {
+        return written;
+    }
+
+    /**
+     * 檔案中的記錄數 (含啟動時重播的)
+     */
+    synchronized long records() {
+        return records;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /**
+     * 全部寫入磁碟後關閉；之後的 sync 直接返回
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                region.force();
+                durablePosition = written;
+                durableSequence = writtenSequence;
+            }
+            channel.close();
+        }
+    }
+
+    private static void readHeader(FileChannel channel, Path file, long generation) throws IOException {
+        if (channel.size() < FILE_HEADER_BYTES) {
+            throw new IOException("不是工單 journal: " + file);
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, FILE_HEADER_BYTES);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("不是工單 journal: " + file);
+        }
+        if (header.getInt(4) != JobCodec.VERSION) {
+            throw new IOException("journal 格式版本 " + header.getInt(4) + " 不支援: " + file);
+        }
+        if (header.getLong(8) != generation) {
+            throw new IOException("journal 世代 " + header.getLong(8) + " 與檔名不符: " + file);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.example.installation.service;
+
+import com.example.installation.model.InstallationJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * 工單的持久化：目錄中的快照與 journal，依世代 (generation) 編號
+ *
+ * <ul>
+ *   <li>snapshot-N.bin 是 journal-N.log 之前所有異動後的完整工單；journal-N.log 以後是之後的異動</li>
+ *   <li>啟動：映射最新的快照直接解碼，再依序重播世代 &gt;= N 的 journal；最後一個 journal 不完整的尾端捨棄後繼續寫入</li>
+ *   <li>journal 超過門檻時換到下一世代的 journal，由背景執行緒寫出新世代的快照，完成後才刪除舊檔；
+ *       寫到一半當掉時舊快照與兩個 journal 都還在，重啟後狀態仍然完整</li>
+ * </ul>
+ * put/delete/snapshotIfDue/close 必須由呼叫端序列化 (與記憶體索引的更新在同一個鎖內，journal 順序即套用順序)；
+ * {@link #sync(long)} 不需要鎖，多個寫入者同時等待時合併成一次 force。
+ */
+final class JobPersistence {
+    private static final Logger logger = LoggerFactory.getLogger(JobPersistence.class);
+
+    private static final Pattern FILE_NAME = Pattern.compile("(snapshot|journal)-(\\d+)\\.(bin|log)");
+
+    private final Path dir;
+    private final boolean fsync;
+    private final long snapshotThresholdBytes;
+    private final int journalRegionBytes;
+    private final JobCodec codec = new JobCodec();
+    private final ExecutorService snapshotWriter;
+
+    private volatile JobJournal journal;
+    private Future<?> pendingSnapshot;
+    private FileChannel lockFile;
+
+    JobPersistence(Path dir, boolean fsync, long snapshotThresholdBytes, int journalRegionBytes) {
+        this.dir = dir;
+        this.fsync = fsync;
+        this.snapshotThresholdBytes = snapshotThresholdBytes;
+        this.journalRegionBytes = journalRegionBytes;
+        this.snapshotWriter = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "job-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 讀回上次關閉 (或當掉) 前的全部工單，依寫入順序；目錄是空的時回傳 fresh = true
+     */
+    Recovery recover() throws IOException {
+        Files.createDirectories(dir);
+        lock();
+        long start = System.nanoTime();
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        TreeMap<Long, Path> journals = new TreeMap<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                Matcher m = FILE_NAME.matcher(name);
+                if (m.matches()) {
+                    (m.group(1).equals("snapshot") ? snapshots : journals).put(Long.parseLong(m.group(2)), file);
+                } else if (name.endsWith(".tmp")) {
+                    // 寫到一半的快照
+                    Files.delete(file);
+                }
+            }
+        }
+
+        long generation = snapshots.isEmpty() ? 1 : snapshots.lastKey();
+        List<InstallationJob> fromSnapshot = snapshots.isEmpty()
+            ? new ArrayList<>() : JobSnapshot.read(snapshots.lastEntry().getValue(), generation);
+        long snapshotNanos = System.nanoTime() - start;
+
+        Replay replay = new Replay(fromSnapshot);
+        long records = 0;
+        Map<Long, Path> pending = journals.tailMap(generation, true);
+        Long last = pending.isEmpty() ? null : journals.lastKey();
+        for (Map.Entry<Long, Path> e : pending.entrySet()) {
+            if (e.getKey().equals(last)) {
+                journal = JobJournal.open(e.getValue(), e.getKey(), journalRegionBytes, replay);
+                records += journal.records();
+            } else {
+                records += JobJournal.replay(e.getValue(), e.getKey(), replay);
+            }
+        }
+        if (journal == null) {
+            journal = JobJournal.create(journalFile(generation), generation, 0, journalRegionBytes);
+            syncDirectory();
+        }
+        // 快照之前的舊世代 (刪除前當掉留下的)
+        deleteBefore(generation);
+        List<InstallationJob> jobs = replay.jobs();
+
+        boolean fresh = snapshots.isEmpty() && journals.isEmpty();
+        logger.info("📦 工單資料讀取完成 {} {} {} {} {} {}", kv("dir", dir), kv("snapshotJobs", fromSnapshot.size()),
+            kv("journalRecords", records), kv("jobs", jobs.size()),
+            kv("snapshotMs", snapshotNanos / 1_000_000), kv("totalMs", (System.nanoTime() - start) / 1_000_000));
+        return new Recovery(jobs, fresh);
+    }
+
+    /**
+     * 記錄新增/取代；回傳序號，交給 {@link #sync(long)} 等待寫入磁碟
+     */
+    long put(InstallationJob job) throws IOException {
+        byte[] body = codec.put(job);
+        return journal.append(body, codec.length());
+    }
+
+    long delete(String jobId) throws IOException {
+        byte[] body = codec.delete(jobId);
+        return journal.append(body, codec.length());
+    }
+
+    /**
+     * 等到序號 sequence 寫入磁碟 (fsync 關閉時只保證應用程式當掉不遺失，不保證斷電)
+     */
+    void sync(long sequence) {
+        if (!fsync) {
+            return;
+        }
+        JobJournal current = journal;
+        // 換 journal 前舊的已全部 force
+        if (sequence > current.baseSequence()) {
+            current.sync(sequence);
+        }
+    }
+
+    /**
+     * journal 超過門檻且沒有快照正在寫時，換到下一世代並在背景寫出快照；
+     * jobs 回傳目前 (含全部已記錄異動) 的完整內容，只在需要快照時呼叫，工單本身不可再被修改
+     */
+    void snapshotIfDue(Supplier<List<InstallationJob>> jobs) throws IOException {
+        if (journal.size() < snapshotThresholdBytes || (pendingSnapshot != null && !pendingSnapshot.isDone())) {
+            return;
+        }
+        long generation = rotate();
+        List<InstallationJob> content = jobs.get();
+        pendingSnapshot = snapshotWriter.submit(() -> {
+            try {
+                writeSnapshot(generation, content);
+            } catch (IOException | RuntimeException e) {
+                // 舊快照與 journal 都還在，下次門檻到時再試
+                logger.error("❌ 工單快照寫入失敗 {}", kv("generation", generation), e);
+            }
+        });
+    }
+
+    /**
+     * 關閉前寫出最後的快照 (這次啟動後有異動時)，下次啟動只需要映射快照
+     */
+    void close(Supplier<List<InstallationJob>> jobs) throws IOException {
+        try {
+            awaitPendingSnapshot();
+            if (journal.records() > 0) {
+                writeSnapshot(rotate(), jobs.get());
+            }
+            journal.close();
+        } finally {
+            snapshotWriter.shutdownNow();
+            lockFile.close();
+        }
+    }
+
+    // 同一個目錄只能有一個程序寫入 (例如同一台機器上的兩個 Tomcat)
+    private void lock() throws IOException {
+        lockFile = FileChannel.open(dir.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        boolean locked;
+        try {
+            locked = lockFile.tryLock() != null;
+        } catch (OverlappingFileLockException e) {
+            // 同一個 JVM 已持有
+            locked = false;
+        }
+        if (!locked) {
+            lockFile.close();
+            throw new IOException("工單資料目錄已被其他程序使用: " + dir);
+        }
+    }
+
+    private long rotate() throws IOException {
+        JobJournal previous = journal;
+        previous.close();
+        long generation = previous.generation() + 1;
+        journal = JobJournal.create(journalFile(generation), generation, previous.lastSequence(), journalRegionBytes);
+        syncDirectory();
+        return generation;
+    }
+
+    private void writeSnapshot(long generation, List<InstallationJob> jobs) throws IOException {
+        long start = System.nanoTime();
+        JobSnapshot.write(dir.resolve("snapshot-" + generation + ".bin"), generation, jobs);
+        syncDirectory();
+        deleteBefore(generation);
+        logger.info("📦 工單快照完成 {} {} {}", kv("generation", generation), kv("jobs", jobs.size()),
+            kv("durationMs", (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private void awaitPendingSnapshot() {
+        if (pendingSnapshot == null) {
+            return;
+        }
+        try {
+            pendingSnapshot.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // 已在背景記錄
+        }
+    }
+
+    // 世代 < generation 的快照與 journal 已被 snapshot-generation 涵蓋
+    private void deleteBefore(long generation) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+                if (m.matches() && Long.parseLong(m.group(2)) < generation) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private Path journalFile(long generation) {
+        return dir.resolve("journal-" + generation + ".log");
+    }
+
+    // 新建/改名的檔案要目錄本身寫入磁碟後才保證斷電後找得到 (Windows 無法開啟目錄，略過)
+    private void syncDirectory() {
+        if (!fsync) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("目錄無法 fsync {}", kv("dir", dir));
+        }
+    }
+
+    /**
+     * 重播 journal：有記錄時才把快照內容以 jobId 整理 (正常關閉後 journal 是空的，直接使用快照的清單)
+     */
+    private static final class Replay implements Consumer<ByteBuffer> {
+        private final List<InstallationJob> snapshot;
+        private final JobCodec.Reader decoder = new JobCodec.Reader();
+        private LinkedHashMap<String, InstallationJob> jobs;
+
+        Replay(List<InstallationJob> snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void accept(ByteBuffer body) {
+            if (jobs == null) {
+                jobs = new LinkedHashMap<>(snapshot.size() * 2);
+                for (InstallationJob job : snapshot) {
+                    jobs.put(job.getJobId(), job);
+                }
+            }
+            byte op = body.get();
+            if (op == JobCodec.PUT) {
+                InstallationJob job = JobCodec.readJob(body, decoder);
+                // 先移除再放入：更新過的工單排到最後，與記憶體索引的順序一致
+                jobs.remove(job.getJobId());
+                jobs.put(job.getJobId(), job);
+            } else if (op == JobCodec.DELETE) {
+                jobs.remove(decoder.string(body));
+            } else {
+                throw new IllegalStateException("未知的 journal 記錄類型: " + op);
+            }
+        }
+
+        List<InstallationJob> jobs() {
+            return jobs == null ? snapshot : new ArrayList<>(jobs.values());
+        }
+    }
+
+    static final class Recovery {
+        final List<InstallationJob> jobs;
+        final boolean fresh;
+
+        Recovery(List<InstallationJob> jobs, boolean fresh) {
+            this.jobs = jobs;
+            this.fresh = fresh;
+        }
+    }
+}
@@ -1,16 +1,74 @@
 package com.example.installation.service;
 import com.example.installation.model.BomItem;
 import com.example.installation.model.InstallationJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
 
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * 工單儲存：執行緒安全，jobId/客戶名稱/地址以 n-gram 索引 (見 {@link JobIndex})，查詢不加鎖。
+ * 取得的工單不要直接修改欄位，要改請呼叫 {@link #update(InstallationJob)}，索引才會跟著更新。
+ *
+ * 設定 jobs.store.dir 時每筆異動先寫入記憶體映射的 journal 再套用，回傳前等待寫入磁碟 (group commit，見 {@link JobPersistence})；
+ * 重啟時從快照 + journal 讀回，只有第一次啟動 (目錄是空的) 才放入預設工單。
+ */
 @Service
 public class JobService {
-  private final Map<String, InstallationJob> store = new LinkedHashMap<>();
+  private static final Logger logger = LoggerFactory.getLogger(JobService.class);
+
+  private final JobIndex store = new JobIndex();
+  private final JobPersistence persistence;
+  // 寫入序列化：journal 順序 = 套用順序
+  private final Object writeLock = new Object();
+
+  /**
+   * 只存在記憶體 (基準測試用)
+   */
+  public JobService(){ this.persistence=null; }
+
+  @Autowired
+  public JobService(@Value("${jobs.store.dir:}") String dir,
+                    @Value("${jobs.store.fsync:true}") boolean fsync,
+                    @Value("${jobs.store.snapshot-threshold-mb:64}") int snapshotThresholdMb,
+                    @Value("${jobs.store.journal-region-mb:16}") int journalRegionMb){
+    this.persistence = dir.isBlank() ? null
+      : new JobPersistence(Paths.get(dir), fsync, snapshotThresholdMb * 1024L * 1024L, journalRegionMb * 1024 * 1024);
+  }
 
   @PostConstruct public void init(){
+    if(persistence!=null){
+      long start=System.nanoTime();
+      JobPersistence.Recovery recovery;
+      try { recovery=persistence.recover(); }
+      catch(IOException e){ throw new UncheckedIOException("工單資料讀取失敗", e); }
+      long indexStart=System.nanoTime();
+      store.load(recovery.jobs);
+      logger.info("📦 工單載入完成 {} {} {}", kv("jobs", store.size()),
+        kv("indexMs", (System.nanoTime()-indexStart)/1_000_000), kv("totalMs", (System.nanoTime()-start)/1_000_000));
+      if(!recovery.fresh) return;
+    }
+    seed();
+  }
+
+  @PreDestroy public void shutdown(){
+    if(persistence==null) return;
+    synchronized(writeLock){
+      try { persistence.close(() -> store.list(Integer.MAX_VALUE)); }
+      catch(IOException e){ logger.error("❌ 工單資料關閉失敗", e); }
+    }
+  }
+
+  private void seed(){
     InstallationJob j1=new InstallationJob();
     j1.setJobId("JOB-0001"); j1.setStatus("Planned"); j1.setPriority("High");
     j1.setCustomerName("工廠一"); j1.setCustomerPhone("0912-345-678");
@@ -35,14 +93,88 @@ public class JobService {
     j3.getBom().add(new BomItem("GAS-HOSE","瓦斯軟管",1,1,null,null));
     j3.getBom().add(new BomItem("VALVE-REG","調壓閥",1,1,null,null));
 
-    store.put(j1.getJobId(), j1); store.put(j2.getJobId(), j2); store.put(j3.getJobId(), j3);
+    insert(j1); insert(j2); insert(j3);
+  }
+
+  public List<InstallationJob> list(){ return store.list(Integer.MAX_VALUE); }
+  public Optional<InstallationJob> find(String id){ return id == null ? Optional.empty() : Optional.ofNullable(store.get(id)); }
+  public int count(){ return store.size(); }
+
+  public List<InstallationJob> search(String q){ return search(q, Integer.MAX_VALUE); }
+
+  /**
+   * jobId、客戶名稱或地址包含 q (區分大小寫，中文可查任意長度片段)，依寫入順序最多 limit 筆；q 空白時回傳全部工單的前 limit 筆
+   */
+  public List<InstallationJob> search(String q, int limit){
+    if(limit<=0) return new ArrayList<>();
+    return store.search(q, limit);
+  }
+
+  /**
+   * 新增工單；jobId 已存在時回傳 false
+   */
+  public boolean insert(InstallationJob job){
+    validate(job);
+    long sequence;
+    synchronized(writeLock){
+      if(store.get(job.getJobId())!=null) return false;
+      sequence=journalPut(job);
+      store.put(job);
+      snapshotIfDue();
+    }
+    sync(sequence);
+    return true;
+  }
+
+  /**
+   * 以同 jobId 的新內容取代 (索引同步更新)；jobId 不存在時回傳 false
+   */
+  public boolean update(InstallationJob job){
+    validate(job);
+    long sequence;
+    synchronized(writeLock){
+      if(store.get(job.getJobId())==null) return false;
+      sequence=journalPut(job);
+      store.put(job);
+      snapshotIfDue();
+    }
+    sync(sequence);
+    return true;
+  }
+
+  public boolean delete(String id){
+    if(id==null) return false;
+    long sequence;
+    synchronized(writeLock){
+      if(store.get(id)==null) return false;
+      try { sequence=persistence==null ? 0 : persistence.delete(id); }
+      catch(IOException e){ throw new UncheckedIOException("工單刪除寫入 journal 失敗", e); }
+      store.remove(id);
+      snapshotIfDue();
+    }
+    sync(sequence);
+    return true;
+  }
+
+  // 以下三個在 writeLock 內呼叫
+  private long journalPut(InstallationJob job){
+    if(persistence==null) return 0;
+    try { return persistence.put(job); }
+    catch(IOException e){ throw new UncheckedIOException("工單寫入 journal 失敗", e); }
+  }
+
+  private void snapshotIfDue(){
+    if(persistence==null) return;
+    try { persistence.snapshotIfDue(() -> store.list(Integer.MAX_VALUE)); }
+    catch(IOException e){ throw new UncheckedIOException("工單 journal 切換失敗", e); }
+  }
+
+  // 鎖外等待寫入磁碟，同時等待的寫入合併成一次 force
+  private void sync(long sequence){
+    if(persistence!=null) persistence.sync(sequence);
   }
 
-  public List<InstallationJob> list(){ return new ArrayList<>(store.values()); }
-  public Optional<InstallationJob> find(String id){ return Optional.ofNullable(store.get(id)); }
-  public List<InstallationJob> search(String q){
-    if(q==null||q.isBlank()) return list();
-    String k=q.trim();
-    return store.values().stream().filter(j -> j.getJobId().contains(k) || j.getCustomerName().contains(k) || j.getAddress().contains(k)).collect(Collectors.toList());
+  private static void validate(InstallationJob job){
+    if(job==null||job.getJobId()==null||job.getJobId().isBlank()) throw new IllegalArgumentException("jobId 不可為空白");
   }
 }
@@ -0,0 +1,85 @@
+package com.example.installation.service;
+
+import com.example.installation.model.InstallationJob;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 某個時間點全部工單的快照 (依寫入順序)
+ *
+ * 檔案 = 24 bytes 檔頭 (magic、格式版本、世代、筆數) + 每筆工單一個記錄 (格式見 {@link MappedRecordReader})。
+ * 寫入時先寫 .tmp、force 後 atomic rename，所以看得到的快照一定完整；讀取時映射整個檔案直接解碼。
+ */
+final class JobSnapshot {
+    private static final int MAGIC = 0x4A4F4253; // "JOBS"
+    private static final int FILE_HEADER_BYTES = 24;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    private JobSnapshot() {
+    }
+
+    static void write(Path file, long generation, List<InstallationJob> jobs) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        JobCodec codec = new JobCodec();
+        try (FileChannel channel = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_BYTES));
+            out.writeInt(MAGIC);
+            out.writeInt(JobCodec.VERSION);
+            out.writeLong(generation);
+            out.writeLong(jobs.size());
+            for (InstallationJob job : jobs) {
+                byte[] body = codec.job(job);
+                int length = codec.length();
+                out.writeInt(length);
+                out.writeInt(MappedRecordReader.crc(body, length));
+                out.write(body, 0, length);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static List<InstallationJob> read(Path file, long generation) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < FILE_HEADER_BYTES) {
+                throw new IOException("不是工單快照: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, FILE_HEADER_BYTES);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("不是工單快照: " + file);
+            }
+            if (header.getInt(4) != JobCodec.VERSION) {
+                throw new IOException("快照格式版本 " + header.getInt(4) + " 不支援: " + file);
+            }
+            if (header.getLong(8) != generation) {
+                throw new IOException("快照世代 " + header.getLong(8) + " 與檔名不符: " + file);
+            }
+            long expected = header.getLong(16);
+
+            List<InstallationJob> jobs = new ArrayList<>((int) Math.min(expected, Integer.MAX_VALUE - 8));
+            MappedRecordReader reader = new MappedRecordReader(channel, FILE_HEADER_BYTES);
+            JobCodec.Reader decoder = new JobCodec.Reader();
+            for (ByteBuffer body = reader.next(); body != null; body = reader.next()) {
+                jobs.add(JobCodec.readJob(body, decoder));
+            }
+            if (jobs.size() != expected) {
+                throw new IOException("快照損毀: " + file + " 應有 " + expected + " 筆，只讀到 " + jobs.size() + " 筆");
+            }
+            return jobs;
+        }
+    }
+}
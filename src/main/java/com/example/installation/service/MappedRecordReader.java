@@ -0,0 +1,76 @@
+package com.example.installation.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32C;
+
+/**
+ * 以記憶體映射依序讀取 journal / 快照的記錄
+ *
+ * 記錄格式：int 長度 + int CRC32C + 內容；長度 0 (檔案預先配置的空白)、超出檔案或 CRC 不符即視為結尾。
+ * 單一映射不能超過 2GB，所以以 1GB 視窗分段映射，記錄跨視窗時從記錄開頭重新映射。
+ */
+final class MappedRecordReader {
+    static final int HEADER_BYTES = 8;
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private final CRC32C crc = new CRC32C();
+    private long position;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    MappedRecordReader(FileChannel channel, long start) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.position = start;
+    }
+
+    /**
+     * 下一筆記錄的內容 (position 在開頭、limit 在結尾)；沒有有效記錄時回傳 null
+     */
+    ByteBuffer next() throws IOException {
+        if (position + HEADER_BYTES > size) {
+            return null;
+        }
+        ByteBuffer header = slice(position, HEADER_BYTES);
+        int length = header.getInt(0);
+        int crc = header.getInt(4);
+        if (length <= 0 || position + HEADER_BYTES + length > size) {
+            return null;
+        }
+        ByteBuffer body = slice(position + HEADER_BYTES, length);
+        this.crc.reset();
+        this.crc.update(body);
+        if ((int) this.crc.getValue() != crc) {
+            return null;
+        }
+        body.rewind();
+        position += HEADER_BYTES + length;
+        return body;
+    }
+
+    /**
+     * 最後一筆有效記錄的結尾
+     */
+    long position() {
+        return position;
+    }
+
+    static int crc(byte[] body, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(body, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private ByteBuffer slice(long at, int length) throws IOException {
+        if (window == null || at < windowStart || at + length > windowStart + window.capacity()) {
+            windowStart = at;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, at, Math.min(size - at, Math.max(WINDOW_BYTES, length)));
+        }
+        return window.slice((int) (at - windowStart), length);
+    }
+}
@@ -1,12 +1,30 @@
 package com.example.installation.web;
 import com.example.installation.model.InstallationJob;
 import com.example.installation.service.JobService;
-import org.springframework.web.bind.annotation.*; import java.util.List;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*; import java.util.List; import java.util.Map;
 
 @RestController @RequestMapping("/api/jobs")
 public class ApiController {
   private final JobService jobService;
   public ApiController(JobService jobService){ this.jobService=jobService; }
-  @GetMapping public List<InstallationJob> list(@RequestParam(value="q", required=false) String q){ return jobService.search(q); }
+  // q 比對 jobId/客戶名稱/地址 (索引查詢，區分大小寫)，最多回傳 limit 筆
+  @GetMapping public List<InstallationJob> list(@RequestParam(value="q", required=false) String q,
+      @RequestParam(value="limit", defaultValue="500") int limit){ return jobService.search(q, limit); }
   @GetMapping("/{id}") public InstallationJob detail(@PathVariable String id){ return jobService.find(id).orElse(null); }
+
+  @PostMapping public ResponseEntity<?> create(@RequestBody InstallationJob job){
+    if(!jobService.insert(job)) return ResponseEntity.status(409).body(Map.of("error", "工單已存在: " + job.getJobId()));
+    return ResponseEntity.status(201).body(job);
+  }
+  @PutMapping("/{id}") public ResponseEntity<?> update(@PathVariable String id, @RequestBody InstallationJob job){
+    job.setJobId(id);
+    if(!jobService.update(job)) return ResponseEntity.status(404).body(Map.of("error", "找不到工單: " + id));
+    return ResponseEntity.ok(job);
+  }
+  @DeleteMapping("/{id}") public ResponseEntity<?> delete(@PathVariable String id){
+    return jobService.delete(id) ? ResponseEntity.noContent().build() : ResponseEntity.status(404).body(Map.of("error", "找不到工單: " + id));
+  }
+  @ExceptionHandler(IllegalArgumentException.class)
+  public ResponseEntity<Map<String, Object>> badRequest(IllegalArgumentException e){ return ResponseEntity.badRequest().body(Map.of("error", e.getMessage())); }
 }
@@ -1,6 +1,9 @@
 package com.example.installation.web;
 
+import com.example.installation.baw.BAWCallGuard;
+import com.example.installation.baw.BAWOutbox;
 import com.example.installation.baw.BAWService;
+import com.example.installation.baw.BAWUnavailableException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -11,9 +14,29 @@ import java.util.Map;
 public class BAWController {
 
     private final BAWService bawService;
+    private final BAWOutbox bawOutbox;
+    private final BAWCallGuard callGuard;
 
-    public BAWController(BAWService bawService) {
+    public BAWController(BAWService bawService, BAWOutbox bawOutbox, BAWCallGuard callGuard) {
         this.bawService = bawService;
+        this.bawOutbox = bawOutbox;
+        this.callGuard = callGuard;
+    }
+
+    /**
+     * 斷路器與 bulkhead 狀態
+     */
+    @GetMapping("/guard")
+    public Map<String, Object> guardMetrics() {
+        return callGuard.getMetrics();
+    }
+
+    /**
+     * outbox 各狀態筆數 (PENDING 持續增加代表 BAW 異常)
+     */
+    @GetMapping("/outbox")
+    public Map<String, Object> outboxStats() {
+        return bawOutbox.getStats();
     }
 
     /**
@@ -29,6 +52,10 @@ public class BAWController {
             String piid = bawService.startProcessRaw(bpdId, params);
 
             return ResponseEntity.ok(Map.of("piid", piid));
+        } catch (BAWUnavailableException e) {
+            return ResponseEntity.status(503)
+                .header("Retry-After", String.valueOf(Math.max(1, e.getRetryAfterMillis() / 1000)))
+                .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
@@ -1,10 +1,26 @@
 package com.example.installation.web;
 
+import com.example.installation.db.CompositeReader;
 import com.example.installation.db.DbOrder;
 import com.example.installation.db.DbOrderService;
+import com.example.installation.db.InboundPlan;
 import com.example.installation.db.InventoryStatus;
+import com.example.installation.db.OrderPage;
+import com.example.installation.db.OrderQuery;
+import com.example.installation.db.WorkerCapacity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -13,14 +29,76 @@ import java.util.HashMap;
 @RequestMapping("/api/db")
 public class DbApiController {
     private final DbOrderService svc;
+    private final ObjectMapper objectMapper;
+    private final CompositeReader compositeReader;
     
-    public DbApiController(DbOrderService svc) {
+    // 匯出時每次從資料庫取回的列數
+    private static final int EXPORT_FETCH_SIZE = 2000;
+    
+    public DbApiController(DbOrderService svc, ObjectMapper objectMapper, CompositeReader compositeReader) {
         this.svc = svc;
+        this.objectMapper = objectMapper;
+        this.compositeReader = compositeReader;
     }
     
+    /**
+     * 訂單分頁：cursor 為上一頁回傳的 nextCursor，篩選條件皆在 SQL 端處理
+     */
     @GetMapping("/orders")
-    public List<DbOrder> orders() {
-        return svc.list();
+    public OrderPage orders(
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "machine", required = false) String machine,
+            @RequestParam(value = "match", defaultValue = "EXACT") OrderQuery.Match match,
+            @RequestParam(value = "dueFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueFrom,
+            @RequestParam(value = "dueTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueTo,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "" + OrderQuery.DEFAULT_LIMIT) int limit) {
+        OrderQuery query = new OrderQuery();
+        query.setStatus(status);
+        query.setMachineName(machine);
+        query.setMachineMatch(match);
+        query.setDueFrom(dueFrom);
+        query.setDueTo(dueTo);
+        query.setCursor(cursor);
+        query.setLimit(limit);
+        return svc.findPage(query);
+    }
+    
+    /**
+     * 串流匯出全部訂單與材料 (format=ndjson 或 csv)
+     *
+     * 逐筆讀取 JDBC 游標並直接寫入 response，不建立完整清單，匯出量與記憶體用量無關。
+     */
+    @GetMapping("/orders/export")
+    public void exportOrders(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                             HttpServletResponse response) throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("不支援的匯出格式: " + format);
+        }
+        
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType(csv ? "text/csv" : "application/x-ndjson");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=\"orders." + (csv ? "csv" : "ndjson") + "\"");
+        
+        OutputStream out = response.getOutputStream();
+        OrderExportWriter writer = csv
+            ? OrderExportWriter.csv(out)
+            : OrderExportWriter.ndjson(out, objectMapper.getFactory());
+        try {
+            svc.streamOrders(EXPORT_FETCH_SIZE, order -> {
+                try {
+                    writer.write(order);
+                } catch (IOException e) {
+                    // 用戶端中斷連線時結束查詢
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
     }
     
     @GetMapping("/inventory")
@@ -38,26 +116,57 @@ public class DbApiController {
         return svc.getWorkerCapacity();
     }
     
+    // 參考資料快取統計 (命中/未命中/逐出)
+    @GetMapping("/cache")
+    public Map<String, Object> cacheStats() {
+        return svc.getReferenceCacheStats();
+    }
+    
     // 綜合儀表板數據
     @GetMapping("/dashboard")
-    public Map<String, Object> dashboard() {
+    public Map<String, Object> dashboard(HttpServletResponse response) {
         Map<String, Object> result = new HashMap<>();
         
-        List<DbOrder> orders = svc.list();
-        List<InventoryStatus> inventory = svc.getInventoryStatus();
+        // 五個獨立查詢平行送出
+        CompositeReader.Batch batch = compositeReader.batch("api-dashboard");
+        CompositeReader.Branch<DbOrderService.DashboardStats> statsBranch = batch.add("stats",
+            svc::getDashboardStats, new DbOrderService.DashboardStats());
+        CompositeReader.Branch<OrderPage> pageBranch = batch.add("orders",
+            () -> svc.findPage(new OrderQuery()), new OrderPage(Collections.emptyList(), null));
+        CompositeReader.Branch<List<InventoryStatus>> inventoryBranch = batch.add("inventory",
+            svc::getInventoryStatus, Collections.emptyList());
+        CompositeReader.Branch<List<InboundPlan>> inboundBranch = batch.add("inbound",
+            svc::getInboundPlans, Collections.emptyList());
+        CompositeReader.Branch<List<WorkerCapacity>> capacityBranch = batch.add("capacity",
+            svc::getWorkerCapacity, Collections.emptyList());
+        batch.join();
+        response.setHeader("Server-Timing", batch.serverTiming());
+        
+        DbOrderService.DashboardStats stats = statsBranch.get();
+        OrderPage page = pageBranch.get();
+        List<InventoryStatus> inventory = inventoryBranch.get();
         
-        // 統計數據
-        result.put("totalOrders", orders.size());
-        result.put("onTimeOrders", orders.stream().filter(o -> "ON_TIME".equals(o.getStatus())).count());
-        result.put("lateOrders", orders.stream().filter(o -> "LATE".equals(o.getStatus())).count());
-        result.put("materialsAtRisk", inventory.stream().filter(InventoryStatus::hasShortage).count());
+        // 統計數據 (彙總查詢)
+        result.put("totalOrders", stats.getTotalOrders());
+        result.put("onTimeOrders", stats.getOnTimeOrders());
+        result.put("lateOrders", stats.getLateOrders());
+        result.put("atRiskOrders", stats.getAtRiskOrders());
+        result.put("materialsAtRisk", stats.getLowStockMaterials());
         
-        // 詳細資料
-        result.put("orders", orders);
+        // 詳細資料：訂單只回第一頁，其餘以 nextCursor 呼叫 /api/db/orders 取得
+        result.put("orders", page.getItems());
+        result.put("nextCursor", page.getNextCursor());
         result.put("inventory", inventory);
-        result.put("inboundPlans", svc.getInboundPlans());
-        result.put("workerCapacity", svc.getWorkerCapacity());
+        result.put("inboundPlans", inboundBranch.get());
+        result.put("workerCapacity", capacityBranch.get());
+        result.put("latencyMillis", batch.getLatencies());
         
         return result;
     }
+    
+    // 查詢參數錯誤 (如游標格式) 回傳 400
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
 }
\ No newline at end of file
@@ -1,24 +1,43 @@
 package com.example.installation.web;
 
+import com.example.installation.db.CompositeReader;
+import com.example.installation.db.DbOrder;
 import com.example.installation.db.DbOrderService;
+import com.example.installation.db.InboundPlan;
+import com.example.installation.db.InventoryStatus;
+import com.example.installation.db.WorkerCapacity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
+import java.util.List;
+
 @Controller
 public class DbPageController {
     private final DbOrderService svc;
+    private final CompositeReader compositeReader;
     
-    public DbPageController(DbOrderService svc) {
+    public DbPageController(DbOrderService svc, CompositeReader compositeReader) {
         this.svc = svc;
+        this.compositeReader = compositeReader;
     }
     
     @GetMapping("/db/orders")
-    public String orders(Model model) {
-        model.addAttribute("orders", svc.list());
-        model.addAttribute("inventoryStatus", svc.getInventoryStatus());
-        model.addAttribute("inboundPlans", svc.getInboundPlans());
-        model.addAttribute("workerCapacity", svc.getWorkerCapacity());
+    public String orders(Model model, HttpServletResponse response) {
+        CompositeReader.Batch batch = compositeReader.batch("db-orders");
+        CompositeReader.Branch<List<DbOrder>> orders = batch.add("orders", svc::list, Collections.emptyList());
+        CompositeReader.Branch<List<InventoryStatus>> inventory = batch.add("inventory", svc::getInventoryStatus, Collections.emptyList());
+        CompositeReader.Branch<List<InboundPlan>> inbound = batch.add("inbound", svc::getInboundPlans, Collections.emptyList());
+        CompositeReader.Branch<List<WorkerCapacity>> capacity = batch.add("capacity", svc::getWorkerCapacity, Collections.emptyList());
+        batch.join();
+        response.setHeader("Server-Timing", batch.serverTiming());
+        
+        model.addAttribute("orders", orders.get());
+        model.addAttribute("inventoryStatus", inventory.get());
+        model.addAttribute("inboundPlans", inbound.get());
+        model.addAttribute("workerCapacity", capacity.get());
         return "db-orders";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package com.example.installation.web;
+
+import com.example.installation.events.ChangeEventBroadcaster;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 儀表板/排程頁的即時更新 (EventSource)；事件種類見 {@link ChangeEventBroadcaster}
+ */
+@RestController
+@RequestMapping("/api")
+public class EventStreamController {
+    private final ChangeEventBroadcaster broadcaster;
+    
+    public EventStreamController(ChangeEventBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+    
+    // 瀏覽器斷線後自動重連並帶上 Last-Event-ID，補送期間漏掉的事件
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return broadcaster.subscribe(lastEventId);
+    }
+}
@@ -1,19 +1,23 @@
 package com.example.installation.web;
 
 import com.example.installation.db.DbOrderService;
-import com.example.installation.baw.BAWService;
+import com.example.installation.db.OrderInput;
+import com.example.installation.db.OrderRepository;
+import com.example.installation.baw.BAWOutbox;
+import com.example.installation.events.ChangeEventBroadcaster;
+import com.example.installation.schedule.MaterialAvailabilityIndex;
+import com.example.installation.schedule.ScheduleService;
 import com.example.installation.model.InstallationJob;
-import com.example.installation.model.BomItem;
 
 import org.springframework.http.ResponseEntity;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
@@ -23,14 +27,28 @@ import org.slf4j.LoggerFactory;
 @RequestMapping("/orders")
 public class OrderController {
 	private final DbOrderService dbOrderService;
-	private final BAWService bawService;
-	private final JdbcTemplate jdbc;
+	private final BAWOutbox bawOutbox;
+	private final TransactionTemplate transactionTemplate;
+	private final OrderRepository orderRepository;
+	private final ScheduleService scheduleService;
+	private final MaterialAvailabilityIndex availabilityIndex;
+	private final ChangeEventBroadcaster events;
 	private static final Logger logger = LoggerFactory.getLogger(OrderController.class); // 修正 Logger 類名
 
-	public OrderController(DbOrderService dbOrderService, BAWService bawService, JdbcTemplate jdbc) {
+	// 表單欄位順序：氮氣管、水管、真空管
+	private static final String[] MATERIAL_CODES = OrderInput.MATERIAL_CODES;
+	private static final String[] MATERIAL_NAMES = OrderInput.MATERIAL_NAMES;
+
+	public OrderController(DbOrderService dbOrderService, BAWOutbox bawOutbox, TransactionTemplate transactionTemplate,
+			OrderRepository orderRepository, ScheduleService scheduleService, MaterialAvailabilityIndex availabilityIndex,
+			ChangeEventBroadcaster events) {
 		this.dbOrderService = dbOrderService;
-		this.bawService = bawService;
-		this.jdbc = jdbc;
+		this.bawOutbox = bawOutbox;
+		this.transactionTemplate = transactionTemplate;
+		this.orderRepository = orderRepository;
+		this.scheduleService = scheduleService;
+		this.availabilityIndex = availabilityIndex;
+		this.events = events;
 	}
 
 	@GetMapping("/new")
@@ -43,80 +61,60 @@ public class OrderController {
 	@PostMapping("/create")
 	public String createOrder(@RequestParam Map<String, String> params, RedirectAttributes redirectAttributes) {
 		try {
-			String machineName = params.get("machineName");
-			String dueDateStr = params.get("dueDate");
-
-			validateInput(machineName, dueDateStr);
-
-			LocalDate dueDate = LocalDate.parse(dueDateStr);
-			if (dueDate.isBefore(LocalDate.now())) {
-				throw new IllegalArgumentException("截止日期不能是過去的日期");
-			}
-
-			int nitrogenPipe = parseIntSafely(params.get("nitrogenPipe"));
-			int waterPipe = parseIntSafely(params.get("waterPipe"));
-			int vacuumPipe = parseIntSafely(params.get("vacuumPipe"));
-
-			if (nitrogenPipe == 0 && waterPipe == 0 && vacuumPipe == 0) {
-				throw new IllegalArgumentException("請至少填寫一種材料的需求量");
-			}
-
-			LocalDate etaDate = calculateEtaDate(dueDate, nitrogenPipe + waterPipe + vacuumPipe);
+			OrderInput input = OrderInput.fromParams(params);
+			String machineName = input.getMachineName();
+			LocalDate dueDate = input.getDueDate();
+			int nitrogenPipe = input.getQuantity(0);
+			int waterPipe = input.getQuantity(1);
+			int vacuumPipe = input.getQuantity(2);
+
+			LocalDate etaDate = calculateEtaDate(nitrogenPipe, waterPipe, vacuumPipe);
 			String status = etaDate.isAfter(dueDate) ? "LATE" : "ON_TIME";
 
 			logger.info("建立訂單: {} 截止日期: {} 預估完成: {}", machineName, dueDate, etaDate);
 
-			// 插入訂單
-			String insertOrderSql = "INSERT INTO orders (machine_name, due_date, eta_date, status) VALUES (?, ?, ?, ?)";
-			jdbc.update(insertOrderSql, machineName, dueDate, etaDate, status);
-
-			Long orderId = jdbc.queryForObject(
-					"SELECT id FROM orders WHERE machine_name = ? AND due_date = ? ORDER BY id DESC", Long.class,
-					machineName, dueDate);
-
-			if (orderId == null) {
-				throw new RuntimeException("無法獲取新建訂單的ID");
-			}
-
-			// 插入材料需求
-			int materialCount = 0;
-			materialCount += insertMaterialIfNotZero(orderId, "A", nitrogenPipe);
-			materialCount += insertMaterialIfNotZero(orderId, "B", waterPipe);
-			materialCount += insertMaterialIfNotZero(orderId, "C", vacuumPipe);
-
-			// ✅ 修正：使用包裝方法呼叫 BAW
-			String piid = null;
+			// 訂單、材料需求與 BAW outbox 在同一個交易內寫入；BAW 由背景 dispatcher 送出
+			InstallationJob job = input.toInstallationJob();
+			input.setEtaDate(etaDate);
+			input.setStatus(status);
+			long orderId = transactionTemplate.execute(tx -> {
+				// 以 generated key 取得訂單 id，材料需求一次 batch 寫入
+				long id = orderRepository.insertAll(List.of(input))[0];
+				bawOutbox.enqueue(id, job);
+				return id;
+			});
+
+			// 訂單需求已變動，清除庫存/需求快取
+			dbOrderService.invalidateReferenceData();
+
+			// 增量修補排程：只重排與新訂單競爭材料的訂單，並以排程結果取代估算的 ETA
 			try {
-				// 轉換為 InstallationJob 格式
-				InstallationJob job = convertToInstallationJob(machineName, dueDate, nitrogenPipe, waterPipe, vacuumPipe);
-				
-				// 使用高階包裝方法
-				Map<String, Object> bawResult = bawService.startProcess(job);
-				
-				// 檢查結果
-				if (bawResult.containsKey("success") && Boolean.TRUE.equals(bawResult.get("success"))) {
-					piid = (String) bawResult.get("piid");
-					logger.info("BAW 流程啟動成功，PIID={}", piid);
-				} else if (bawResult.containsKey("enabled") && Boolean.FALSE.equals(bawResult.get("enabled"))) {
-					piid = (String) bawResult.get("mockPiid");
-					logger.info("BAW 功能已停用，使用模擬 PIID={}", piid);
-				} else if (bawResult.containsKey("error")) {
-					throw new RuntimeException("BAW 整合失敗: " + bawResult.get("error"));
+				Map<String, Object> repair = scheduleService.repairOrder(orderId);
+				if (repair.containsKey("etaDate")) {
+					etaDate = LocalDate.parse((String) repair.get("etaDate"));
+					status = (String) repair.get("status");
 				}
-
 			} catch (Exception e) {
-				logger.warn("BAW 流程啟動失敗，但訂單已建立: {}", e.getMessage());
-				// 不拋出例外，讓訂單建立程序繼續
+				logger.warn("排程修補失敗，沿用估算 ETA: {}", e.getMessage());
 			}
 
+			// 推送給開著儀表板/排程頁的使用者 (受影響訂單的 ETA 由排程修補推送)
+			Map<String, Object> created = new LinkedHashMap<>();
+			created.put("id", orderId);
+			created.put("machineName", machineName);
+			created.put("dueDate", dueDate.toString());
+			created.put("etaDate", etaDate.toString());
+			created.put("status", status);
+			events.publish(ChangeEventBroadcaster.ORDER_CREATED, Map.of("orders", List.of(created), "count", 1));
+			events.publishLatest(ChangeEventBroadcaster.INVENTORY_CHANGED, dbOrderService::getInventoryUpdate);
+
 			// 成功訊息
 			String successMsg = String.format(
-					"訂單 %s 已成功建立！預計完成日期：%s，狀態：%s，包含 %d 種材料需求%s",
+					"訂單 %s 已成功建立！預計完成日期：%s，狀態：%s，包含 %d 種材料需求，BAW 流程已排入佇列",
 					machineName, 
 					etaDate, 
 					"ON_TIME".equals(status) ? "準時" : "可能延遲", 
-					materialCount,
-					(piid != null ? "，BAW流程ID：" + piid : ""));
+					input.getMaterialCount());
 			
 			redirectAttributes.addFlashAttribute("success", successMsg);
 
@@ -130,91 +128,9 @@ public class OrderController {
 		return "redirect:/db/orders";
 	}
 
-	private InstallationJob convertToInstallationJob(String machineName, LocalDate dueDate, int nitrogenPipe,
-			int waterPipe, int vacuumPipe) {
-		InstallationJob job = new InstallationJob();
-
-		// 基本資訊
-		job.setJobId("JOB-" + machineName + "-" + System.currentTimeMillis());
-		job.setStatus("Draft");
-		job.setPriority(dueDate.isBefore(LocalDate.now().plusDays(30)) ? "High" : "Normal");
-		job.setCustomerName("系統建立");
-		job.setCustomerPhone("待填寫");
-		job.setAddress("待填寫");
-		job.setSlaDue(dueDate.atTime(17, 0, 0).toString());
-
-		// 建立材料清單
-		List<BomItem> bom = new ArrayList<>();
-
-		if (nitrogenPipe > 0) {
-			bom.add(new BomItem("A", "氮氣管", nitrogenPipe, 0, null, null));
-		}
-		if (waterPipe > 0) {
-			bom.add(new BomItem("B", "水管", waterPipe, 0, null, null));
-		}
-		if (vacuumPipe > 0) {
-			bom.add(new BomItem("C", "真空管", vacuumPipe, 0, null, null));
-		}
-
-		job.setBom(bom);
-
-		return job;
-	}
-
-	private void validateInput(String machineName, String dueDateStr) {
-		if (machineName == null || machineName.trim().isEmpty()) {
-			throw new IllegalArgumentException("機台名稱不能為空");
-		}
-
-		if (dueDateStr == null || dueDateStr.trim().isEmpty()) {
-			throw new IllegalArgumentException("截止日期不能為空");
-		}
-
-		if (!machineName.matches("^M\\d+$")) {
-			throw new IllegalArgumentException("機台名稱格式錯誤，請使用 M + 數字的格式 (如 M3)");
-		}
-	}
-
-	private int parseIntSafely(String value) {
-		if (value == null || value.trim().isEmpty()) {
-			return 0;
-		}
-		try {
-			int result = Integer.parseInt(value.trim());
-			return Math.max(0, Math.min(1000, result)); // 限制在0-1000範圍
-		} catch (NumberFormatException e) {
-			return 0;
-		}
-	}
-
-	private int insertMaterialIfNotZero(Long orderId, String materialCode, int qty) {
-		if (qty > 0) {
-			logger.debug("新增材料需求: 訂單 {} 材料 {} 數量 {}", orderId, materialCode, qty);
-			jdbc.update("INSERT INTO order_materials (order_id, material, qty_needed) VALUES (?, ?, ?)", orderId,
-					materialCode, qty);
-			return 1;
-		}
-		return 0;
-	}
-
-	// 簡單的ETA計算邏輯
-	private LocalDate calculateEtaDate(LocalDate dueDate, int totalMaterialUnits) {
-		LocalDate now = LocalDate.now();
-
-		// 基於總材料數量估算工作天數 (每天處理24單位)
-		int estimatedWorkDays = (int) Math.ceil(totalMaterialUnits / 24.0);
-
-		// 加上材料準備時間（考慮到貨計劃）
-		int materialPrepDays = 10; // 基本準備時間
-
-		LocalDate estimatedEta = now.plusDays(estimatedWorkDays + materialPrepDays);
-
-		// 如果預估時間太接近截止日，給一些緩衝
-		if (estimatedEta.isAfter(dueDate.minusDays(3))) {
-			estimatedEta = dueDate.minusDays(1);
-		}
-
-		return estimatedEta;
+	// ETA = 所有材料最早可用日 + 施工天數 (每天處理24單位)
+	private LocalDate calculateEtaDate(int nitrogenPipe, int waterPipe, int vacuumPipe) {
+		return availabilityIndex.estimateEta(MATERIAL_CODES, new int[] { nitrogenPipe, waterPipe, vacuumPipe });
 	}
 
 	// API: 預覽訂單影響
@@ -238,30 +154,25 @@ public class OrderController {
 			int waterPipe = ((Number) orderData.getOrDefault("waterPipe", 0)).intValue();
 			int vacuumPipe = ((Number) orderData.getOrDefault("vacuumPipe", 0)).intValue();
 
-			// 從資料庫獲取實際庫存 (A/B/C代碼)
-			Map<String, Integer> inventory = Map.of("氮氣管", getInventoryByCode("A"), "水管", getInventoryByCode("B"),
-					"真空管", getInventoryByCode("C"));
-
+			// 依分時段可用量索引判斷缺口 (計入到貨計劃與已承諾需求)
+			int[] quantities = { nitrogenPipe, waterPipe, vacuumPipe };
 			StringBuilder materialAnalysis = new StringBuilder();
 			boolean hasShortage = false;
 
-			if (nitrogenPipe > 0 && nitrogenPipe > inventory.get("氮氣管")) {
-				materialAnalysis.append("氮氣管缺 ").append(nitrogenPipe - inventory.get("氮氣管")).append(" 單位；");
-				hasShortage = true;
-			}
-
-			if (waterPipe > 0 && waterPipe > inventory.get("水管")) {
-				materialAnalysis.append("水管缺 ").append(waterPipe - inventory.get("水管")).append(" 單位；");
-				hasShortage = true;
-			}
-
-			if (vacuumPipe > 0 && vacuumPipe > inventory.get("真空管")) {
-				materialAnalysis.append("真空管缺 ").append(vacuumPipe - inventory.get("真空管")).append(" 單位；");
-				hasShortage = true;
+			for (int i = 0; i < MATERIAL_CODES.length; i++) {
+				long availableNow = availabilityIndex.availableOn(MATERIAL_CODES[i], now);
+				if (quantities[i] > 0 && quantities[i] > availableNow) {
+					LocalDate availableDate = availabilityIndex.earliestAvailableDate(MATERIAL_CODES[i], quantities[i]);
+					materialAnalysis.append(MATERIAL_NAMES[i]).append("缺 ").append(quantities[i] - availableNow)
+							.append(" 單位")
+							.append(availableDate != null ? "（預計 " + availableDate + " 可用）" : "（現有到貨計劃無法滿足）")
+							.append("；");
+					hasShortage = true;
+				}
 			}
 
 			// 計算預估完成時間
-			LocalDate etaDate = calculateEtaDate(dueDate, nitrogenPipe + waterPipe + vacuumPipe);
+			LocalDate etaDate = calculateEtaDate(nitrogenPipe, waterPipe, vacuumPipe);
 			boolean onTime = !etaDate.isAfter(dueDate);
 
 			return Map.of("materialAnalysis", hasShortage ? materialAnalysis.toString() : "材料庫存充足", "scheduleImpact",
@@ -272,16 +183,4 @@ public class OrderController {
 			return Map.of("error", "預覽計算失敗: " + e.getMessage());
 		}
 	}
-
-	// 根據材料代碼獲取庫存數量的輔助方法
-	private int getInventoryByCode(String materialCode) {
-		try {
-			Integer qty = jdbc.queryForObject("SELECT qty_on_hand FROM inventory WHERE material = ?", Integer.class,
-					materialCode);
-			return qty != null ? qty : 0;
-		} catch (Exception e) {
-			logger.error("獲取材料庫存失敗 ({}): {}", materialCode, e.getMessage());
-			return 0;
-		}
-	}
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.example.installation.web;
+
+import com.example.installation.db.DbOrder;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 訂單匯出格式 (NDJSON：每行一張訂單；CSV：每行一筆材料需求)
+ *
+ * 每 {@value #FLUSH_EVERY} 張訂單 flush 一次，讓用戶端邊下載邊處理。
+ */
+abstract class OrderExportWriter {
+    private static final int FLUSH_EVERY = 500;
+
+    private int written = 0;
+
+    static OrderExportWriter ndjson(OutputStream out, JsonFactory factory) throws IOException {
+        JsonGenerator gen = factory.createGenerator(out);
+        gen.setRootValueSeparator(null);
+        return new OrderExportWriter() {
+            @Override
+            void writeOrder(DbOrder order) throws IOException {
+                gen.writeStartObject();
+                gen.writeNumberField("id", order.getId());
+                gen.writeStringField("machineName", order.getMachineName());
+                gen.writeStringField("dueDate", String.valueOf(order.getDueDate()));
+                gen.writeStringField("etaDate", order.getEtaDate() != null ? order.getEtaDate().toString() : null);
+                gen.writeStringField("status", order.getStatus());
+                gen.writeArrayFieldStart("materials");
+                for (DbOrder.MaterialRequirement m : order.getMaterials()) {
+                    gen.writeStartObject();
+                    gen.writeStringField("material", m.getMaterial());
+                    gen.writeNumberField("qtyNeeded", m.getQtyNeeded());
+                    gen.writeNumberField("qtyOnHand", m.getQtyOnHand());
+                    gen.writeNumberField("shortage", m.getShortage());
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+            }
+
+            @Override
+            void flush() throws IOException {
+                gen.flush();
+            }
+        };
+    }
+
+    static OrderExportWriter csv(OutputStream out) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // UTF-8 BOM 讓 Excel 正確顯示中文
+        w.write('﻿');
+        w.write("id,machine_name,due_date,eta_date,status,material,qty_needed,qty_on_hand,shortage\n");
+        return new OrderExportWriter() {
+            @Override
+            void writeOrder(DbOrder order) throws IOException {
+                String prefix = order.getId() + "," + escape(order.getMachineName()) + "," + order.getDueDate() + ","
+                        + (order.getEtaDate() != null ? order.getEtaDate() : "") + "," + escape(order.getStatus()) + ",";
+                if (order.getMaterials().isEmpty()) {
+                    w.write(prefix + ",,,\n");
+                }
+                for (DbOrder.MaterialRequirement m : order.getMaterials()) {
+                    w.write(prefix + escape(m.getMaterial()) + "," + m.getQtyNeeded() + "," + m.getQtyOnHand() + ","
+                            + m.getShortage() + "\n");
+                }
+            }
+
+            @Override
+            void flush() throws IOException {
+                w.flush();
+            }
+        };
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    abstract void writeOrder(DbOrder order) throws IOException;
+
+    abstract void flush() throws IOException;
+
+    void write(DbOrder order) throws IOException {
+        writeOrder(order);
+        if (++written % FLUSH_EVERY == 0) {
+            flush();
+        }
+    }
+
+    void finish() throws IOException {
+        flush();
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.installation.web;
+
+import com.example.installation.db.DbOrderService;
+import com.example.installation.db.OrderImportService;
+import com.example.installation.db.OrderInput;
+import com.example.installation.events.ChangeEventBroadcaster;
+import com.example.installation.schedule.ScheduleService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批次匯入訂單 API
+ *
+ * POST /api/orders/import
+ * - text/csv：第一列為標題 (machineName,dueDate,nitrogenPipe,waterPipe,vacuumPipe，
+ *   也接受 machine_name 等底線寫法、材料代碼 A/B/C 或中文名稱)；錯誤的 row 為檔案中的行號 (標題為第 1 行，空白行也計入)
+ * - application/json：物件陣列，欄位同表單；錯誤的 row 為陣列中的第幾個 (從 1 開始)
+ *
+ * 匯入後預設重新執行完整排程 (schedule=false 則保留估算的 ETA，只更新可用量索引並捨棄排程快照)，
+ * 並為每張訂單排入 BAW 流程啟動 (baw=false 則不送 BAW)。
+ */
+@RestController
+@RequestMapping("/api/orders")
+public class OrderImportController {
+    private static final Logger logger = LoggerFactory.getLogger(OrderImportController.class);
+
+    // 正規化後的標題 (小寫、去除底線/空白/連字號) → 表單欄位
+    private static final Map<String, String> HEADER_ALIASES = new HashMap<>();
+    static {
+        HEADER_ALIASES.put("machinename", "machineName");
+        HEADER_ALIASES.put("machine", "machineName");
+        HEADER_ALIASES.put("duedate", "dueDate");
+        for (int i = 0; i < OrderInput.QUANTITY_FIELDS.length; i++) {
+            HEADER_ALIASES.put(OrderInput.QUANTITY_FIELDS[i].toLowerCase(), OrderInput.QUANTITY_FIELDS[i]);
+            HEADER_ALIASES.put(OrderInput.MATERIAL_CODES[i].toLowerCase(), OrderInput.QUANTITY_FIELDS[i]);
+            HEADER_ALIASES.put(OrderInput.MATERIAL_NAMES[i], OrderInput.QUANTITY_FIELDS[i]);
+        }
+    }
+
+    private final OrderImportService importService;
+    private final DbOrderService dbOrderService;
+    private final ScheduleService scheduleService;
+    private final ChangeEventBroadcaster events;
+
+    public OrderImportController(OrderImportService importService, DbOrderService dbOrderService,
+            ScheduleService scheduleService, ChangeEventBroadcaster events) {
+        this.importService = importService;
+        this.dbOrderService = dbOrderService;
+        this.scheduleService = scheduleService;
+        this.events = events;
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<Map<String, Object>> importCsv(InputStream body,
+            @RequestParam(defaultValue = "true") boolean baw,
+            @RequestParam(defaultValue = "true") boolean schedule) throws IOException {
+        List<Integer> lineNumbers = new ArrayList<>();
+        List<Map<String, String>> rows = readCsv(body, lineNumbers);
+        return runImport(rows, lineNumbers, baw, schedule);
+    }
+
+    @PostMapping(value = "/import", consumes = "application/json")
+    public ResponseEntity<Map<String, Object>> importJson(@RequestBody List<Map<String, Object>> body,
+            @RequestParam(defaultValue = "true") boolean baw,
+            @RequestParam(defaultValue = "true") boolean schedule) {
+        List<Map<String, String>> rows = new ArrayList<>(body.size());
+        for (Map<String, Object> item : body) {
+            Map<String, String> row = new HashMap<>();
+            item.forEach((key, value) -> {
+                String field = HEADER_ALIASES.get(normalizeHeader(key));
+                if (field != null && value != null) {
+                    row.put(field, String.valueOf(value));
+                }
+            });
+            rows.add(row);
+        }
+        return runImport(rows, null, baw, schedule);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    private ResponseEntity<Map<String, Object>> runImport(List<Map<String, String>> rows, List<Integer> lineNumbers,
+            boolean baw, boolean schedule) {
+        // 不排程時由匯入更新可用量索引；排程時完整排程會重建整個索引
+        Map<String, Object> result = new LinkedHashMap<>(importService.importOrders(rows, lineNumbers, baw, !schedule));
+        int imported = (Integer) result.get("imported");
+        if (imported > 0) {
+            dbOrderService.invalidateReferenceData();
+            if (schedule) {
+                // 一次完整排程，取代逐筆修補
+                try {
+                    result.put("schedule", scheduleService.runFullSchedule());
+                } catch (Exception e) {
+                    logger.warn("匯入後排程失敗，沿用估算 ETA: {}", e.getMessage());
+                    result.put("scheduleError", e.getMessage());
+                }
+            } else {
+                // 排程快照沒有這批訂單，下次修補先做完整排程，新訂單才會計入它們的材料與產能
+                scheduleService.invalidate();
+            }
+            // 大量訂單只推送筆數，頁面自行決定是否重新載入
+            events.publish(ChangeEventBroadcaster.ORDER_CREATED, Map.of("orders", List.of(), "count", imported));
+            events.publishLatest(ChangeEventBroadcaster.INVENTORY_CHANGED, dbOrderService::getInventoryUpdate);
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * @param lineNumbers 填入每列資料在檔案中的行號 (標題為第 1 行，略過的空白行也計入)
+     */
+    private List<Map<String, String>> readCsv(InputStream body, List<Integer> lineNumbers) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            throw new IllegalArgumentException("CSV 內容為空");
+        }
+        if (headerLine.startsWith("\uFEFF")) {
+            headerLine = headerLine.substring(1);
+        }
+
+        List<String> headers = parseCsvLine(headerLine);
+        String[] fields = new String[headers.size()];
+        boolean hasMachine = false;
+        for (int i = 0; i < headers.size(); i++) {
+            fields[i] = HEADER_ALIASES.get(normalizeHeader(headers.get(i)));
+            hasMachine |= "machineName".equals(fields[i]);
+        }
+        if (!hasMachine) {
+            throw new IllegalArgumentException("CSV 標題列缺少 machineName 欄位");
+        }
+
+        List<Map<String, String>> rows = new ArrayList<>();
+        int lineNumber = 1;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            List<String> values = parseCsvLine(line);
+            Map<String, String> row = new HashMap<>();
+            for (int i = 0; i < fields.length && i < values.size(); i++) {
+                if (fields[i] != null) {
+                    row.put(fields[i], values.get(i));
+                }
+            }
+            rows.add(row);
+            lineNumbers.add(lineNumber);
+        }
+        return rows;
+    }
+
+    // 支援雙引號包住的欄位與 "" 跳脫 (不支援欄位內換行)
+    private static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString().trim());
+        return values;
+    }
+
+    private static String normalizeHeader(String header) {
+        return header.trim().replaceAll("[_\\s-]", "").toLowerCase();
+    }
+}
@@ -1,10 +1,13 @@
 package com.example.installation.web;
 
 import com.example.installation.service.JobService;
+import com.example.installation.db.CompositeReader;
 import com.example.installation.db.DbOrderService;
 import com.example.installation.db.InboundPlan;
 import com.example.installation.db.DbOrder;
 import com.example.installation.db.InventoryStatus;
+import com.example.installation.db.OrderPage;
+import com.example.installation.db.OrderQuery;
 import com.example.installation.db.WorkerCapacity;
 
 import org.springframework.stereotype.Controller;
@@ -13,33 +16,50 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import javax.servlet.http.HttpServletResponse;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Controller
 public class PageController {
+    private static final int JOBS_PAGE_SIZE = 60;
+    
     private final JobService jobService;
     private final DbOrderService dbOrderService;
+    private final CompositeReader compositeReader;
     
-    public PageController(JobService jobService, DbOrderService dbOrderService) {
+    public PageController(JobService jobService, DbOrderService dbOrderService, CompositeReader compositeReader) {
         this.jobService = jobService;
         this.dbOrderService = dbOrderService;
+        this.compositeReader = compositeReader;
     }
 
     @GetMapping({"/", "/dashboard"})
-    public String dashboard(Model model) {
-        // 從資料庫獲取真實數據
-        List<DbOrder> orders = dbOrderService.list();
-        List<InventoryStatus> inventoryStatus = dbOrderService.getInventoryStatus();
-        DbOrderService.DashboardStats stats = dbOrderService.getDashboardStats();
+    public String dashboard(Model model, HttpServletResponse response) {
+        // 從資料庫獲取真實數據；甘特圖只取最近到期的一頁，KPI 由彙總查詢另外計算 (四個查詢平行送出)
+        CompositeReader.Batch batch = compositeReader.batch("dashboard");
+        CompositeReader.Branch<OrderPage> page = batch.add("orders",
+            () -> dbOrderService.findPage(new OrderQuery()), new OrderPage(Collections.emptyList(), null));
+        CompositeReader.Branch<List<InventoryStatus>> inventory = batch.add("inventory",
+            dbOrderService::getInventoryStatus, Collections.emptyList());
+        CompositeReader.Branch<List<InboundPlan>> inbound = batch.add("inbound",
+            dbOrderService::getInboundPlans, Collections.emptyList());
+        CompositeReader.Branch<DbOrderService.DashboardStats> statsBranch = batch.add("stats",
+            dbOrderService::getDashboardStats, new DbOrderService.DashboardStats());
+        batch.join();
+        response.setHeader("Server-Timing", batch.serverTiming());
+        
+        List<DbOrder> orders = page.get().getItems();
+        List<InventoryStatus> inventoryStatus = inventory.get();
+        DbOrderService.DashboardStats stats = statsBranch.get();
         
         // 添加到模型
         model.addAttribute("orders", orders);
         model.addAttribute("inventoryStatus", inventoryStatus);
 //        model.addAttribute("inboundPlans", dbOrderService.getUpcomingInboundPlans(10)); // 只顯示最近10個到貨計劃
-        model.addAttribute("inboundPlans", dbOrderService.getInboundPlans());
+        model.addAttribute("inboundPlans", inbound.get());
         model.addAttribute("totalOrders", stats.getTotalOrders());
         model.addAttribute("atRiskOrders", stats.getAtRiskOrders());
         model.addAttribute("onTimeRate", stats.getOnTimeRate());
@@ -49,28 +69,26 @@ public class PageController {
     }
 
     @GetMapping("/jobs")
-    public String jobs(@RequestParam(value = "q", required = false) String q, Model model) {
-        // ✅ 改用真實資料庫資料
-        List<DbOrder> orders = dbOrderService.list();
-        
-        // 搜尋功能
-        if (q != null && !q.trim().isEmpty()) {
-            String searchTerm = q.toLowerCase().trim();
-            orders = orders.stream()
-                .filter(order -> 
-                    order.getMachineName().toLowerCase().contains(searchTerm) ||
-                    order.getId().toString().contains(searchTerm) ||
-                    (order.getStatus() != null && order.getStatus().toLowerCase().contains(searchTerm))
-                )
-                .collect(Collectors.toList());
-        }
+    public String jobs(@RequestParam(value = "q", required = false) String q,
+                       @RequestParam(value = "match", defaultValue = "PREFIX") OrderQuery.Match match,
+                       @RequestParam(value = "cursor", required = false) String cursor,
+                       Model model) {
+        // 搜尋條件在 SQL 端以索引處理，只讀取並組裝這一頁的訂單與材料
+        OrderQuery query = new OrderQuery();
+        query.setSearch(q, match);
+        query.setCursor(cursor);
+        query.setLimit(JOBS_PAGE_SIZE);
+        OrderPage page = dbOrderService.findPage(query);
         
         // 載入庫存狀態用於顯示材料風險
         List<InventoryStatus> inventoryStatus = dbOrderService.getInventoryStatus();
         
-        model.addAttribute("orders", orders);
+        model.addAttribute("orders", page.getItems());
+        model.addAttribute("nextCursor", page.getNextCursor());
+        model.addAttribute("cursor", cursor);
         model.addAttribute("inventoryStatus", inventoryStatus);
         model.addAttribute("q", q == null ? "" : q);
+        model.addAttribute("match", match);
         
         return "jobs";
     }
@@ -89,12 +107,24 @@ public class PageController {
     }
 
     @GetMapping("/scheduler")
-    public String scheduler(Model model) {
-        // 從DB載入排程資料
-        List<DbOrder> orders = dbOrderService.list();
-        List<InventoryStatus> inventoryStatus = dbOrderService.getInventoryStatus();
-        List<InboundPlan> inboundPlans = dbOrderService.getInboundPlans();
-        List<WorkerCapacity> workerCapacity = dbOrderService.getWorkerCapacity();
+    public String scheduler(Model model, HttpServletResponse response) {
+        // 從DB載入排程資料 (四個查詢平行送出)
+        CompositeReader.Batch batch = compositeReader.batch("scheduler");
+        CompositeReader.Branch<List<DbOrder>> orderBranch = batch.add("orders",
+            dbOrderService::list, Collections.emptyList());
+        CompositeReader.Branch<List<InventoryStatus>> inventoryBranch = batch.add("inventory",
+            dbOrderService::getInventoryStatus, Collections.emptyList());
+        CompositeReader.Branch<List<InboundPlan>> inboundBranch = batch.add("inbound",
+            dbOrderService::getInboundPlans, Collections.emptyList());
+        CompositeReader.Branch<List<WorkerCapacity>> capacityBranch = batch.add("capacity",
+            dbOrderService::getWorkerCapacity, Collections.emptyList());
+        batch.join();
+        response.setHeader("Server-Timing", batch.serverTiming());
+        
+        List<DbOrder> orders = orderBranch.get();
+        List<InventoryStatus> inventoryStatus = inventoryBranch.get();
+        List<InboundPlan> inboundPlans = inboundBranch.get();
+        List<WorkerCapacity> workerCapacity = capacityBranch.get();
         
         // 計算統計數據
         long totalOrders = orders.size();
@@ -0,0 +1,40 @@
+package com.example.installation.web;
+
+import com.example.installation.db.DbOrderService;
+import com.example.installation.events.ChangeEventBroadcaster;
+import com.example.installation.schedule.ScheduleService;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/schedule")
+public class ScheduleController {
+    private final ScheduleService scheduleService;
+    private final DbOrderService dbOrderService;
+    private final ChangeEventBroadcaster events;
+    
+    public ScheduleController(ScheduleService scheduleService, DbOrderService dbOrderService,
+                              ChangeEventBroadcaster events) {
+        this.scheduleService = scheduleService;
+        this.dbOrderService = dbOrderService;
+        this.events = events;
+    }
+    
+    // 重新計算全部訂單排程，寫入 schedule_tasks / schedule_results / orders.eta_date
+    @PostMapping("/run")
+    public Map<String, Object> run() {
+        Map<String, Object> summary = scheduleService.runFullSchedule();
+        // 延遲訂單數/準時率隨 ETA 改變 (eta-changed 由排程服務推送)
+        events.publishLatest(ChangeEventBroadcaster.INVENTORY_CHANGED, dbOrderService::getInventoryUpdate);
+        return summary;
+    }
+    
+    // 單一訂單修改/刪除後的增量修補，回報受影響訂單數與耗時
+    @PostMapping("/repair/{orderId}")
+    public Map<String, Object> repair(@PathVariable Long orderId) {
+        Map<String, Object> report = scheduleService.repairOrder(orderId);
+        events.publishLatest(ChangeEventBroadcaster.INVENTORY_CHANGED, dbOrderService::getInventoryUpdate);
+        return report;
+    }
+}
@@ -1,10 +1,4 @@
--- 刪除現有表格
-DROP TABLE IF EXISTS schedule_results;
-DROP TABLE IF EXISTS order_materials;
-DROP TABLE IF EXISTS orders;
-DROP TABLE IF EXISTS inbound_plans;
-DROP TABLE IF EXISTS inventory;
-DROP TABLE IF EXISTS worker_capacity;
+-- H2 (devh2) 基本資料表
 
 -- 訂單主表
 CREATE TABLE orders (
@@ -75,4 +69,4 @@ CREATE TABLE schedule_tasks (
   CONSTRAINT fk_schedule_tasks_order FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE,
   CONSTRAINT st_material_chk CHECK (material IN ('氮氣管','水管','真空管')),
   CONSTRAINT st_status_chk CHECK (status IN ('PLANNED','IN_PROGRESS','COMPLETED'))
-);
\ No newline at end of file
+);
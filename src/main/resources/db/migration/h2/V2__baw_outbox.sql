@@ -0,0 +1,19 @@
+-- BAW 流程實例 ID (outbox 送出後回寫)
+ALTER TABLE orders ADD COLUMN baw_piid VARCHAR(64);
+
+-- BAW 流程啟動 outbox (與訂單同一交易寫入，背景送出)
+CREATE TABLE baw_outbox (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  order_id BIGINT NOT NULL,
+  payload CLOB NOT NULL,                       -- InstallationJob JSON
+  status VARCHAR(10) NOT NULL DEFAULT 'PENDING',
+  attempts INT NOT NULL DEFAULT 0,
+  next_attempt_at TIMESTAMP NOT NULL,
+  claimed_at TIMESTAMP,
+  sent_at TIMESTAMP,
+  last_error VARCHAR(500),
+  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT fk_baw_outbox_order FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE,
+  CONSTRAINT baw_outbox_status_chk CHECK (status IN ('PENDING','SENDING','SENT','FAILED'))
+);
+CREATE INDEX idx_baw_outbox_due ON baw_outbox(status, next_attempt_at);
@@ -0,0 +1,13 @@
+-- 熱門查詢的涵蓋索引 (H2 不支援 INCLUDE，把查詢用到的欄位放進索引鍵)
+
+-- 每張訂單的材料需求：WHERE order_id IN (...) ORDER BY order_id, id
+CREATE INDEX idx_order_materials_order ON order_materials(order_id, id, material, qty_needed);
+
+-- 庫存狀態：inventory LEFT JOIN order_materials ON material，SUM(qty_needed)
+CREATE INDEX idx_order_materials_material ON order_materials(material, qty_needed, order_id);
+
+-- 到貨計劃：ORDER BY arrival_date, material
+CREATE INDEX idx_inbound_plans_arrival ON inbound_plans(arrival_date, material, qty);
+
+-- 訂單列表與 keyset 分頁：ORDER BY due_date, id
+CREATE INDEX idx_orders_due ON orders(due_date, id);
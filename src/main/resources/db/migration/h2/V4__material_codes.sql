@@ -0,0 +1,16 @@
+-- 材料一律以代碼 A/B/C 存放 (與 SQL Server 相同)，顯示時才轉為中文名稱
+-- 種子資料原本以中文名稱寫入，轉成代碼後所有資料表只有一種材料 key
+ALTER TABLE order_materials DROP CONSTRAINT om_material_chk;
+ALTER TABLE inventory DROP CONSTRAINT inv_material_chk;
+ALTER TABLE inbound_plans DROP CONSTRAINT inb_material_chk;
+ALTER TABLE schedule_tasks DROP CONSTRAINT st_material_chk;
+
+UPDATE order_materials SET material = CASE material WHEN '氮氣管' THEN 'A' WHEN '水管' THEN 'B' WHEN '真空管' THEN 'C' ELSE material END;
+UPDATE inventory SET material = CASE material WHEN '氮氣管' THEN 'A' WHEN '水管' THEN 'B' WHEN '真空管' THEN 'C' ELSE material END;
+UPDATE inbound_plans SET material = CASE material WHEN '氮氣管' THEN 'A' WHEN '水管' THEN 'B' WHEN '真空管' THEN 'C' ELSE material END;
+UPDATE schedule_tasks SET material = CASE material WHEN '氮氣管' THEN 'A' WHEN '水管' THEN 'B' WHEN '真空管' THEN 'C' ELSE material END;
+
+ALTER TABLE order_materials ADD CONSTRAINT om_material_chk CHECK (material IN ('A','B','C'));
+ALTER TABLE inventory ADD CONSTRAINT inv_material_chk CHECK (material IN ('A','B','C'));
+ALTER TABLE inbound_plans ADD CONSTRAINT inb_material_chk CHECK (material IN ('A','B','C'));
+ALTER TABLE schedule_tasks ADD CONSTRAINT st_material_chk CHECK (material IN ('A','B','C'));
@@ -0,0 +1,20 @@
+-- /jobs 搜尋 (H2 不支援 INCLUDE)
+
+-- 機台名稱完全相符 / 前綴：machine_name = ? 或 LIKE 'M12%'
+CREATE INDEX idx_orders_machine ON orders(machine_name, id);
+
+-- 狀態篩選 (DRAFT 為 status IS NULL) 後依 due_date, id 分頁
+CREATE INDEX idx_orders_status_due ON orders(status, due_date, id);
+
+-- 機台名稱包含搜尋：大寫後每 3 個字元一列，新增訂單時由應用程式寫入，刪除訂單時連帶刪除
+CREATE TABLE order_name_grams (
+  gram VARCHAR(3) NOT NULL,
+  order_id BIGINT NOT NULL,
+  CONSTRAINT pk_order_name_grams PRIMARY KEY (gram, order_id),
+  CONSTRAINT fk_order_name_grams_order FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE
+);
+
+-- 回填既有訂單 (機台名稱最長 50 字元)
+INSERT INTO order_name_grams (gram, order_id)
+SELECT DISTINCT UPPER(SUBSTRING(o.machine_name, n.X, 3)), o.id
+FROM orders o JOIN SYSTEM_RANGE(1, 48) n ON n.X <= CHAR_LENGTH(o.machine_name) - 2;
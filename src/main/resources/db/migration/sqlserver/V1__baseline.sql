@@ -0,0 +1,68 @@
+-- SQL Server 基本資料表 (空資料庫使用；既有資料庫由 baseline-on-migrate 標記為 V1 後略過)
+-- 材料欄位存代碼 A/B/C
+
+CREATE TABLE orders (
+  id BIGINT IDENTITY(1,1) PRIMARY KEY,
+  machine_name NVARCHAR(50) NOT NULL,
+  due_date DATE NOT NULL,
+  eta_date DATE NULL,
+  strategy VARCHAR(10) NULL DEFAULT 'Partial',
+  status VARCHAR(10) NULL,
+  created_at DATETIME2 DEFAULT SYSDATETIME(),
+  CONSTRAINT orders_status_chk CHECK (status IN ('ON_TIME','LATE')),
+  CONSTRAINT orders_strategy_chk CHECK (strategy IN ('Partial', 'FullKit'))
+);
+GO
+
+CREATE TABLE order_materials (
+  id BIGINT IDENTITY(1,1) PRIMARY KEY,
+  order_id BIGINT NOT NULL,
+  material NVARCHAR(20) NOT NULL,
+  qty_needed INT NOT NULL,
+  CONSTRAINT fk_order_materials_order FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE
+);
+GO
+
+CREATE TABLE inventory (
+  material NVARCHAR(20) PRIMARY KEY,
+  qty_on_hand INT NOT NULL
+);
+GO
+
+CREATE TABLE inbound_plans (
+  id BIGINT IDENTITY(1,1) PRIMARY KEY,
+  material NVARCHAR(20) NOT NULL,
+  arrival_date DATE NOT NULL,
+  qty INT NOT NULL
+);
+GO
+
+CREATE TABLE worker_capacity (
+  work_date DATE PRIMARY KEY,
+  hours_total INT NOT NULL DEFAULT 24
+);
+GO
+
+CREATE TABLE schedule_results (
+  id BIGINT IDENTITY(1,1) PRIMARY KEY,
+  order_id BIGINT NOT NULL,
+  eta_date DATE NOT NULL,
+  status VARCHAR(10) NOT NULL,
+  computed_at DATETIME2 DEFAULT SYSDATETIME(),
+  CONSTRAINT fk_sched_order FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE,
+  CONSTRAINT sched_status_chk CHECK (status IN ('ON_TIME','LATE'))
+);
+GO
+
+CREATE TABLE schedule_tasks (
+  id BIGINT IDENTITY(1,1) PRIMARY KEY,
+  order_id BIGINT NOT NULL,
+  material NVARCHAR(20) NOT NULL,
+  work_date DATE NOT NULL,
+  units_planned INT NOT NULL,
+  units_completed INT DEFAULT 0,
+  status VARCHAR(10) DEFAULT 'PLANNED',
+  CONSTRAINT fk_schedule_tasks_order FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE,
+  CONSTRAINT st_status_chk CHECK (status IN ('PLANNED','IN_PROGRESS','COMPLETED'))
+);
+GO
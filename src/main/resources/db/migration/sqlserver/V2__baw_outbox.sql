@@ -0,0 +1,25 @@
+-- BAW outbox (先前以手動腳本套用過的資料庫會略過已存在的欄位/資料表)
+IF COL_LENGTH('orders', 'baw_piid') IS NULL
+  ALTER TABLE orders ADD baw_piid VARCHAR(64) NULL;
+GO
+
+IF OBJECT_ID('baw_outbox', 'U') IS NULL
+CREATE TABLE baw_outbox (
+  id BIGINT IDENTITY(1,1) PRIMARY KEY,
+  order_id BIGINT NOT NULL,
+  payload NVARCHAR(MAX) NOT NULL,              -- InstallationJob JSON
+  status VARCHAR(10) NOT NULL DEFAULT 'PENDING',
+  attempts INT NOT NULL DEFAULT 0,
+  next_attempt_at DATETIME2 NOT NULL,
+  claimed_at DATETIME2 NULL,
+  sent_at DATETIME2 NULL,
+  last_error NVARCHAR(500) NULL,
+  created_at DATETIME2 DEFAULT SYSDATETIME(),
+  CONSTRAINT fk_baw_outbox_order FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE,
+  CONSTRAINT baw_outbox_status_chk CHECK (status IN ('PENDING','SENDING','SENT','FAILED'))
+);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'idx_baw_outbox_due' AND object_id = OBJECT_ID('baw_outbox'))
+  CREATE INDEX idx_baw_outbox_due ON baw_outbox(status, next_attempt_at);
+GO
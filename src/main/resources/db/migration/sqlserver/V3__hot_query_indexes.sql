@@ -0,0 +1,21 @@
+-- 熱門查詢的涵蓋索引 (INCLUDE 的欄位讓查詢不必回查叢集索引)
+
+-- 每張訂單的材料需求：WHERE order_id IN (...) ORDER BY order_id, id (叢集鍵 id 自動附在索引中)
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'idx_order_materials_order' AND object_id = OBJECT_ID('order_materials'))
+  CREATE INDEX idx_order_materials_order ON order_materials(order_id) INCLUDE (material, qty_needed);
+GO
+
+-- 庫存狀態：inventory LEFT JOIN order_materials ON material，SUM(qty_needed)
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'idx_order_materials_material' AND object_id = OBJECT_ID('order_materials'))
+  CREATE INDEX idx_order_materials_material ON order_materials(material) INCLUDE (qty_needed, order_id);
+GO
+
+-- 到貨計劃：WHERE arrival_date >= 今天 ORDER BY arrival_date, material
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'idx_inbound_plans_arrival' AND object_id = OBJECT_ID('inbound_plans'))
+  CREATE INDEX idx_inbound_plans_arrival ON inbound_plans(arrival_date, material) INCLUDE (qty);
+GO
+
+-- 訂單列表與 keyset 分頁：ORDER BY due_date, id
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'idx_orders_due' AND object_id = OBJECT_ID('orders'))
+  CREATE INDEX idx_orders_due ON orders(due_date, id) INCLUDE (machine_name, eta_date, status);
+GO
@@ -0,0 +1,37 @@
+-- /jobs 搜尋
+
+-- 機台名稱完全相符 / 前綴：machine_name = ? 或 LIKE 'M12%'
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'idx_orders_machine' AND object_id = OBJECT_ID('orders'))
+  CREATE INDEX idx_orders_machine ON orders(machine_name, id) INCLUDE (due_date, eta_date, status);
+GO
+
+-- 狀態篩選 (DRAFT 為 status IS NULL) 後依 due_date, id 分頁
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'idx_orders_status_due' AND object_id = OBJECT_ID('orders'))
+  CREATE INDEX idx_orders_status_due ON orders(status, due_date, id) INCLUDE (machine_name, eta_date);
+GO
+
+-- 機台名稱包含搜尋：大寫後每 3 個字元一列，新增訂單時由應用程式寫入，刪除訂單時連帶刪除
+-- (全文檢索只支援字首比對，'%23%' 這種中間字串無法使用，所以自建 trigram)
+IF OBJECT_ID('order_name_grams', 'U') IS NULL
+CREATE TABLE order_name_grams (
+  gram NVARCHAR(3) NOT NULL,
+  order_id BIGINT NOT NULL,
+  CONSTRAINT pk_order_name_grams PRIMARY KEY (gram, order_id),
+  CONSTRAINT fk_order_name_grams_order FOREIGN KEY (order_id) REFERENCES orders(id) ON DELETE CASCADE
+);
+GO
+
+-- 刪除訂單時的連帶刪除
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'idx_order_name_grams_order' AND object_id = OBJECT_ID('order_name_grams'))
+  CREATE INDEX idx_order_name_grams_order ON order_name_grams(order_id);
+GO
+
+-- 回填既有訂單 (機台名稱最長 50 字元)
+WITH n AS (
+  SELECT TOP (48) ROW_NUMBER() OVER (ORDER BY (SELECT NULL)) AS pos FROM sys.all_objects
+)
+INSERT INTO order_name_grams (gram, order_id)
+SELECT DISTINCT UPPER(SUBSTRING(o.machine_name, n.pos, 3)), o.id
+FROM orders o JOIN n ON n.pos <= LEN(o.machine_name) - 2
+WHERE NOT EXISTS (SELECT 1 FROM order_name_grams g WHERE g.order_id = o.id);
+GO
@@ -0,0 +1,171 @@
+// 即時更新：訂閱 /api/events (SSE)，依事件修補頁面上的統計、庫存與訂單狀態，不重新載入整頁
+// 頁面以 data-* 標記可更新的元素：
+//   data-live="欄位"            統計數字 (data-suffix 附加單位)
+//   data-live-width="欄位"      進度條寬度 (%)
+//   data-material="材料"        庫存列，內含 data-field / data-show
+//   data-order-id="id"          訂單卡片，內含 data-field="status" / "etaDate"
+(function () {
+  'use strict';
+
+  var script = document.currentScript;
+  if (!window.EventSource || !script) {
+    return;
+  }
+  var source = new EventSource(script.getAttribute('data-events-url') || '/api/events');
+
+  var STATUS_CLASSES = {
+    ON_TIME: ['bg-green-100', 'text-green-700'],
+    LATE: ['bg-red-100', 'text-red-700']
+  };
+  var LEVEL_CLASSES = ['bg-red-500', 'bg-amber-500', 'bg-green-500'];
+
+  function each(selector, root, fn) {
+    Array.prototype.forEach.call((root || document).querySelectorAll(selector), fn);
+  }
+
+  function field(root, name) {
+    return root.querySelector('[data-field="' + name + '"]');
+  }
+
+  function setText(el, value) {
+    if (el) {
+      el.textContent = value == null ? '' : value;
+    }
+  }
+
+  function show(root, name, visible) {
+    each('[data-show="' + name + '"]', root, function (el) {
+      el.classList.toggle('hidden', !visible);
+    });
+  }
+
+  // ===== 統計 =====
+  function applyStats(stats) {
+    if (!stats) {
+      return;
+    }
+    Object.keys(stats).forEach(function (key) {
+      each('[data-live="' + key + '"]', null, function (el) {
+        el.textContent = stats[key] + (el.getAttribute('data-suffix') || '');
+      });
+      each('[data-live-width="' + key + '"]', null, function (el) {
+        el.style.width = stats[key] + '%';
+      });
+    });
+  }
+
+  // ===== 庫存 (與 dashboard.html 的判斷一致) =====
+  function applyInventory(list) {
+    (list || []).forEach(function (inv) {
+      each('[data-material]', null, function (row) {
+        if (row.getAttribute('data-material') !== inv.material) {
+          return;
+        }
+        var shortage = inv.shortage > 0;
+        setText(field(row, 'qtyOnHand'), inv.qtyOnHand);
+        setText(field(row, 'totalDemand'), inv.totalDemand);
+        setText(field(row, 'shortage'), inv.shortage);
+        setText(field(row, 'coverageDate'), inv.coverageDate);
+        show(row, 'shortage', shortage);
+        show(row, 'coverageDate', shortage && inv.coverageDate != null);
+
+        var level = shortage ? 'bg-red-500' : (inv.qtyOnHand * 2 < inv.totalDemand ? 'bg-amber-500' : 'bg-green-500');
+        ['level', 'bar'].forEach(function (name) {
+          var el = field(row, name);
+          if (el) {
+            el.classList.remove.apply(el.classList, LEVEL_CLASSES);
+            el.classList.add(level);
+          }
+        });
+        var bar = field(row, 'bar');
+        if (bar) {
+          bar.style.width = (inv.totalDemand > 0 ? Math.floor(inv.qtyOnHand * 100 / inv.totalDemand) : 0) + '%';
+        }
+      });
+    });
+  }
+
+  // ===== 訂單 =====
+  function applyOrder(order) {
+    each('[data-order-id="' + order.id + '"]', null, function (card) {
+      var badge = field(card, 'status');
+      if (badge && order.status) {
+        var onTime = order.status === 'ON_TIME';
+        badge.classList.remove.apply(badge.classList, STATUS_CLASSES.ON_TIME.concat(STATUS_CLASSES.LATE));
+        badge.classList.add.apply(badge.classList, onTime ? STATUS_CLASSES.ON_TIME : STATUS_CLASSES.LATE);
+        badge.textContent = badge.hasAttribute('data-short')
+          ? (onTime ? '✅' : '⚠️')
+          : (onTime ? '✅ 準時' : '⚠️ 風險');
+      }
+      setText(field(card, 'etaDate'), order.etaDate);
+      show(card, 'etaDate', order.etaDate != null);
+    });
+  }
+
+  // ===== 提示 =====
+  var toasts;
+
+  function notify(message, href, reload) {
+    if (!toasts) {
+      toasts = document.createElement('div');
+      toasts.className = 'fixed bottom-4 right-4 z-50 space-y-2';
+      document.body.appendChild(toasts);
+    }
+    var toast = document.createElement('div');
+    toast.className = 'bg-white border shadow-lg rounded-xl px-4 py-3 text-sm flex items-center gap-3';
+    var text = document.createElement(href ? 'a' : 'span');
+    text.textContent = message;
+    if (href) {
+      text.href = href;
+      text.className = 'text-blue-600 hover:underline';
+    }
+    toast.appendChild(text);
+    if (reload) {
+      var button = document.createElement('button');
+      button.type = 'button';
+      button.className = 'text-xs px-2 py-1 rounded bg-blue-600 text-white';
+      button.textContent = '重新整理';
+      button.onclick = function () { location.reload(); };
+      toast.appendChild(button);
+    }
+    toasts.appendChild(toast);
+    // 需要重新整理的提示保留，其餘 8 秒後移除
+    if (!reload) {
+      setTimeout(function () { toast.remove(); }, 8000);
+    }
+  }
+
+  function listen(type, handler) {
+    source.addEventListener(type, function (e) {
+      handler(JSON.parse(e.data));
+    });
+  }
+
+  listen('order-created', function (data) {
+    if (data.orders && data.orders.length) {
+      data.orders.forEach(function (o) {
+        notify('🆕 新訂單 ' + o.machineName + '（截止 ' + o.dueDate + '）', '/jobs/' + o.id, false);
+      });
+    } else {
+      notify('📥 已匯入 ' + data.count + ' 張訂單', null, true);
+    }
+  });
+
+  listen('eta-changed', function (data) {
+    (data.orders || []).forEach(applyOrder);
+    // 整批重排或變動太多時事件不帶明細
+    if (data.full) {
+      notify('🔄 排程已重新計算（' + data.count + ' 張訂單）', null, true);
+    }
+  });
+
+  listen('inventory-changed', function (data) {
+    applyInventory(data.inventory);
+    applyStats(data.stats);
+  });
+
+  // 伺服器重啟或斷線太久，錯過的事件無法補送
+  source.addEventListener('reload', function () {
+    notify('⚠️ 連線中斷期間資料已變更', null, true);
+  });
+})();